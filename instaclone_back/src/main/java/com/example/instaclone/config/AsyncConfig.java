@@ -0,0 +1,48 @@
+package com.example.instaclone.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableAsync
+@Slf4j
+public class AsyncConfig {
+
+    @Bean(name = "fanoutExecutor")
+    public ThreadPoolTaskExecutor fanoutExecutor(@Value("${timeline.fanout.threads:4}") int threads,
+                                                 @Value("${timeline.fanout.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("fanout-");
+        // A full queue slows the poster down instead of silently dropping timeline writes.
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    @Bean(name = "renditionExecutor")
+    public ThreadPoolTaskExecutor renditionExecutor(@Value("${images.renditions.threads:2}") int threads,
+                                                    @Value("${images.renditions.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("rendition-");
+        // Decoding is CPU and memory heavy, so a backlog is shed rather than pushed onto upload requests;
+        // images without renditions are served from the original.
+        executor.setRejectedExecutionHandler((task, pool) ->
+                log.warn("Rendition queue is full, skipping renditions for one upload"));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.instaclone.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A chat as listed for one of its members: its name and a preview of the latest message, if any.
+ */
+@Data
+@NoArgsConstructor
+public class ChatSummaryDTO {
+
+    private Long chatId;
+
+    private String name;
+
+    private Long lastMessageId;
+
+    private String lastSender;
+
+    private String lastMessage;
+
+    private String lastActivity;
+
+    public ChatSummaryDTO(Long chatId, String name, Long lastMessageId) {
+        this.chatId = chatId;
+        this.name = name;
+        this.lastMessageId = lastMessageId;
+    }
+}
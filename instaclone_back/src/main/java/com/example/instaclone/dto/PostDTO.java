@@ -5,8 +5,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.Set;
-
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -28,5 +26,9 @@ public class PostDTO {
 
     private Integer likes;
 
-    private Set<String> usersLiked;
+    private Boolean likedByMe;
+
+    private Long commentCount;
+
+    private String imagePlaceholder;
 }
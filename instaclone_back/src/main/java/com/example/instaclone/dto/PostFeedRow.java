@@ -0,0 +1,37 @@
+package com.example.instaclone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One feed item as read by the feed projection queries: the post columns, its author, its
+ * comment count and its image placeholder, all from a single statement and without loading any entity.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostFeedRow {
+
+    private Long id;
+
+    private String title;
+
+    private String caption;
+
+    private String location;
+
+    private Integer likes;
+
+    private Long userId;
+
+    private String username;
+
+    private Long commentCount;
+
+    private LocalDateTime createdAt;
+
+    private String imagePlaceholder;
+}
@@ -22,4 +22,6 @@ public class UserDTO {
     private String username;
 
     private String bio;
+
+    private String imagePlaceholder;
 }
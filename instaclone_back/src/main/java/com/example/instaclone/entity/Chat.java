@@ -1,28 +1,36 @@
 package com.example.instaclone.entity;
 
 
-import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.util.List;
 
 @Data
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_chat_name", columnNames = "name"))
 public class Chat {
+    public static final int NAME_MAX_LENGTH = 255;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "chat_id")
     private Long chatId;
 
-    @Column(name = "name")
+    @Column(name = "name", length = NAME_MAX_LENGTH)
     private String name;
 
-    @Column(name = "participant")
-    private String participant;
-
-    @JsonManagedReference
-    @OneToMany(mappedBy = "chat", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    /**
+     * The whole history; never loaded for a request. Messages are read a page at a time through
+     * {@link com.example.instaclone.repository.MessageRepository}.
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToMany(mappedBy = "chat", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Message> messages;
 
     public Chat() {
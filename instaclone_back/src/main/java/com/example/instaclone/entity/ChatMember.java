@@ -0,0 +1,31 @@
+package com.example.instaclone.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One user's membership of a chat. A user's chats are found through {@code (user_id, chat_id)}.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_chat_member_chat_user", columnNames = {"chat_id", "user_id"}),
+        indexes = @Index(name = "idx_chat_member_user_chat", columnList = "user_id, chat_id"))
+public class ChatMember {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long chatId;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    public ChatMember(Long chatId, Long userId) {
+        this.chatId = chatId;
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.instaclone.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@NoArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_follow_follower_followee", columnNames = {"follower_id", "followee_id"}),
+        indexes = @Index(name = "idx_follow_followee_follower", columnList = "followee_id, follower_id"))
+public class Follow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long followerId;
+
+    @Column(nullable = false)
+    private Long followeeId;
+
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    public Follow(Long followerId, Long followeeId) {
+        this.followerId = followerId;
+        this.followeeId = followeeId;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+}
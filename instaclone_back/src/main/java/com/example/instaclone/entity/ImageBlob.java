@@ -0,0 +1,21 @@
+package com.example.instaclone.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * The legacy {@code image_bytes} column of {@code image_model}, mapped apart from {@link ImageModel} so that
+ * metadata reads never load it. Only the blob migration reads it, to move the bytes to object storage.
+ */
+@Data
+@Entity
+@Table(name = "image_model")
+public class ImageBlob {
+
+    @Id
+    private Long id;
+
+    @Lob
+    @Column(name = "image_bytes", columnDefinition = "LONGBLOB")
+    private byte[] imageBytes;
+}
@@ -1,11 +1,25 @@
 package com.example.instaclone.entity;
 
+import com.example.instaclone.entity.enums.ERendition;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Image metadata; the bytes live in object storage under {@link #s3Key}. Rows from before that may still
+ * carry their bytes in {@code image_bytes}, which is mapped separately by {@link ImageBlob}.
+ */
 @Data
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_image_s3_key", columnList = "s3_key"),
+        @Index(name = "idx_image_post", columnList = "post_id"),
+        @Index(name = "idx_image_user_post", columnList = "user_id, post_id")
+})
 public class ImageModel {
 
     @Id
@@ -15,10 +29,6 @@ public class ImageModel {
     @Column(nullable = false)
     private String name;
 
-    @Lob
-    @Column(columnDefinition = "LONGBLOB")
-    private byte[] imageBytes;
-
     @JsonIgnore
     private Long userId;
 
@@ -26,4 +36,25 @@ public class ImageModel {
     private Long postId;
 
     private String s3Key;
+
+    @Convert(converter = RenditionsConverter.class)
+    private Set<ERendition> renditions = EnumSet.noneOf(ERendition.class);
+
+    /**
+     * A few-pixel JPEG of the image as a {@code data:} URI, sent inline with posts and users.
+     */
+    @Column(length = 2048)
+    private String placeholder;
+
+    /**
+     * {@code null} for images stored before this column existed.
+     */
+    @JsonIgnore
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
 }
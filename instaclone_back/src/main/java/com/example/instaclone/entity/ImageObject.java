@@ -0,0 +1,22 @@
+package com.example.instaclone.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+/**
+ * One row per stored object key. Locking it serializes everything that adds or removes references to the
+ * object, or the object itself, without locking any image rows. {@link #generation} counts how often the
+ * object was deleted, so an upload made before taking the lock can tell whether its object is still there.
+ */
+@Data
+@Entity
+public class ImageObject {
+
+    @Id
+    private String s3Key;
+
+    @Column(nullable = false)
+    private long generation;
+}
@@ -1,22 +1,26 @@
 package com.example.instaclone.entity;
 
-import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import jakarta.persistence.*;
+import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_message_chat_id", columnList = "chat_chat_id, ms_id"))
 public class Message {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "ms_id")
     private Long ms_id;
 
-    @ManyToOne(fetch = FetchType.EAGER)
-    @JsonBackReference
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chat_chat_id")
+    @JsonIgnore
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Chat chat;
 
     @Column(name = "sender")
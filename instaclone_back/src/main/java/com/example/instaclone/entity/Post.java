@@ -11,6 +11,10 @@ import java.util.Set;
 
 @Data
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_post_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_post_user_created_at_id", columnList = "user_id, created_at, id")
+})
 public class Post {
 
     @Id
@@ -25,14 +29,27 @@ public class Post {
 
     private Integer likes;
 
-    @Column
-    @ElementCollection(targetClass = String.class)
-    private Set<String> likedUsers = new HashSet<>();
+    /**
+     * Ids of users who liked the post. Rows are written with single-statement inserts and deletes
+     * by {@link com.example.instaclone.services.PostLikeService}, never by mutating this set.
+     * There is no foreign key: its shared lock on the post row would deadlock against the
+     * {@code likes} counter update under concurrent likes. Hibernate still removes the rows with the post.
+     * Responses never serialize this set; "liked by me" is answered by
+     * {@link com.example.instaclone.services.PostLikeIndex}. Likes from the old username-keyed table are
+     * copied in by {@link com.example.instaclone.services.PostLikeMigration}.
+     */
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "post_like",
+            joinColumns = @JoinColumn(name = "post_id"),
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT),
+            uniqueConstraints = @UniqueConstraint(name = "uk_post_like_post_user", columnNames = {"post_id", "user_id"}))
+    @Column(name = "user_id", nullable = false)
+    private Set<Long> likedUserIds = new HashSet<>();
 
     @ManyToOne(fetch = FetchType.LAZY)
     private User user;
 
-    @OneToMany(cascade = CascadeType.REFRESH, fetch = FetchType.EAGER, mappedBy = "post", orphanRemoval = true)
+    @OneToMany(cascade = CascadeType.REFRESH, fetch = FetchType.LAZY, mappedBy = "post", orphanRemoval = true)
     private List<Comment> comments = new ArrayList<>();
 
     @Column(updatable = false)
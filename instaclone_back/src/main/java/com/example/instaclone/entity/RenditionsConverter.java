@@ -0,0 +1,34 @@
+package com.example.instaclone.entity;
+
+import com.example.instaclone.entity.enums.ERendition;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the renditions of an image as a comma-separated column, so reading image metadata stays one row.
+ */
+@Converter
+public class RenditionsConverter implements AttributeConverter<Set<ERendition>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(Set<ERendition> renditions) {
+        if (renditions == null || renditions.isEmpty()) {
+            return null;
+        }
+        return renditions.stream().map(Enum::name).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public Set<ERendition> convertToEntityAttribute(String column) {
+        Set<ERendition> renditions = EnumSet.noneOf(ERendition.class);
+        if (column != null && !column.isBlank()) {
+            Arrays.stream(column.split(",")).map(ERendition::valueOf).forEach(renditions::add);
+        }
+        return renditions;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.instaclone.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of a user's materialized home timeline. {@code createdAt} is copied from the post
+ * so the feed can be read with a single range scan over {@code (user_id, created_at, post_id)}.
+ */
+@Data
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_timeline_user_post", columnNames = {"user_id", "post_id"}),
+        indexes = {
+                @Index(name = "idx_timeline_user_created_post", columnList = "user_id, created_at, post_id"),
+                @Index(name = "idx_timeline_post", columnList = "post_id")
+        })
+public class TimelineEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long postId;
+
+    @Column(nullable = false)
+    private Long authorId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
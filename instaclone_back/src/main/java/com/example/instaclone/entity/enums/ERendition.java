@@ -0,0 +1,50 @@
+package com.example.instaclone.entity.enums;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Fixed-width JPEG copies produced for every uploaded image, stored next to the original.
+ */
+public enum ERendition {
+    AVATAR(150),
+    FEED(640),
+    FULL(1080);
+
+    public static final String PREFIX = "renditions/";
+
+    private final int width;
+
+    ERendition(int width) {
+        this.width = width;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public String key(String originalKey) {
+        return PREFIX + width + "/" + originalKey;
+    }
+
+    /**
+     * The key of the original a rendition key was made from, or {@code key} itself if it is not a rendition.
+     */
+    public static String originalKey(String key) {
+        int slash = key.startsWith(PREFIX) ? key.indexOf('/', PREFIX.length()) : -1;
+        return slash < 0 ? key : key.substring(slash + 1);
+    }
+
+    /**
+     * @return the narrowest of {@code available} that is at least {@code width} wide, or empty if the
+     * original is the only copy wide enough
+     */
+    public static Optional<ERendition> smallestCovering(Set<ERendition> available, int width) {
+        for (ERendition rendition : values()) {
+            if (rendition.width >= width && available.contains(rendition)) {
+                return Optional.of(rendition);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.instaclone.events;
+
+/**
+ * Published by {@link com.example.instaclone.services.PostService} once a post has been saved.
+ */
+public record PostCreatedEvent(Long postId, Long authorId) {
+}
@@ -0,0 +1,7 @@
+package com.example.instaclone.exceptions;
+
+public class BatchTooLargeException extends RuntimeException {
+    public BatchTooLargeException(String msg) {
+        super(msg);
+    }
+}
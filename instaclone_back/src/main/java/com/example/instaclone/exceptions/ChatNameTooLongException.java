@@ -0,0 +1,7 @@
+package com.example.instaclone.exceptions;
+
+public class ChatNameTooLongException extends RuntimeException {
+    public ChatNameTooLongException(String msg) {
+        super(msg);
+    }
+}
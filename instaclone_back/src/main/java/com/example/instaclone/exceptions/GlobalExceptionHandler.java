@@ -45,4 +45,24 @@ public class GlobalExceptionHandler {
     public ResponseEntity<?> handleCommentNotFoundException(CommentNotFoundException ex) {
         return new ResponseEntity<>(new MessageResponse(ex.getMessage()), HttpStatus.NOT_FOUND);
     }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<?> handleInvalidCursorException(InvalidCursorException ex) {
+        return new ResponseEntity<>(new MessageResponse(ex.getMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<?> handleBatchTooLargeException(BatchTooLargeException ex) {
+        return new ResponseEntity<>(new MessageResponse(ex.getMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(SelfFollowException.class)
+    public ResponseEntity<?> handleSelfFollowException(SelfFollowException ex) {
+        return new ResponseEntity<>(new MessageResponse(ex.getMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ChatNameTooLongException.class)
+    public ResponseEntity<?> handleChatNameTooLongException(ChatNameTooLongException ex) {
+        return new ResponseEntity<>(new MessageResponse(ex.getMessage()), HttpStatus.BAD_REQUEST);
+    }
 }
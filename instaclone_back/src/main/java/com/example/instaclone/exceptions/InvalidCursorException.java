@@ -0,0 +1,7 @@
+package com.example.instaclone.exceptions;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String msg) {
+        super(msg);
+    }
+}
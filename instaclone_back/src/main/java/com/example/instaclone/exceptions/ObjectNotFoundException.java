@@ -0,0 +1,7 @@
+package com.example.instaclone.exceptions;
+
+public class ObjectNotFoundException extends RuntimeException {
+    public ObjectNotFoundException(String msg) {
+        super(msg);
+    }
+}
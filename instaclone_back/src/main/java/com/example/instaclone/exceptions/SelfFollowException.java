@@ -0,0 +1,7 @@
+package com.example.instaclone.exceptions;
+
+public class SelfFollowException extends RuntimeException {
+    public SelfFollowException(String msg) {
+        super(msg);
+    }
+}
@@ -1,22 +1,75 @@
 package com.example.instaclone.mapper;
 
 import com.example.instaclone.dto.PostDTO;
+import com.example.instaclone.dto.PostFeedRow;
 import com.example.instaclone.entity.Post;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.repository.ImageRepository;
+import com.example.instaclone.services.LikeCounterBuffer;
+import com.example.instaclone.services.PostLikeIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+
 @Component
+@RequiredArgsConstructor
 public class PostMapper {
 
-    public PostDTO postToPostDTO(Post post) {
+    private final LikeCounterBuffer likeCounterBuffer;
+
+    private final PostLikeIndex postLikeIndex;
+
+    private final ImageRepository imageRepository;
+
+    public PostDTO postToPostDTO(Post post, Principal viewer) {
         PostDTO postDTO = new PostDTO();
         postDTO.setId(post.getId());
         postDTO.setUserId(post.getUser().getId());
         postDTO.setUsername(post.getUser().getUsername());
         postDTO.setCaption(post.getCaption());
-        postDTO.setLikes(post.getLikes());
-        postDTO.setUsersLiked(post.getLikedUsers());
+        postDTO.setLikes(currentLikes(post.getId(), post.getLikes()));
+        postDTO.setLikedByMe(postLikeIndex.isLikedBy(post.getId(), viewerId(viewer)));
         postDTO.setLocation(post.getLocation());
         postDTO.setTitle(post.getTitle());
+        postDTO.setImagePlaceholder(imageRepository.findPostPlaceholder(post.getId()).orElse(null));
+        return postDTO;
+    }
+
+    public List<PostDTO> feedRowsToPostDTOs(List<PostFeedRow> rows, Principal viewer) {
+        Set<Long> liked = postLikeIndex.likedAmong(viewerId(viewer), rows.stream().map(PostFeedRow::getId).toList());
+        return rows.stream()
+                .map(row -> feedRowToPostDTO(row, liked.contains(row.getId())))
+                .toList();
+    }
+
+    private PostDTO feedRowToPostDTO(PostFeedRow row, boolean likedByMe) {
+        PostDTO postDTO = new PostDTO();
+        postDTO.setId(row.getId());
+        postDTO.setUserId(row.getUserId());
+        postDTO.setUsername(row.getUsername());
+        postDTO.setCaption(row.getCaption());
+        postDTO.setLikes(currentLikes(row.getId(), row.getLikes()));
+        postDTO.setLikedByMe(likedByMe);
+        postDTO.setCommentCount(row.getCommentCount());
+        postDTO.setLocation(row.getLocation());
+        postDTO.setTitle(row.getTitle());
+        postDTO.setImagePlaceholder(row.getImagePlaceholder());
         return postDTO;
     }
+
+    private int currentLikes(Long postId, Integer storedLikes) {
+        int stored = storedLikes == null ? 0 : storedLikes;
+        return (int) (stored + likeCounterBuffer.pending(postId));
+    }
+
+    private static Long viewerId(Principal viewer) {
+        if (viewer instanceof Authentication authentication && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        return null;
+    }
 }
@@ -2,11 +2,16 @@ package com.example.instaclone.mapper;
 
 import com.example.instaclone.dto.UserDTO;
 import com.example.instaclone.entity.User;
+import com.example.instaclone.repository.ImageRepository;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 @Component
+@RequiredArgsConstructor
 public class UserMapper {
 
+    private final ImageRepository imageRepository;
+
     public UserDTO userToUserDTO(User user) {
         UserDTO userDTO = new UserDTO();
         userDTO.setId(user.getId());
@@ -14,6 +19,7 @@ public class UserMapper {
         userDTO.setLastname(user.getLastname());
         userDTO.setUsername(user.getUsername());
         userDTO.setBio(user.getBio());
+        userDTO.setImagePlaceholder(imageRepository.findProfilePlaceholder(user.getId()).orElse(null));
         return userDTO;
     }
 }
@@ -0,0 +1,40 @@
+package com.example.instaclone.pagination;
+
+import com.example.instaclone.exceptions.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Position in a feed ordered by {@code (createdAt DESC, id DESC)}.
+ * Clients only ever see the encoded token, so the format can change without breaking them.
+ */
+public record FeedCursor(LocalDateTime createdAt, Long id) {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public String encode() {
+        long seconds = createdAt.toEpochSecond(ZoneOffset.UTC);
+        String raw = seconds + ":" + createdAt.getNano() + ":" + id;
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static FeedCursor decode(String token) {
+        try {
+            String raw = new String(DECODER.decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3) {
+                throw new InvalidCursorException("Malformed cursor: " + token);
+            }
+            LocalDateTime createdAt = LocalDateTime.ofEpochSecond(
+                    Long.parseLong(parts[0]), Integer.parseInt(parts[1]), ZoneOffset.UTC);
+            return new FeedCursor(createdAt, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new InvalidCursorException("Malformed cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.instaclone.pagination;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.payload.response.PageResponse;
+
+import java.util.*;
+
+/**
+ * Helpers for feeds ordered newest first by {@code (createdAt, id)}.
+ */
+public final class FeedPages {
+
+    public static final Comparator<PostFeedRow> NEWEST_FIRST = Comparator
+            .comparing(PostFeedRow::getCreatedAt)
+            .thenComparing(PostFeedRow::getId)
+            .reversed();
+
+    private FeedPages() {
+    }
+
+    /**
+     * Cuts a page out of rows fetched with a limit of {@code pageSize + 1};
+     * the extra row only signals that a next page exists.
+     */
+    public static PageResponse<PostFeedRow> slice(List<PostFeedRow> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new PageResponse<>(rows, null);
+        }
+        List<PostFeedRow> page = rows.subList(0, pageSize);
+        PostFeedRow last = page.get(pageSize - 1);
+        return new PageResponse<>(page, new FeedCursor(last.getCreatedAt(), last.getId()).encode());
+    }
+
+    /**
+     * K-way merge of sources that are each already sorted newest first.
+     * Stops after {@code limit} posts and drops posts that appear in more than one source.
+     */
+    public static List<PostFeedRow> mergeNewestFirst(List<List<PostFeedRow>> sources, int limit) {
+        if (sources.size() == 1) {
+            List<PostFeedRow> only = sources.get(0);
+            return only.size() <= limit ? only : only.subList(0, limit);
+        }
+
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> NEWEST_FIRST.compare(a.current, b.current));
+        for (List<PostFeedRow> source : sources) {
+            Iterator<PostFeedRow> iterator = source.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+
+        List<PostFeedRow> merged = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Head head = heads.poll();
+            if (seen.add(head.current.getId())) {
+                merged.add(head.current);
+            }
+            if (head.rest.hasNext()) {
+                head.current = head.rest.next();
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Head {
+        private PostFeedRow current;
+        private final Iterator<PostFeedRow> rest;
+
+        private Head(PostFeedRow current, Iterator<PostFeedRow> rest) {
+            this.current = current;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.instaclone.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Image URLs for one feed page. Ids without an image are absent from the maps.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageBatchResponse {
+
+    /** Post images keyed by post id. */
+    private Map<Long, ImageUrlResponse> posts;
+
+    /** Profile images keyed by user id. */
+    private Map<Long, ImageUrlResponse> profiles;
+}
@@ -0,0 +1,24 @@
+package com.example.instaclone.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageUrlResponse {
+
+    private String url;
+
+    /** The URL stops working after this instant; clients should fetch a new one. */
+    private Instant expiresAt;
+
+    /**
+     * Identifies the bytes behind the URL. It stays the same across re-signed URLs, so clients can keep a
+     * cached copy. Stored objects are never overwritten, so the object key alone decides it.
+     */
+    private String etag;
+}
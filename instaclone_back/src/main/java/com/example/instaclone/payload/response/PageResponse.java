@@ -0,0 +1,18 @@
+package com.example.instaclone.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageResponse<T> {
+
+    private List<T> items;
+
+    /** Opaque token for the next page, {@code null} when this is the last page. */
+    private String next;
+}
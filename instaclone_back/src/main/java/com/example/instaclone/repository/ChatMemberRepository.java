@@ -0,0 +1,26 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.dto.ChatSummaryDTO;
+import com.example.instaclone.entity.ChatMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ChatMemberRepository extends JpaRepository<ChatMember, Long> {
+
+    boolean existsByChatId(Long chatId);
+
+    /**
+     * The user's chats with the id of their latest message. The chats come from {@code idx_chat_member_user_chat},
+     * and each latest id is a single lookup at the end of {@code idx_message_chat_id}.
+     */
+    @Query("select new com.example.instaclone.dto.ChatSummaryDTO(c.chatId, c.name, " +
+            "(select max(m.ms_id) from Message m where m.chat = c)) " +
+            "from ChatMember cm join Chat c on c.chatId = cm.chatId " +
+            "where cm.userId = :userId")
+    List<ChatSummaryDTO> findSummariesByUserId(@Param("userId") Long userId);
+}
@@ -1,13 +1,38 @@
 package com.example.instaclone.repository;
 
 import com.example.instaclone.entity.Chat;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChatRepository extends JpaRepository<Chat, Long> {
     Chat findChatByName(String name);
-    List<Chat> findByParticipantContaining(String participant);
+
+    @Query("select c.chatId from Chat c where c.name = :name")
+    Optional<Long> findChatIdByName(@Param("name") String name);
+
+    /**
+     * Creates the chat unless one with this name exists already. Only the duplicate name is ignored; any
+     * other error fails the insert. The driver reports found rows, so the count does not tell whether the
+     * row was created.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into chat (name) values (:name) on duplicate key update chat_id = chat_id", nativeQuery = true)
+    void insertIfAbsent(@Param("name") String name);
+
+    /**
+     * Chats after {@code afterId} that nobody is a member of yet, in id order.
+     */
+    @Query("select c from Chat c where c.chatId > :afterId " +
+            "and not exists (select 1 from ChatMember cm where cm.chatId = c.chatId) order by c.chatId")
+    List<Chat> findWithoutMembersAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
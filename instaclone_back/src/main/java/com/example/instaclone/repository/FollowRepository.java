@@ -0,0 +1,34 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.entity.Follow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FollowRepository extends JpaRepository<Follow, Long> {
+
+    Optional<Follow> findByFollowerIdAndFolloweeId(Long followerId, Long followeeId);
+
+    boolean existsByFollowerIdAndFolloweeId(Long followerId, Long followeeId);
+
+    long countByFollowerId(Long followerId);
+
+    @Query("select f.followerId from Follow f " +
+            "where f.followeeId = :followeeId and f.followerId > :afterFollowerId " +
+            "order by f.followerId")
+    List<Long> findFollowerIdsAfter(@Param("followeeId") Long followeeId,
+                                    @Param("afterFollowerId") Long afterFollowerId,
+                                    Pageable pageable);
+
+    @Query("select f.followeeId from Follow f join User u on u.id = f.followeeId " +
+            "where f.followerId = :followerId and u.followersCount > :threshold")
+    List<Long> findHighFollowerFolloweeIds(@Param("followerId") Long followerId,
+                                           @Param("threshold") long threshold,
+                                           Pageable pageable);
+}
@@ -0,0 +1,20 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.entity.ImageBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, Long> {
+
+    /**
+     * Ids of rows still holding bytes, after {@code afterId} in id order. Only ids are selected, so no blob is read.
+     */
+    @Query("select b.id from ImageBlob b where b.imageBytes is not null and b.id > :afterId order by b.id")
+    List<Long> findLegacyIds(@Param("afterId") Long afterId, Pageable pageable);
+}
@@ -0,0 +1,37 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.entity.ImageObject;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface ImageObjectRepository extends JpaRepository<ImageObject, String> {
+
+    /**
+     * Locks the key's row until the transaction ends, creating it if needed. A duplicate primary key takes
+     * an exclusive record lock and a new key only an insert intention lock, never a gap lock, so first
+     * uploads of different keys do not block or deadlock each other.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into image_object (s3_key, generation) values (:s3Key, 0) " +
+            "on duplicate key update s3_key = s3_key", nativeQuery = true)
+    void lock(@Param("s3Key") String s3Key);
+
+    @Query("select o.generation from ImageObject o where o.s3Key = :s3Key")
+    Optional<Long> findGeneration(@Param("s3Key") String s3Key);
+
+    /**
+     * Records that the object was deleted. The caller must hold the key's lock.
+     */
+    @Modifying
+    @Transactional
+    @Query("update ImageObject o set o.generation = o.generation + 1 where o.s3Key = :s3Key")
+    int incrementGeneration(@Param("s3Key") String s3Key);
+}
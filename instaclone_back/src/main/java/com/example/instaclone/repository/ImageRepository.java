@@ -1,9 +1,16 @@
 package com.example.instaclone.repository;
 
 import com.example.instaclone.entity.ImageModel;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +21,46 @@ public interface ImageRepository extends JpaRepository<ImageModel, Long> {
     Optional<ImageModel> findByPostId(Long postId);
 
     Optional<ImageModel> findByUserIdAndPostId(Long userId, Long postId);
+
+    List<ImageModel> findByS3Key(String s3Key);
+
+    @Query("select i.placeholder from ImageModel i where i.postId = :postId")
+    Optional<String> findPostPlaceholder(@Param("postId") Long postId);
+
+    @Query("select i.placeholder from ImageModel i where i.userId = :userId and i.postId is null")
+    Optional<String> findProfilePlaceholder(@Param("userId") Long userId);
+
+    @Query("select i from ImageModel i where i.postId in :postIds")
+    List<ImageModel> findPostImages(@Param("postIds") Collection<Long> postIds);
+
+    @Query("select i from ImageModel i where i.postId is null and i.userId in :userIds")
+    List<ImageModel> findProfileImages(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Post images of {@code postIds} and profile images of {@code userIds}, in one statement.
+     * Neither collection may be empty.
+     */
+    @Query("select i from ImageModel i " +
+            "where i.postId in :postIds or (i.postId is null and i.userId in :userIds)")
+    List<ImageModel> findPostAndProfileImages(@Param("postIds") Collection<Long> postIds,
+                                              @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * The image locked until the transaction ends, so it cannot be released while it is rewritten.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from ImageModel i where i.id = :id")
+    Optional<ImageModel> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Which of {@code s3Keys} at least one image refers to.
+     */
+    @Query("select distinct i.s3Key from ImageModel i where i.s3Key in :s3Keys")
+    List<String> findReferencedKeys(@Param("s3Keys") Collection<String> s3Keys);
+
+    /**
+     * Images with a stored object and an id above {@code afterId}, in id order.
+     */
+    @Query("select i from ImageModel i where i.id > :afterId and i.s3Key is not null order by i.id")
+    List<ImageModel> findStoredAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -2,7 +2,10 @@ package com.example.instaclone.repository;
 
 import com.example.instaclone.entity.Chat;
 import com.example.instaclone.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,4 +13,23 @@ import java.util.List;
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findAllByChat(Chat chat);
-}
\ No newline at end of file
+
+    /**
+     * The newest messages of the chat, newest first. This and the two queries below are range scans of
+     * {@code idx_message_chat_id}, so a page costs the same however long the history is.
+     */
+    @Query("select m from Message m where m.chat = :chat order by m.ms_id desc")
+    List<Message> findLatest(@Param("chat") Chat chat, Pageable pageable);
+
+    /**
+     * The messages right before {@code before}, newest first.
+     */
+    @Query("select m from Message m where m.chat = :chat and m.ms_id < :before order by m.ms_id desc")
+    List<Message> findBefore(@Param("chat") Chat chat, @Param("before") Long before, Pageable pageable);
+
+    /**
+     * The messages right after {@code after}, oldest first.
+     */
+    @Query("select m from Message m where m.chat = :chat and m.ms_id > :after order by m.ms_id asc")
+    List<Message> findAfter(@Param("chat") Chat chat, @Param("after") Long after, Pageable pageable);
+}
@@ -1,10 +1,16 @@
 package com.example.instaclone.repository;
 
+import com.example.instaclone.dto.PostFeedRow;
 import com.example.instaclone.entity.Post;
 import com.example.instaclone.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,5 +21,40 @@ public interface PostRepository extends JpaRepository<Post, Long> {
 
     List<Post> findAllByOrderByCreatedAtDesc();
 
+    String FEED_ROW = "select new com.example.instaclone.dto.PostFeedRow(" +
+            "p.id, p.title, p.caption, p.location, p.likes, u.id, u.username, " +
+            "(select count(c) from Comment c where c.post.id = p.id), p.createdAt, " +
+            "(select max(i.placeholder) from ImageModel i where i.postId = p.id)) ";
+
+    @Query(FEED_ROW + "from Post p join p.user u order by p.createdAt desc, p.id desc")
+    List<PostFeedRow> findFeedFirstPage(Pageable pageable);
+
+    @Query(FEED_ROW + "from Post p join p.user u " +
+            "where p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id) " +
+            "order by p.createdAt desc, p.id desc")
+    List<PostFeedRow> findFeedPageBefore(@Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id,
+                                         Pageable pageable);
+
+    @Query(FEED_ROW + "from Post p join p.user u where u.id = :userId order by p.createdAt desc, p.id desc")
+    List<PostFeedRow> findAuthorFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(FEED_ROW + "from Post p join p.user u " +
+            "where u.id = :userId " +
+            "and (p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id)) " +
+            "order by p.createdAt desc, p.id desc")
+    List<PostFeedRow> findAuthorPageBefore(@Param("userId") Long userId,
+                                           @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id,
+                                           Pageable pageable);
+
     Optional<Post> findPostByIdAndUser(Long id, User user);
+
+    @Modifying
+    @Query(value = "insert ignore into post_like (post_id, user_id) values (:postId, :userId)", nativeQuery = true)
+    int insertLike(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "delete from post_like where post_id = :postId and user_id = :userId", nativeQuery = true)
+    int deleteLike(@Param("postId") Long postId, @Param("userId") Long userId);
 }
@@ -0,0 +1,42 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.entity.TimelineEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TimelineRepository extends JpaRepository<TimelineEntry, Long> {
+
+    @Query(PostRepository.FEED_ROW + "from TimelineEntry t join Post p on p.id = t.postId join p.user u " +
+            "where t.userId = :userId " +
+            "order by t.createdAt desc, t.postId desc")
+    List<PostFeedRow> findHomeFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(PostRepository.FEED_ROW + "from TimelineEntry t join Post p on p.id = t.postId join p.user u " +
+            "where t.userId = :userId " +
+            "and (t.createdAt < :createdAt or (t.createdAt = :createdAt and t.postId < :postId)) " +
+            "order by t.createdAt desc, t.postId desc")
+    List<PostFeedRow> findHomePageBefore(@Param("userId") Long userId,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("postId") Long postId,
+                                         Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TimelineEntry t where t.postId = :postId")
+    int deleteByPostId(@Param("postId") Long postId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TimelineEntry t where t.userId = :userId and t.authorId = :authorId")
+    int deleteByUserIdAndAuthorId(@Param("userId") Long userId, @Param("authorId") Long authorId);
+}
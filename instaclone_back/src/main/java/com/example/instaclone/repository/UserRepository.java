@@ -2,7 +2,11 @@ package com.example.instaclone.repository;
 
 import com.example.instaclone.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -15,4 +19,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findUserById(Long id);
 
+    @Modifying
+    @Transactional
+    @Query("update User u set u.followersCount = u.followersCount + :delta where u.id = :id")
+    int adjustFollowersCount(@Param("id") Long id, @Param("delta") long delta);
+
 }
@@ -0,0 +1,390 @@
+package com.example.instaclone.s3;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for object bodies, in two tiers. Small objects such as avatars stay on heap.
+ * Everything up to {@code disk-max-object} is kept in files under {@code dir} and read back through
+ * memory-mapped buffers. Each tier is bounded by bytes and evicts with Caffeine's W-TinyLFU policy.
+ * Larger objects, and objects whose size S3 does not report, pass straight through. Concurrent misses
+ * for the same key share one download.
+ * <p>
+ * The file index only lives in memory, so files left from a previous run are deleted on startup.
+ * Hit ratios are published as {@code s3.cache.hit.ratio} tagged with the tier. The full
+ * {@code cache.*} meters are published as {@code cache=s3.memory} and {@code cache=s3.disk}.
+ */
+@Component
+@Slf4j
+public class ObjectCache {
+
+    private final Cache<String, CachedBytes> memory;
+
+    private final Cache<String, CachedFile> disk;
+
+    private final Path dir;
+
+    private final long memoryMaxObject;
+
+    private final long diskMaxObject;
+
+    /**
+     * The download running for each key that missed. Later misses for the key wait for it instead of going
+     * to S3 again. An invalidation removes the key's entry, and a download is only cached while its entry
+     * is still in place, so bytes replaced mid-download are served to the waiting callers but never kept.
+     */
+    private final ConcurrentMap<String, CompletableFuture<Void>> loads = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ObjectCache(MeterRegistry meterRegistry,
+                       @Value("${aws.s3.cache.dir:${java.io.tmpdir}/instaclone-object-cache}") Path dir,
+                       @Value("${aws.s3.cache.memory-size:64MB}") DataSize memorySize,
+                       @Value("${aws.s3.cache.memory-max-object:256KB}") DataSize memoryMaxObject,
+                       @Value("${aws.s3.cache.disk-size:1GB}") DataSize diskSize,
+                       @Value("${aws.s3.cache.disk-max-object:16MB}") DataSize diskMaxObject) throws IOException {
+        this.dir = dir;
+        this.memoryMaxObject = memoryMaxObject.toBytes();
+        this.diskMaxObject = Math.min(diskMaxObject.toBytes(), Integer.MAX_VALUE);
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(memorySize.toBytes())
+                .<String, CachedBytes>weigher((key, cached) -> cached.bytes().length)
+                .recordStats()
+                .build();
+        this.disk = Caffeine.newBuilder()
+                .maximumWeight(diskSize.toBytes())
+                .<String, CachedFile>weigher((key, cached) -> (int) cached.size())
+                .removalListener((String key, CachedFile cached, RemovalCause cause) -> deleteQuietly(cached.path()))
+                // Evict and delete on the calling thread so the directory never runs past its budget.
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        Files.createDirectories(dir);
+        clearDirectory();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "s3.memory");
+        CaffeineCacheMetrics.monitor(meterRegistry, disk, "s3.disk");
+        Gauge.builder("s3.cache.hit.ratio", memory, cache -> cache.stats().hitRate())
+                .tag("tier", "memory")
+                .register(meterRegistry);
+        Gauge.builder("s3.cache.hit.ratio", disk, cache -> cache.stats().hitRate())
+                .tag("tier", "disk")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the object from the nearest tier that holds it, otherwise from {@code origin}, caching the
+     * body on the way. If the object is already being downloaded, waits for that download instead.
+     * The caller must close the returned stream.
+     */
+    public ResponseInputStream<GetObjectResponse> open(String bucketName, String key,
+                                                       Supplier<ResponseInputStream<GetObjectResponse>> origin) {
+        String cacheKey = bucketName + "/" + key;
+        while (true) {
+            ResponseInputStream<GetObjectResponse> cached = lookup(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            CompletableFuture<Void> load = new CompletableFuture<>();
+            CompletableFuture<Void> running = loads.putIfAbsent(cacheKey, load);
+            if (running == null) {
+                return load(cacheKey, load, origin);
+            }
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            // Looks again: the download may not have been kept.
+        }
+    }
+
+    /**
+     * Like {@link #open}, but without blocking on a miss. {@code origin} is handed a fresh path in the cache
+     * directory and must download the object into that file. No thread waits while it does. An object
+     * above {@code disk-max-object} is served from the downloaded file once and not kept.
+     */
+    public CompletableFuture<ResponseInputStream<GetObjectResponse>> openAsync(
+            String bucketName, String key, Function<Path, CompletableFuture<GetObjectResponse>> origin) {
+        String cacheKey = bucketName + "/" + key;
+        ResponseInputStream<GetObjectResponse> cached = lookup(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Void> load = new CompletableFuture<>();
+        CompletableFuture<Void> running = loads.putIfAbsent(cacheKey, load);
+        if (running != null) {
+            return running.thenCompose(done -> openAsync(bucketName, key, origin));
+        }
+
+        Path file = dir.resolve("object-" + UUID.randomUUID() + ".bin");
+        CompletableFuture<GetObjectResponse> download;
+        try {
+            download = origin.apply(file);
+        } catch (RuntimeException e) {
+            download = CompletableFuture.failedFuture(e);
+        }
+        return download
+                .thenApply(response -> {
+                    try {
+                        CachedFile loaded = new CachedFile(file, Files.size(file), response.contentType());
+                        if (loaded.size() > diskMaxObject) {
+                            ResponseInputStream<GetObjectResponse> served =
+                                    stream(loaded.contentType(), loaded.size(), new ByteBufferInputStream(map(loaded)));
+                            deleteQuietly(file);
+                            return served;
+                        }
+                        return admit(cacheKey, load, loaded);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .whenComplete((served, failure) -> {
+                    if (failure != null) {
+                        deleteQuietly(file);
+                    }
+                    finish(cacheKey, load, failure);
+                });
+    }
+
+    /**
+     * Drops the object from both tiers. Called after every write and delete of the key.
+     */
+    public void invalidate(String bucketName, String key) {
+        String cacheKey = bucketName + "/" + key;
+        // In this order, so a download or promotion racing the invalidation is undone by the next step.
+        loads.remove(cacheKey);
+        disk.invalidate(cacheKey);
+        memory.invalidate(cacheKey);
+    }
+
+    /**
+     * Opens the object from the nearest tier that holds it, or returns {@code null} on a miss.
+     */
+    private ResponseInputStream<GetObjectResponse> lookup(String cacheKey) {
+        CachedBytes inMemory = memory.getIfPresent(cacheKey);
+        if (inMemory != null) {
+            return stream(inMemory.contentType(), inMemory.bytes().length, new ByteArrayInputStream(inMemory.bytes()));
+        }
+
+        CachedFile onDisk = disk.getIfPresent(cacheKey);
+        if (onDisk != null) {
+            try {
+                if (onDisk.size() > memoryMaxObject) {
+                    return stream(onDisk.contentType(), onDisk.size(), new ByteBufferInputStream(map(onDisk)));
+                }
+                CachedBytes promoted = copyToHeap(onDisk);
+                memory.put(cacheKey, promoted);
+                if (disk.asMap().get(cacheKey) != onDisk) {
+                    // Invalidated or replaced while it was being copied.
+                    memory.asMap().remove(cacheKey, promoted);
+                }
+                return stream(promoted.contentType(), promoted.bytes().length, new ByteArrayInputStream(promoted.bytes()));
+            } catch (NoSuchFileException e) {
+                // Evicted between the lookup and the read.
+                disk.asMap().remove(cacheKey, onDisk);
+            } catch (IOException e) {
+                log.warn("Cannot read cached object {}, falling back to S3", cacheKey, e);
+                disk.asMap().remove(cacheKey, onDisk);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Downloads the object as the key's only running load.
+     */
+    private ResponseInputStream<GetObjectResponse> load(String cacheKey, CompletableFuture<Void> load,
+                                                        Supplier<ResponseInputStream<GetObjectResponse>> origin) {
+        Throwable failure = null;
+        try {
+            ResponseInputStream<GetObjectResponse> object = origin.get();
+            Long size = object.response().contentLength();
+            if (size == null || size > diskMaxObject) {
+                return object;
+            }
+            try (object) {
+                return admit(cacheKey, load, download(object, size));
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            finish(cacheKey, load, failure);
+        }
+    }
+
+    /**
+     * Serves a freshly downloaded file and keeps it in the cache, unless the key was invalidated since
+     * {@code load} started. The check and the insert happen under the key's entry in {@link #loads}, so an
+     * invalidation either comes first and the file is dropped, or comes after and removes it again.
+     */
+    private ResponseInputStream<GetObjectResponse> admit(String cacheKey, CompletableFuture<Void> load,
+                                                         CachedFile loaded) throws IOException {
+        CachedBytes bytes;
+        ResponseInputStream<GetObjectResponse> served;
+        try {
+            if (loaded.size() <= memoryMaxObject) {
+                bytes = copyToHeap(loaded);
+                served = stream(bytes.contentType(), bytes.bytes().length, new ByteArrayInputStream(bytes.bytes()));
+            } else {
+                bytes = null;
+                served = stream(loaded.contentType(), loaded.size(), new ByteBufferInputStream(map(loaded)));
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(loaded.path());
+            throw e;
+        }
+        AtomicBoolean admitted = new AtomicBoolean();
+        loads.computeIfPresent(cacheKey, (k, current) -> {
+            if (current == load) {
+                disk.put(k, loaded);
+                if (bytes != null) {
+                    memory.put(k, bytes);
+                }
+                admitted.set(true);
+            }
+            return current;
+        });
+        if (!admitted.get()) {
+            deleteQuietly(loaded.path());
+        }
+        return served;
+    }
+
+    /**
+     * Ends the key's load and wakes the callers waiting for it. They look the key up again, or see
+     * {@code failure} if there was one.
+     */
+    private void finish(String cacheKey, CompletableFuture<Void> load, Throwable failure) {
+        loads.remove(cacheKey, load);
+        if (failure == null) {
+            load.complete(null);
+        } else {
+            load.completeExceptionally(failure);
+        }
+    }
+
+    private CachedFile download(ResponseInputStream<GetObjectResponse> object, long size) throws IOException {
+        Path file = Files.createTempFile(dir, "object-", ".bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            long copied = object.transferTo(out);
+            if (copied != size) {
+                throw new IOException("Expected " + size + " bytes from S3 but read " + copied);
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        return new CachedFile(file, size, object.response().contentType());
+    }
+
+    /**
+     * The mapping stays valid even if the file is evicted and deleted while the response is being written.
+     */
+    private static MappedByteBuffer map(CachedFile cached) throws IOException {
+        try (FileChannel channel = FileChannel.open(cached.path(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, cached.size());
+        }
+    }
+
+    private static CachedBytes copyToHeap(CachedFile cached) throws IOException {
+        byte[] bytes = new byte[(int) cached.size()];
+        map(cached).get(bytes);
+        return new CachedBytes(bytes, cached.contentType());
+    }
+
+    private static ResponseInputStream<GetObjectResponse> stream(String contentType, long size, InputStream body) {
+        return new ResponseInputStream<>(
+                GetObjectResponse.builder().contentType(contentType).contentLength(size).build(), body);
+    }
+
+    private void clearDirectory() throws IOException {
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(dir, "object-*.bin")) {
+            for (Path leftover : leftovers) {
+                deleteQuietly(leftover);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete cached object file {}", file, e);
+        }
+    }
+
+    private record CachedBytes(byte[] bytes, String contentType) {
+    }
+
+    private record CachedFile(Path path, long size, String contentType) {
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
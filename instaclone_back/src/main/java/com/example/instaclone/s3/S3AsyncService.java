@@ -0,0 +1,36 @@
+package com.example.instaclone.s3;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link S3Service} for serving images. A miss in {@link ObjectCache} is
+ * downloaded by the Netty event loop straight into the cache directory, so no request thread waits on S3.
+ */
+@Service
+@RequiredArgsConstructor
+public class S3AsyncService {
+
+    private final S3AsyncClient s3AsyncClient;
+
+    private final ObjectCache objectCache;
+
+    /**
+     * Completes with the object opened for streaming once its body is local; the caller must close the stream.
+     */
+    public CompletableFuture<ResponseInputStream<GetObjectResponse>> openObject(String bucketName, String key) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        return objectCache.openAsync(bucketName, key,
+                file -> s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toFile(file)));
+    }
+}
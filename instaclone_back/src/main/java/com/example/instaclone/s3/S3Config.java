@@ -3,8 +3,12 @@ package com.example.instaclone.s3;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 @Configuration
 public class S3Config {
@@ -18,4 +22,29 @@ public class S3Config {
                 .region(Region.of(awsRegion))
                 .build();
     }
+
+    /**
+     * Non-blocking client for image reads. A fixed number of event loop threads serves every request, so the
+     * thread count does not grow with traffic. At most {@code max-concurrency} connections are open at once;
+     * further requests wait for a connection, and more than {@code max-pending} waiting ones fail fast.
+     */
+    @Bean
+    public S3AsyncClient s3AsyncClient(@Value("${aws.s3.async.max-concurrency:64}") int maxConcurrency,
+                                       @Value("${aws.s3.async.max-pending:1000}") int maxPending,
+                                       @Value("${aws.s3.async.event-loop-threads:2}") int eventLoopThreads) {
+        return S3AsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConcurrency)
+                        .maxPendingConnectionAcquires(maxPending)
+                        .eventLoopGroupBuilder(SdkEventLoopGroup.builder().numberOfThreads(eventLoopThreads)))
+                .build();
+    }
+
+    @Bean
+    public S3Presigner s3Presigner() {
+        return S3Presigner.builder()
+                .region(Region.of(awsRegion))
+                .build();
+    }
 }
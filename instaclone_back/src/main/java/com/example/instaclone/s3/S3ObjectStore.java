@@ -0,0 +1,96 @@
+package com.example.instaclone.s3;
+
+import com.example.instaclone.storage.ObjectPage;
+import com.example.instaclone.storage.ObjectStore;
+import com.example.instaclone.storage.SignedUrl;
+import com.example.instaclone.storage.StoredObject;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link ObjectStore} over the image bucket. Reads go through {@link ObjectCache}; URLs are presigned.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3", matchIfMissing = true)
+@RequiredArgsConstructor
+public class S3ObjectStore implements ObjectStore {
+
+    /** Upper bound S3 puts on both {@code DeleteObjects} and {@code ListObjectsV2}. */
+    private static final int MAX_KEYS_PER_REQUEST = 1000;
+
+    private final S3Service s3Service;
+
+    private final S3AsyncService s3AsyncService;
+
+    private final S3UrlSigner s3UrlSigner;
+
+    private final S3Buckets s3Buckets;
+
+    @Override
+    public void put(String key, InputStream content, long size, String contentType) throws IOException {
+        s3Service.putObject(s3Buckets.getImgBucket(), key, content, size, contentType);
+    }
+
+    @Override
+    public StoredObject open(String key) {
+        return stored(s3Service.openObject(s3Buckets.getImgBucket(), key));
+    }
+
+    @Override
+    public CompletableFuture<StoredObject> openAsync(String key) {
+        return s3AsyncService.openObject(s3Buckets.getImgBucket(), key).thenApply(S3ObjectStore::stored);
+    }
+
+    @Override
+    public void delete(String key) {
+        s3Service.deleteObject(s3Buckets.getImgBucket(), key);
+    }
+
+    @Override
+    public int deleteAll(Collection<String> keys) {
+        List<String> remaining = List.copyOf(keys);
+        int deleted = 0;
+        for (int from = 0; from < remaining.size(); from += MAX_KEYS_PER_REQUEST) {
+            List<String> batch = remaining.subList(from, Math.min(from + MAX_KEYS_PER_REQUEST, remaining.size()));
+            deleted += s3Service.deleteObjects(s3Buckets.getImgBucket(), batch);
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return s3Service.objectExists(s3Buckets.getImgBucket(), key);
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        ListObjectsV2Response response = s3Service.listObjects(s3Buckets.getImgBucket(), prefix, cursor,
+                Math.min(limit, MAX_KEYS_PER_REQUEST));
+        List<ObjectPage.Entry> objects = response.contents().stream()
+                .map(object -> new ObjectPage.Entry(object.key(), object.lastModified()))
+                .toList();
+        return new ObjectPage(objects, response.isTruncated() ? response.nextContinuationToken() : null);
+    }
+
+    @Override
+    public SignedUrl signedUrl(String key) {
+        PresignedGetObjectRequest presigned = s3UrlSigner.presignGetObject(s3Buckets.getImgBucket(), key);
+        return new SignedUrl(presigned.url().toString(), presigned.expiration());
+    }
+
+    private static StoredObject stored(ResponseInputStream<GetObjectResponse> object) {
+        Long size = object.response().contentLength();
+        return new StoredObject(object, size == null ? -1 : size, object.response().contentType());
+    }
+}
@@ -1,49 +1,224 @@
 package com.example.instaclone.s3;
 
-import lombok.AllArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 @Service
-@AllArgsConstructor
+@Slf4j
 public class S3Service {
 
+    static final DataSize MIN_PART_SIZE = DataSize.ofMegabytes(5);
+
     private final S3Client s3Client;
 
+    private final UploadBufferPool uploadBufferPool;
+
+    private final ObjectCache objectCache;
+
+    @Autowired
+    public S3Service(S3Client s3Client, UploadBufferPool uploadBufferPool, ObjectCache objectCache) {
+        this.s3Client = s3Client;
+        this.uploadBufferPool = uploadBufferPool;
+        this.objectCache = objectCache;
+    }
+
+    /**
+     * Upload buffers double as multipart parts, and S3 rejects parts smaller than 5 MB other than the last.
+     */
+    @PostConstruct
+    public void checkPartSize() {
+        if (uploadBufferPool.getBufferSize() < MIN_PART_SIZE.toBytes()) {
+            throw new IllegalStateException("aws.s3.upload.part-size must be at least " + MIN_PART_SIZE
+                    + ", is " + uploadBufferPool.getBufferSize() + "B");
+        }
+    }
+
     public void putObject(String bucketName, String key, byte[] file) {
         PutObjectRequest objectRequest = PutObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
                 .build();
         s3Client.putObject(objectRequest, RequestBody.fromBytes(file));
+        objectCache.invalidate(bucketName, key);
     }
 
-    public byte[] getObject(String bucketName, String key) {
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+    /**
+     * Streams {@code content} to S3 without holding the whole object on heap. Objects that fit in
+     * one upload buffer go up as a single streamed put; larger or unknown-size objects use a multipart
+     * upload, with each part read into a buffer borrowed from {@link UploadBufferPool}. An unknown-size
+     * object that turns out to fit in the first buffer, including an empty one, is put in one request.
+     *
+     * @param size content length in bytes, or {@code -1} if unknown
+     */
+    public void putObject(String bucketName, String key, InputStream content, long size, String contentType) throws IOException {
+        if (size >= 0 && size <= uploadBufferPool.getBufferSize()) {
+            PutObjectRequest objectRequest = PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentLength(size)
+                    .build();
+            s3Client.putObject(objectRequest, RequestBody.fromInputStream(content, size));
+        } else {
+            multipartUpload(bucketName, key, content, contentType);
+        }
+        objectCache.invalidate(bucketName, key);
+    }
+
+    private void multipartUpload(String bucketName, String key, InputStream content, String contentType) throws IOException {
+        byte[] buffer = uploadBufferPool.acquire();
+        try {
+            int read = content.readNBytes(buffer, 0, buffer.length);
+            if (read < buffer.length) {
+                // S3 rejects a multipart upload without parts, and one part needs no multipart upload.
+                s3Client.putObject(PutObjectRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .contentType(contentType)
+                                .contentLength((long) read)
+                                .build(),
+                        RequestBody.fromBytes(Arrays.copyOf(buffer, read)));
+                return;
+            }
+            multipartUpload(bucketName, key, content, contentType, buffer, read);
+        } finally {
+            uploadBufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * @param read bytes of the first part, already in {@code buffer}
+     */
+    private void multipartUpload(String bucketName, String key, InputStream content, String contentType,
+                                 byte[] buffer, int read) throws IOException {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
                 .bucket(bucketName)
                 .key(key)
-                .build();
-        ResponseInputStream<GetObjectResponse> object = s3Client.getObject(getObjectRequest);
+                .contentType(contentType)
+                .build()).uploadId();
+        List<CompletedPart> parts = new ArrayList<>();
         try {
+            int partNumber = 1;
+            do {
+                int length = read;
+                UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) length)
+                                .build(),
+                        RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer, 0, length),
+                                length, "application/octet-stream"));
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+                partNumber++;
+            } while ((read = content.readNBytes(buffer, 0, buffer.length)) > 0);
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Multipart upload of {} failed after {} parts, aborting", key, parts.size());
+            try {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build());
+            } catch (RuntimeException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+    }
+
+    public byte[] getObject(String bucketName, String key) {
+        try (ResponseInputStream<GetObjectResponse> object = openObject(bucketName, key)) {
             return object.readAllBytes();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Opens the object for streaming, reading through {@link ObjectCache}; the caller must close the returned stream.
+     */
+    public ResponseInputStream<GetObjectResponse> openObject(String bucketName, String key) {
+        return objectCache.open(bucketName, key, () -> s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build()));
+    }
+
+    /**
+     * One page of up to {@code maxKeys} keys under {@code prefix}, in key order.
+     *
+     * @param continuationToken {@code nextContinuationToken} of the previous page, or {@code null} for the first
+     */
+    public ListObjectsV2Response listObjects(String bucketName, String prefix, String continuationToken, int maxKeys) {
+        return s3Client.listObjectsV2(ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .continuationToken(continuationToken)
+                .maxKeys(maxKeys)
+                .build());
+    }
+
+    public boolean objectExists(String bucketName, String key) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes up to 1000 keys with one {@code DeleteObjects} request and returns how many S3 reported deleted.
+     */
+    public int deleteObjects(String bucketName, Collection<String> keys) {
+        DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder()
+                        .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                        .quiet(false)
+                        .build())
+                .build());
+        for (String key : keys) {
+            objectCache.invalidate(bucketName, key);
+        }
+        for (S3Error error : response.errors()) {
+            log.warn("Cannot delete {}: {} {}", error.key(), error.code(), error.message());
+        }
+        return response.deleted().size();
+    }
+
     public void deleteObject(String bucketName, String key) {
         DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
                 .build();
         s3Client.deleteObject(deleteObjectRequest);
+        objectCache.invalidate(bucketName, key);
     }
 }
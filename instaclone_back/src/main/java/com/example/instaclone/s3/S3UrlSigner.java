@@ -0,0 +1,33 @@
+package com.example.instaclone.s3;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+
+import java.time.Duration;
+
+/**
+ * Issues time-limited GET URLs so clients can fetch images from S3 directly.
+ */
+@Service
+@RequiredArgsConstructor
+public class S3UrlSigner {
+
+    private final S3Presigner s3Presigner;
+
+    @Value("${aws.s3.presign.ttl:10m}")
+    private Duration ttl = Duration.ofMinutes(10);
+
+    public PresignedGetObjectRequest presignGetObject(String bucketName, String key) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        return s3Presigner.presignGetObject(builder -> builder
+                .signatureDuration(ttl)
+                .getObjectRequest(getObjectRequest));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.instaclone.s3;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fixed set of part-sized buffers shared by all multipart uploads. At most {@code buffers} are
+ * ever allocated, so upload memory is capped at {@code buffers * part-size} however many uploads
+ * run; an upload waits for a free buffer instead of allocating another one.
+ */
+@Component
+public class UploadBufferPool {
+
+    private final int bufferSize;
+
+    private final BlockingQueue<byte[]> free;
+
+    /** Buffers that may still be allocated; allocation is lazy so idle instances stay small. */
+    private final Semaphore unallocated;
+
+    @Autowired
+    public UploadBufferPool(@Value("${aws.s3.upload.part-size:8MB}") DataSize partSize,
+                            @Value("${aws.s3.upload.buffers:8}") int buffers) {
+        this.bufferSize = Math.toIntExact(partSize.toBytes());
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.unallocated = new Semaphore(buffers);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public byte[] acquire() throws InterruptedIOException {
+        byte[] buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (unallocated.tryAcquire()) {
+            return new byte[bufferSize];
+        }
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an upload buffer");
+        }
+    }
+
+    public void release(byte[] buffer) {
+        free.offer(buffer);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.instaclone.security;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -31,7 +32,10 @@ public class SecurityConfig {
                 .exceptionHandling(eh -> eh.authenticationEntryPoint(jwtAuthenticationEntryPoint))
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(authz -> authz
+                        // Async results are written on a second dispatch of a request that was already authorized.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/chat/**",
+                                "/api/objects",
                                 "/swagger-ui/**",
                                 "/v3/api-docs/**",
                                 SecurityConstants.SIGN_UP_URLS).permitAll()
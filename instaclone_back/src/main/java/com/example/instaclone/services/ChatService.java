@@ -1,21 +1,78 @@
 package com.example.instaclone.services;
 
+import com.example.instaclone.dto.ChatSummaryDTO;
 import com.example.instaclone.entity.Chat;
+import com.example.instaclone.entity.ChatMember;
+import com.example.instaclone.entity.Message;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.exceptions.ChatNameTooLongException;
+import com.example.instaclone.repository.ChatMemberRepository;
 import com.example.instaclone.repository.ChatRepository;
+import com.example.instaclone.repository.MessageRepository;
+import com.example.instaclone.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class ChatService {
 
+    /** Chat names are the two members' usernames joined by this. */
+    private static final String MEMBER_SEPARATOR = "&";
+
+    private static final int PREVIEW_LENGTH = 100;
+
+    static final String CHAT_ID_CACHE_NAME = "chatIds";
+
     private final ChatRepository chatRepository;
+    private final ChatMemberRepository chatMemberRepository;
+    private final MessageRepository messageRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Chat name to id. A chat's name and id never change, so entries only leave the cache by
+     * size-based eviction once there are more than {@code chat.cache.max-entries} of them.
+     */
+    private final Cache<String, Long> chatIds;
 
     @Autowired
-    public ChatService(ChatRepository chatRepository) {
+    public ChatService(ChatRepository chatRepository, ChatMemberRepository chatMemberRepository,
+                       MessageRepository messageRepository, UserRepository userRepository,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       @Value("${chat.cache.max-entries:100000}") long maxEntries) {
         this.chatRepository = chatRepository;
+        this.chatMemberRepository = chatMemberRepository;
+        this.messageRepository = messageRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chatIds = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, chatIds, CHAT_ID_CACHE_NAME);
     }
 
     public Chat save(Chat chat) {
@@ -28,8 +85,115 @@ public class ChatService {
         return chatRepository.findChatByName(name);
     }
 
-    public List<Chat> findByParticipant(String participant) {
-        log.info("Finding chats by participant: {}", participant);
-        return chatRepository.findByParticipantContaining(participant);
+    /**
+     * A reference to the chat with this name, if it exists. Only the id and name of the returned chat are
+     * set. Chats that do not exist are looked up again next time, since they may be created meanwhile.
+     */
+    public Optional<Chat> findChat(String name) {
+        Long chatId = chatIds.getIfPresent(name);
+        if (chatId == null) {
+            Optional<Long> found = chatRepository.findChatIdByName(name);
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            chatId = found.get();
+            chatIds.put(name, chatId);
+        }
+        Chat chat = new Chat(name);
+        chat.setChatId(chatId);
+        return Optional.of(chat);
+    }
+
+    /**
+     * A reference to the chat with this name, created along with its memberships if it does not exist yet.
+     * Only the id and name of the returned chat are set. Once a chat's id is cached this does not touch
+     * the database.
+     */
+    public Chat findOrCreateChat(String name) {
+        Chat chat = new Chat(name);
+        chat.setChatId(chatIds.get(name, this::findOrCreateChatId));
+        return chat;
+    }
+
+    /**
+     * Relies on the unique chat name: when two servers create the same chat at once, the second insert
+     * waits for the first to commit and finds its row, members included, so only the first adds them.
+     */
+    private Long findOrCreateChatId(String name) {
+        if (name.length() > Chat.NAME_MAX_LENGTH) {
+            throw new ChatNameTooLongException("Chat name is longer than " + Chat.NAME_MAX_LENGTH + " characters");
+        }
+        return chatRepository.findChatIdByName(name).orElseGet(() -> transactionTemplate.execute(status -> {
+            chatRepository.insertIfAbsent(name);
+            Long chatId = chatRepository.findChatIdByName(name)
+                    .orElseThrow(() -> new IllegalStateException("Chat " + name + " was neither created nor found"));
+            if (!chatMemberRepository.existsByChatId(chatId)) {
+                Chat chat = new Chat(name);
+                chat.setChatId(chatId);
+                addMembers(chat);
+                log.info("Created new chat: {}", chat);
+            }
+            return chatId;
+        }));
+    }
+
+    /**
+     * The user's chats, the one with the latest message first.
+     */
+    public List<ChatSummaryDTO> findSummaries(Principal principal) {
+        User user = userRepository.findUserByUsername(principal.getName())
+                .orElseThrow(() -> new UsernameNotFoundException("Username not found"));
+        List<ChatSummaryDTO> summaries = chatMemberRepository.findSummariesByUserId(user.getId());
+        List<Long> lastMessageIds = summaries.stream().map(ChatSummaryDTO::getLastMessageId).filter(Objects::nonNull).toList();
+        Map<Long, Message> lastMessages = messageRepository.findAllById(lastMessageIds).stream()
+                .collect(Collectors.toMap(Message::getMs_id, Function.identity()));
+        for (ChatSummaryDTO summary : summaries) {
+            Message last = lastMessages.get(summary.getLastMessageId());
+            if (last != null) {
+                summary.setLastSender(last.getSender());
+                summary.setLastMessage(preview(last.getContent()));
+                summary.setLastActivity(last.getT_stamp());
+            }
+        }
+        return summaries.stream()
+                .sorted(Comparator.comparing(ChatSummaryDTO::getLastMessageId, Comparator.nullsLast(Comparator.reverseOrder())))
+                .toList();
+    }
+
+    /**
+     * Gives chats from before memberships existed their members, taken from the chat name.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void addMissingMembers() {
+        int updated = 0;
+        long afterId = 0;
+        List<Chat> chats;
+        while (!(chats = chatRepository.findWithoutMembersAfter(afterId, PageRequest.ofSize(500))).isEmpty()) {
+            for (Chat chat : chats) {
+                addMembers(chat);
+                afterId = chat.getChatId();
+                updated++;
+            }
+        }
+        if (updated > 0) {
+            log.info("Added members to {} chat(s) created before memberships", updated);
+        }
+    }
+
+    private void addMembers(Chat chat) {
+        List<ChatMember> members = Arrays.stream(chat.getName().split(MEMBER_SEPARATOR))
+                .distinct()
+                .map(userRepository::findUserByUsername)
+                .flatMap(Optional::stream)
+                .map(user -> new ChatMember(chat.getChatId(), user.getId()))
+                .toList();
+        chatMemberRepository.saveAll(members);
+    }
+
+    private static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH) + "…";
     }
 }
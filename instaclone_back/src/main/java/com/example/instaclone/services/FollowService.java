@@ -0,0 +1,93 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.Follow;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.exceptions.SelfFollowException;
+import com.example.instaclone.repository.FollowRepository;
+import com.example.instaclone.repository.TimelineRepository;
+import com.example.instaclone.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.security.Principal;
+
+@Service
+@Slf4j
+public class FollowService {
+
+    private final FollowRepository followRepository;
+
+    private final UserRepository userRepository;
+
+    private final TimelineRepository timelineRepository;
+
+    private final TimelineFanoutService timelineFanoutService;
+
+    private final HomeTimelineService homeTimelineService;
+
+    @Autowired
+    public FollowService(FollowRepository followRepository,
+                         UserRepository userRepository,
+                         TimelineRepository timelineRepository,
+                         TimelineFanoutService timelineFanoutService,
+                         HomeTimelineService homeTimelineService) {
+        this.followRepository = followRepository;
+        this.userRepository = userRepository;
+        this.timelineRepository = timelineRepository;
+        this.timelineFanoutService = timelineFanoutService;
+        this.homeTimelineService = homeTimelineService;
+    }
+
+    public void follow(Long followeeId, Principal principal) {
+        User follower = getUserByPrincipal(principal);
+        if (follower.getId().equals(followeeId)) {
+            throw new SelfFollowException("User cannot follow themselves");
+        }
+        User followee = userRepository.findById(followeeId)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        if (followRepository.existsByFollowerIdAndFolloweeId(follower.getId(), followee.getId())) {
+            return;
+        }
+        try {
+            followRepository.save(new Follow(follower.getId(), followee.getId()));
+        } catch (DataIntegrityViolationException e) {
+            // Lost a race with a concurrent follow request; the relationship exists either way.
+            return;
+        }
+        userRepository.adjustFollowersCount(followee.getId(), 1);
+        log.info("User {} follows User {}", follower.getId(), followee.getId());
+        if (!homeTimelineService.isHighFollowerAccount(followee)) {
+            timelineFanoutService.backfill(follower.getId(), followee.getId());
+        }
+    }
+
+    public void unfollow(Long followeeId, Principal principal) {
+        User follower = getUserByPrincipal(principal);
+        followRepository.findByFollowerIdAndFolloweeId(follower.getId(), followeeId).ifPresent(follow -> {
+            followRepository.delete(follow);
+            userRepository.adjustFollowersCount(followeeId, -1);
+            timelineRepository.deleteByUserIdAndAuthorId(follower.getId(), followeeId);
+            log.info("User {} unfollowed User {}", follower.getId(), followeeId);
+        });
+    }
+
+    public long getFollowersCount(Long userId) {
+        return userRepository.findById(userId)
+                .map(User::getFollowersCount)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+    }
+
+    public long getFollowingCount(Long userId) {
+        return followRepository.countByFollowerId(userId);
+    }
+
+    private User getUserByPrincipal(Principal principal) {
+        String username = principal.getName();
+        return userRepository.findUserByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("Username not found"));
+    }
+}
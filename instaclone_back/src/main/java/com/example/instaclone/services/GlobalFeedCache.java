@@ -0,0 +1,88 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.events.PostDeletedEvent;
+import com.example.instaclone.pagination.FeedCursor;
+import com.example.instaclone.pagination.FeedPages;
+import com.example.instaclone.payload.response.PageResponse;
+import com.example.instaclone.repository.PostRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Shared stale-while-revalidate cache of global feed pages, which are the same for every caller.
+ * A page older than {@code feed.cache.refresh-ms} is still served while a single background load
+ * replaces it; Caffeine never runs two loads for the same page at once. Pages older than
+ * {@code feed.cache.expire-ms} are no longer served and are loaded inline.
+ */
+@Service
+@Slf4j
+public class GlobalFeedCache {
+
+    static final String CACHE_NAME = "globalFeed";
+
+    private final PostRepository postRepository;
+
+    private final LoadingCache<PageKey, PageResponse<PostFeedRow>> cache;
+
+    @Autowired
+    public GlobalFeedCache(PostRepository postRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${feed.cache.refresh-ms:1000}") long refreshMillis,
+                           @Value("${feed.cache.expire-ms:10000}") long expireMillis,
+                           @Value("${feed.cache.max-pages:1000}") long maxPages) {
+        this(postRepository, meterRegistry, refreshMillis, expireMillis, maxPages, Ticker.systemTicker());
+    }
+
+    GlobalFeedCache(PostRepository postRepository, MeterRegistry meterRegistry, long refreshMillis,
+                    long expireMillis, long maxPages, Ticker ticker) {
+        this.postRepository = postRepository;
+        this.cache = Caffeine.newBuilder()
+                .ticker(ticker)
+                .maximumSize(maxPages)
+                .refreshAfterWrite(Duration.ofMillis(refreshMillis))
+                .expireAfterWrite(Duration.ofMillis(expireMillis))
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * @param after cursor of the previous page, {@code null} for the first page
+     */
+    public PageResponse<PostFeedRow> getPage(FeedCursor after, int pageSize) {
+        return cache.get(new PageKey(after, pageSize));
+    }
+
+    /**
+     * New posts show up within one refresh interval, but a deleted post should not be served again.
+     */
+    @EventListener
+    public void onPostDeleted(PostDeletedEvent event) {
+        cache.invalidateAll();
+    }
+
+    private PageResponse<PostFeedRow> load(PageKey key) {
+        // One extra row tells us whether another page exists without a count query.
+        PageRequest limit = PageRequest.ofSize(key.pageSize() + 1);
+        List<PostFeedRow> posts = key.after() == null
+                ? postRepository.findFeedFirstPage(limit)
+                : postRepository.findFeedPageBefore(key.after().createdAt(), key.after().id(), limit);
+        return FeedPages.slice(posts, key.pageSize());
+    }
+
+    private record PageKey(FeedCursor after, int pageSize) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.pagination.FeedCursor;
+import com.example.instaclone.pagination.FeedPages;
+import com.example.instaclone.payload.response.PageResponse;
+import com.example.instaclone.repository.FollowRepository;
+import com.example.instaclone.repository.PostRepository;
+import com.example.instaclone.repository.TimelineRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads home timelines under the hybrid fan-out model. Posts from ordinary accounts are pushed
+ * into the reader's materialized timeline at write time; posts from accounts above
+ * {@code timeline.fanout.threshold} followers are pulled at read time and merged in.
+ */
+@Service
+@Slf4j
+public class HomeTimelineService {
+
+    private final TimelineRepository timelineRepository;
+
+    private final FollowRepository followRepository;
+
+    private final PostRepository postRepository;
+
+    @Value("${timeline.fanout.threshold:10000}")
+    private long fanoutThreshold = 10_000;
+
+    @Value("${timeline.pull.max-accounts:100}")
+    private int maxPulledAccounts = 100;
+
+    @Autowired
+    public HomeTimelineService(TimelineRepository timelineRepository,
+                               FollowRepository followRepository,
+                               PostRepository postRepository) {
+        this.timelineRepository = timelineRepository;
+        this.followRepository = followRepository;
+        this.postRepository = postRepository;
+    }
+
+    public boolean isHighFollowerAccount(User user) {
+        return user.getFollowersCount() != null && user.getFollowersCount() > fanoutThreshold;
+    }
+
+    public PageResponse<PostFeedRow> getHomeFeed(Long userId, String cursor, int pageSize) {
+        FeedCursor after = cursor == null || cursor.isBlank() ? null : FeedCursor.decode(cursor);
+        PageRequest limit = PageRequest.ofSize(pageSize + 1);
+
+        List<List<PostFeedRow>> sources = new ArrayList<>();
+        sources.add(after == null
+                ? timelineRepository.findHomeFirstPage(userId, limit)
+                : timelineRepository.findHomePageBefore(userId, after.createdAt(), after.id(), limit));
+
+        List<Long> pulledAuthorIds = followRepository.findHighFollowerFolloweeIds(
+                userId, fanoutThreshold, PageRequest.ofSize(maxPulledAccounts));
+        for (Long authorId : pulledAuthorIds) {
+            sources.add(after == null
+                    ? postRepository.findAuthorFirstPage(authorId, limit)
+                    : postRepository.findAuthorPageBefore(authorId, after.createdAt(), after.id(), limit));
+        }
+
+        List<PostFeedRow> merged = FeedPages.mergeNewestFirst(sources, pageSize + 1);
+        return FeedPages.slice(merged, pageSize);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.ImageBlob;
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.repository.ImageBlobRepository;
+import com.example.instaclone.repository.ImageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Moves image bytes still kept in {@code image_model.image_bytes} to object storage, one row per
+ * transaction, and clears the column. The bytes are uploaded before the row is locked. Rows that already have a stored object only get the column cleared.
+ * A row that fails keeps its bytes and is retried on the next run.
+ */
+@Service
+@Slf4j
+public class ImageBlobMigration {
+
+    private final ImageBlobRepository imageBlobRepository;
+    private final ImageRepository imageRepository;
+    private final ImageStore imageStore;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${images.blob-migration.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${images.blob-migration.batch-size:50}")
+    private int batchSize = 50;
+
+    @Autowired
+    public ImageBlobMigration(ImageBlobRepository imageBlobRepository, ImageRepository imageRepository,
+                              ImageStore imageStore, PlatformTransactionManager transactionManager) {
+        this.imageBlobRepository = imageBlobRepository;
+        this.imageRepository = imageRepository;
+        this.imageStore = imageStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Scheduled(initialDelayString = "${images.blob-migration.initial-delay-ms:60000}",
+            fixedDelayString = "${images.blob-migration.delay-ms:3600000}")
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+        int migrated = 0;
+        int failed = 0;
+        long afterId = 0;
+        List<Long> ids;
+        while (!(ids = imageBlobRepository.findLegacyIds(afterId, PageRequest.of(0, batchSize))).isEmpty()) {
+            for (Long id : ids) {
+                try {
+                    migrate(id);
+                    migrated++;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Cannot move bytes of image {} to object storage", id, e);
+                    failed++;
+                }
+                afterId = id;
+            }
+        }
+        if (migrated > 0 || failed > 0) {
+            log.info("Moved {} legacy image blob(s) to object storage, {} failed", migrated, failed);
+        }
+    }
+
+    /**
+     * Uploads the bytes first, then locks the row and attaches them, so no lock is held during the upload.
+     */
+    private void migrate(Long id) throws IOException {
+        Optional<ImageModel> unlocked = imageRepository.findById(id);
+        Optional<ImageBlob> legacy = imageBlobRepository.findById(id);
+        if (unlocked.isEmpty() || legacy.isEmpty() || legacy.get().getImageBytes() == null) {
+            return;
+        }
+        ImageStore.Upload upload = null;
+        if (unlocked.get().getS3Key() == null) {
+            byte[] content = decode(legacy.get().getImageBytes());
+            upload = imageStore.upload(new ByteArrayResource(content), content.length,
+                    contentType(unlocked.get().getName(), content));
+        }
+        ImageStore.Upload uploaded = upload;
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<ImageModel> found = imageRepository.findByIdForUpdate(id);
+            Optional<ImageBlob> blob = imageBlobRepository.findById(id);
+            if (found.isEmpty() || blob.isEmpty() || blob.get().getImageBytes() == null) {
+                return;
+            }
+            if (found.get().getS3Key() == null) {
+                if (uploaded == null) {
+                    // Had a stored object when it was read; the next run looks again.
+                    return;
+                }
+                imageStore.attach(found.get(), uploaded);
+            }
+            blob.get().setImageBytes(null);
+        });
+    }
+
+    /**
+     * Early uploads were stored zlib-compressed; later ones as uploaded.
+     */
+    private static byte[] decode(byte[] stored) {
+        boolean zlibHeader = stored.length > 2 && (stored[0] & 0x0F) == 8
+                && (((stored[0] & 0xFF) << 8) | (stored[1] & 0xFF)) % 31 == 0;
+        if (!zlibHeader) {
+            return stored;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(stored.length * 2);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return stored;
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            return stored;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String contentType(String name, byte[] content) {
+        Optional<MediaType> byName = name == null ? Optional.empty() : MediaTypeFactory.getMediaType(name);
+        if (byName.isPresent()) {
+            return byName.get().toString();
+        }
+        try {
+            String sniffed = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(content));
+            return sniffed != null ? sniffed : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        } catch (IOException e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.entity.enums.ERendition;
+import com.example.instaclone.repository.ImageObjectRepository;
+import com.example.instaclone.repository.ImageRepository;
+import com.example.instaclone.storage.ObjectPage;
+import com.example.instaclone.storage.ObjectStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Finds what a crash between a storage write and the matching database commit leaves behind, and removes it:
+ * <ul>
+ *     <li>objects no image refers to, looking at renditions through their original's key, and</li>
+ *     <li>images whose object is gone.</li>
+ * </ul>
+ * Both sides are read a page at a time, so memory is bounded by {@code images.reconcile.page-size} however
+ * large the bucket or table. Objects and images younger than {@code images.reconcile.min-age} are left alone,
+ * since their upload or rendition may still be in progress. Before anything is deleted, its key is locked
+ * through {@link ImageObjectRepository#lock} as {@link ImageStore} does and checked again, one key per
+ * transaction. Deleting an original counts as a deletion in the key's generation, so an upload of the same
+ * content that raced the reconciler is written again before it is referenced.
+ * <p>
+ * Results are published as {@code images.reconcile.objects} and {@code images.reconcile.rows} counters,
+ * tagged by {@code result}, and an {@code images.reconcile.duration} timer.
+ */
+@Service
+@Slf4j
+public class ImageReconciler {
+
+    private final ImageRepository imageRepository;
+    private final ImageObjectRepository imageObjectRepository;
+    private final ObjectStore objectStore;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter objectsScanned;
+    private final Counter objectsOrphaned;
+    private final Counter objectsDeleted;
+    private final Counter rowsScanned;
+    private final Counter rowsDangling;
+    private final Counter rowsDeleted;
+    private final Timer duration;
+
+    @Value("${images.reconcile.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${images.reconcile.dry-run:false}")
+    private boolean dryRun = false;
+
+    @Value("${images.reconcile.prefixes:images/,post-images/,profile-images/,renditions/}")
+    private List<String> prefixes = List.of("images/", "post-images/", "profile-images/", ERendition.PREFIX);
+
+    @Value("${images.reconcile.page-size:1000}")
+    private int pageSize = 1000;
+
+    @Value("${images.reconcile.min-age:1h}")
+    private Duration minAge = Duration.ofHours(1);
+
+    @Autowired
+    public ImageReconciler(ImageRepository imageRepository, ImageObjectRepository imageObjectRepository,
+                           ObjectStore objectStore, PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
+        this.imageRepository = imageRepository;
+        this.imageObjectRepository = imageObjectRepository;
+        this.objectStore = objectStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Checks under a key's lock must see references committed after the transaction started.
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.objectsScanned = counter(meterRegistry, "images.reconcile.objects", "scanned");
+        this.objectsOrphaned = counter(meterRegistry, "images.reconcile.objects", "orphaned");
+        this.objectsDeleted = counter(meterRegistry, "images.reconcile.objects", "deleted");
+        this.rowsScanned = counter(meterRegistry, "images.reconcile.rows", "scanned");
+        this.rowsDangling = counter(meterRegistry, "images.reconcile.rows", "dangling");
+        this.rowsDeleted = counter(meterRegistry, "images.reconcile.rows", "deleted");
+        this.duration = Timer.builder("images.reconcile.duration").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${images.reconcile.cron:0 30 3 * * *}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        duration.record(() -> {
+            Instant cutoff = Instant.now().minus(minAge);
+            int orphans = 0;
+            for (String prefix : prefixes) {
+                orphans += reconcileObjects(prefix, cutoff);
+            }
+            int dangling = reconcileRows(cutoff);
+            log.info("Reconciled image storage{}: {} orphaned object(s), {} image(s) without an object",
+                    dryRun ? " (dry run)" : "", orphans, dangling);
+        });
+    }
+
+    private int reconcileObjects(String prefix, Instant cutoff) {
+        int found = 0;
+        List<String> orphans = new ArrayList<>();
+        String cursor = null;
+        do {
+            ObjectPage page = objectStore.list(prefix, cursor, pageSize);
+            objectsScanned.increment(page.objects().size());
+            Map<String, String> originals = new LinkedHashMap<>();
+            for (ObjectPage.Entry object : page.objects()) {
+                if (object.lastModified().isBefore(cutoff)) {
+                    originals.put(object.key(), ERendition.originalKey(object.key()));
+                }
+            }
+            if (!originals.isEmpty()) {
+                Set<String> referenced = new HashSet<>(imageRepository.findReferencedKeys(new HashSet<>(originals.values())));
+                originals.forEach((key, original) -> {
+                    if (!referenced.contains(original)) {
+                        orphans.add(key);
+                    }
+                });
+            }
+            if (orphans.size() >= pageSize) {
+                found += deleteOrphans(orphans);
+                orphans.clear();
+            }
+            cursor = page.next();
+        } while (cursor != null);
+        if (!orphans.isEmpty()) {
+            found += deleteOrphans(orphans);
+        }
+        return found;
+    }
+
+    /**
+     * Locks each original's key, skips it if it gained a reference since it was listed, and deletes the rest.
+     */
+    private int deleteOrphans(List<String> orphans) {
+        objectsOrphaned.increment(orphans.size());
+        if (dryRun) {
+            log.info("Would delete orphaned objects {}", orphans);
+            return orphans.size();
+        }
+        Map<String, List<String>> byOriginal = orphans.stream()
+                .collect(Collectors.groupingBy(ERendition::originalKey, TreeMap::new, Collectors.toList()));
+        byOriginal.forEach((original, keys) -> {
+            Integer deleted = transactionTemplate.execute(status -> {
+                imageObjectRepository.lock(original);
+                if (!imageRepository.findByS3Key(original).isEmpty()) {
+                    return 0;
+                }
+                if (keys.contains(original)) {
+                    imageObjectRepository.incrementGeneration(original);
+                }
+                return objectStore.deleteAll(keys);
+            });
+            objectsDeleted.increment(deleted);
+        });
+        return orphans.size();
+    }
+
+    private int reconcileRows(Instant cutoff) {
+        LocalDateTime createdBefore = LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault());
+        int found = 0;
+        long afterId = 0;
+        List<ImageModel> images;
+        while (!(images = imageRepository.findStoredAfter(afterId, PageRequest.of(0, pageSize))).isEmpty()) {
+            rowsScanned.increment(images.size());
+            // Content-addressed images share objects, so each key is looked up once per page.
+            Map<String, Boolean> exists = new HashMap<>();
+            Map<String, List<Long>> dangling = new TreeMap<>();
+            for (ImageModel image : images) {
+                boolean old = image.getCreatedAt() == null || image.getCreatedAt().isBefore(createdBefore);
+                if (old && !exists.computeIfAbsent(image.getS3Key(), objectStore::exists)) {
+                    dangling.computeIfAbsent(image.getS3Key(), key -> new ArrayList<>()).add(image.getId());
+                }
+                afterId = image.getId();
+            }
+            for (Map.Entry<String, List<Long>> entry : dangling.entrySet()) {
+                found += deleteRows(entry.getKey(), entry.getValue());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Deletes the images of {@code s3Key}, unless its object turns out to exist once the key is locked.
+     */
+    private int deleteRows(String s3Key, List<Long> ids) {
+        rowsDangling.increment(ids.size());
+        if (dryRun) {
+            log.info("Would delete images without an object {}", ids);
+            return ids.size();
+        }
+        Boolean deleted = transactionTemplate.execute(status -> {
+            imageObjectRepository.lock(s3Key);
+            if (objectStore.exists(s3Key)) {
+                return false;
+            }
+            imageRepository.deleteAllByIdInBatch(ids);
+            return true;
+        });
+        if (Boolean.TRUE.equals(deleted)) {
+            rowsDeleted.increment(ids.size());
+        }
+        return ids.size();
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder(name).tag("result", result).register(meterRegistry);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.entity.enums.ERendition;
+import com.example.instaclone.repository.ImageRepository;
+import com.example.instaclone.storage.ObjectStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Produces the fixed {@link ERendition} widths of an uploaded image in the background and records
+ * them on its {@link ImageModel}. Only renditions narrower than the original are made. Each one is
+ * scaled from the next larger rendition instead of the original, so the work stays small.
+ * <p>
+ * The inline {@link #placeholder} is made during the upload itself instead, from a subsampled decode.
+ */
+@Service
+@Slf4j
+public class ImageRenditionService {
+
+    private static final String PLACEHOLDER_PREFIX = "data:image/jpeg;base64,";
+
+    private final ImageRepository imageRepository;
+    private final ObjectStore objectStore;
+
+    /** Larger originals are not decoded at all, so a single upload cannot exhaust the heap. */
+    @Value("${images.renditions.max-pixels:40000000}")
+    private long maxPixels = 40_000_000L;
+
+    @Value("${images.renditions.jpeg-quality:0.85}")
+    private float jpegQuality = 0.85f;
+
+    /** Longest side of the placeholder, in pixels. */
+    @Value("${images.placeholder.size:16}")
+    private int placeholderSize = 16;
+
+    @Value("${images.placeholder.jpeg-quality:0.5}")
+    private float placeholderQuality = 0.5f;
+
+    @Autowired
+    public ImageRenditionService(ImageRepository imageRepository, ObjectStore objectStore) {
+        this.imageRepository = imageRepository;
+        this.objectStore = objectStore;
+    }
+
+    @Async("renditionExecutor")
+    public void generateRenditions(String s3Key) {
+        Set<ERendition> stored = EnumSet.noneOf(ERendition.class);
+        try {
+            BufferedImage source;
+            try (InputStream original = objectStore.open(s3Key).content()) {
+                source = decode(original, 0);
+            }
+            if (source == null) {
+                log.info("Skipping renditions for {}: not a decodable image or too large", s3Key);
+                return;
+            }
+            ERendition[] renditions = ERendition.values();
+            for (int i = renditions.length - 1; i >= 0; i--) {
+                ERendition rendition = renditions[i];
+                if (rendition.getWidth() >= source.getWidth()) {
+                    continue;
+                }
+                source = scale(source, rendition.getWidth());
+                byte[] jpeg = encodeJpeg(source, jpegQuality);
+                objectStore.put(rendition.key(s3Key), new ByteArrayInputStream(jpeg), jpeg.length, "image/jpeg");
+                stored.add(rendition);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot produce renditions for {}", s3Key, e);
+        }
+        if (!stored.isEmpty()) {
+            record(s3Key, stored);
+        }
+    }
+
+    /**
+     * A tiny JPEG of the image as a {@code data:} URI, for clients to paint while the image itself loads.
+     * Reading only every n-th pixel of the original keeps this cheap enough to do while the upload waits.
+     *
+     * @return the URI, or {@code null} if the content is not a decodable image
+     */
+    public String placeholder(InputStreamSource content) {
+        try (InputStream original = content.getInputStream()) {
+            BufferedImage source = decode(original, placeholderSize * 8);
+            if (source == null) {
+                return null;
+            }
+            int width = source.getWidth() >= source.getHeight()
+                    ? placeholderSize
+                    : Math.max(1, Math.round((float) placeholderSize * source.getWidth() / source.getHeight()));
+            byte[] jpeg = encodeJpeg(scale(source, Math.min(width, source.getWidth())), placeholderQuality);
+            return PLACEHOLDER_PREFIX + Base64.getEncoder().encodeToString(jpeg);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot produce placeholder", e);
+            return null;
+        }
+    }
+
+    public void deleteRenditions(ImageModel image) {
+        for (ERendition rendition : image.getRenditions()) {
+            objectStore.delete(rendition.key(image.getS3Key()));
+        }
+    }
+
+    /**
+     * Saves whatever renditions were written, even if a later one failed, on every image sharing the
+     * object. If all of them were deleted while the renditions were produced, the renditions are dropped.
+     */
+    private void record(String s3Key, Set<ERendition> stored) {
+        List<ImageModel> images = imageRepository.findByS3Key(s3Key);
+        if (images.isEmpty()) {
+            for (ERendition rendition : stored) {
+                objectStore.delete(rendition.key(s3Key));
+            }
+            return;
+        }
+        for (ImageModel image : images) {
+            image.setRenditions(EnumSet.copyOf(stored));
+        }
+        imageRepository.saveAll(images);
+        log.info("Stored renditions {} for {}", stored, s3Key);
+    }
+
+    /**
+     * @param targetSize longest side the caller needs, or 0 for full size; larger images are read at every
+     *                   n-th pixel only
+     */
+    private BufferedImage decode(InputStream original, int targetSize) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (targetSize > 0) {
+                    int period = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / targetSize);
+                    param.setSourceSubsampling(period, period, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Halves the image with bilinear filtering until one more halving would undershoot, then scales to
+     * the exact width. A single bilinear step from a much larger image aliases visibly.
+     */
+    private static BufferedImage scale(BufferedImage source, int width) {
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= width) {
+            current = resize(current, current.getWidth() / 2);
+        }
+        return current.getWidth() == width ? current : resize(current, width);
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // JPEG has no alpha channel; transparent areas become white.
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.entity.ImageObject;
+import com.example.instaclone.entity.enums.ERendition;
+import com.example.instaclone.repository.ImageObjectRepository;
+import com.example.instaclone.repository.ImageRepository;
+import com.example.instaclone.storage.ObjectStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Content-addressed image storage. Each upload is stored once under the SHA-256 of its bytes.
+ * Every {@link ImageModel} row is one reference to its object, so the reference count is the
+ * number of rows sharing an {@code s3Key}.
+ * <p>
+ * Adding and removing references serialize on the key's {@link ImageObject} row. Hashing, uploading and
+ * making the placeholder happen before that lock is taken; the lock is only held to check the references
+ * and insert the row. Releasing the last reference deletes the object under the lock and counts the deletion
+ * in {@link ImageObject#getGeneration()}, so an upload that raced it is written again before it is referenced.
+ */
+@Service
+@Slf4j
+public class ImageStore {
+
+    static final String CONTENT_PREFIX = "images/sha256/";
+
+    private final ImageRepository imageRepository;
+    private final ImageObjectRepository imageObjectRepository;
+    private final ObjectStore objectStore;
+    private final ImageRenditionService imageRenditionService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public ImageStore(ImageRepository imageRepository, ImageObjectRepository imageObjectRepository,
+                      ObjectStore objectStore, ImageRenditionService imageRenditionService,
+                      PlatformTransactionManager transactionManager) {
+        this.imageRepository = imageRepository;
+        this.imageObjectRepository = imageObjectRepository;
+        this.objectStore = objectStore;
+        this.imageRenditionService = imageRenditionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Reads under the key lock must see references committed after the transaction started.
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * Saves {@code image} as a reference to the content of {@code file}. The bytes are uploaded only
+     * if no other image has the same content; otherwise the new row shares the existing object, its
+     * renditions and its placeholder.
+     */
+    public ImageModel store(ImageModel image, MultipartFile file) throws IOException {
+        return store(image, file, file.getSize(), file.getContentType());
+    }
+
+    /**
+     * Same as {@link #store(ImageModel, MultipartFile)}, for content that did not arrive as an upload.
+     * {@code content} is read up to three times: to hash it, to write it and to make its placeholder.
+     */
+    public ImageModel store(ImageModel image, InputStreamSource content, long size, String contentType) throws IOException {
+        Upload upload = upload(content, size, contentType);
+        try {
+            return transactionTemplate.execute(status -> attach(image, upload));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * First half of {@link #store}, without a transaction or lock: hashes the content and, unless it is
+     * already referenced, uploads it and makes its placeholder.
+     */
+    public Upload upload(InputStreamSource content, long size, String contentType) throws IOException {
+        String s3Key = CONTENT_PREFIX + sha256(content);
+        // Read before the write, so any deletion that could undo the write shows up as a newer generation.
+        long generation = imageObjectRepository.findGeneration(s3Key).orElse(0L);
+        if (!imageRepository.findByS3Key(s3Key).isEmpty()) {
+            return new Upload(s3Key, content, size, contentType, generation, false, null);
+        }
+        put(s3Key, content, size, contentType);
+        return new Upload(s3Key, content, size, contentType, generation, true, imageRenditionService.placeholder(content));
+    }
+
+    /**
+     * Second half of {@link #store}: saves {@code image} as a reference to the uploaded object. Runs in the
+     * caller's transaction, which must be READ COMMITTED, and locks the key until it ends. The object is only
+     * written here if it was deleted since {@link #upload}, or was not written because it was referenced then.
+     *
+     * @throws UncheckedIOException if that write fails
+     */
+    public ImageModel attach(ImageModel image, Upload upload) {
+        String s3Key = upload.s3Key();
+        imageObjectRepository.lock(s3Key);
+        List<ImageModel> references = imageRepository.findByS3Key(s3Key);
+        image.setS3Key(s3Key);
+        if (!references.isEmpty()) {
+            log.info("Upload matches {} existing reference(s) to {}, skipping write", references.size(), s3Key);
+            Set<ERendition> renditions = EnumSet.noneOf(ERendition.class);
+            renditions.addAll(references.get(0).getRenditions());
+            image.setRenditions(renditions);
+            image.setPlaceholder(references.get(0).getPlaceholder());
+            return imageRepository.save(image);
+        }
+        String placeholder = upload.placeholder();
+        long generation = imageObjectRepository.findGeneration(s3Key).orElse(0L);
+        if (!upload.written() || generation != upload.generation()) {
+            log.info("Object {} was deleted or never written since the upload, writing it again", s3Key);
+            try {
+                put(s3Key, upload.content(), upload.size(), upload.contentType());
+                placeholder = imageRenditionService.placeholder(upload.content());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        image.setPlaceholder(placeholder);
+        AfterCommit.run(() -> imageRenditionService.generateRenditions(s3Key));
+        return imageRepository.save(image);
+    }
+
+    /**
+     * Deletes the {@code image} row, and the stored object with its renditions if no other row refers to it.
+     * The object is deleted before the key's lock is released, so no upload can be attached to it meanwhile.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public void release(ImageModel image) {
+        String s3Key = image.getS3Key();
+        if (s3Key == null) {
+            imageRepository.delete(image);
+            return;
+        }
+        imageObjectRepository.lock(s3Key);
+        List<ImageModel> references = imageRepository.findByS3Key(s3Key);
+        imageRepository.delete(image);
+        boolean lastReference = references.stream().allMatch(reference -> reference.getId().equals(image.getId()));
+        if (lastReference) {
+            imageRepository.flush();
+            imageObjectRepository.incrementGeneration(s3Key);
+            objectStore.delete(s3Key);
+            imageRenditionService.deleteRenditions(image);
+        }
+    }
+
+    private void put(String s3Key, InputStreamSource content, long size, String contentType) throws IOException {
+        try (InputStream stream = content.getInputStream()) {
+            objectStore.put(s3Key, stream, size, contentType);
+        }
+    }
+
+    private static String sha256(InputStreamSource source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream content = new DigestInputStream(source.getInputStream(), digest)) {
+            content.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Content hashed and, if {@link #written()}, put under {@link #s3Key()} by {@link #upload}, waiting to be
+     * attached to an image.
+     *
+     * @param generation the key's {@link ImageObject#getGeneration()} read before the write
+     */
+    public record Upload(String s3Key, InputStreamSource content, long size, String contentType,
+                         long generation, boolean written, String placeholder) {
+    }
+}
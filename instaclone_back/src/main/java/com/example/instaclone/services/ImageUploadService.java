@@ -3,25 +3,35 @@ package com.example.instaclone.services;
 import com.example.instaclone.entity.ImageModel;
 import com.example.instaclone.entity.Post;
 import com.example.instaclone.entity.User;
+import com.example.instaclone.entity.enums.ERendition;
+import com.example.instaclone.exceptions.BatchTooLargeException;
 import com.example.instaclone.exceptions.ImageNotFoundException;
 import com.example.instaclone.repository.ImageRepository;
 import com.example.instaclone.repository.UserRepository;
-import com.example.instaclone.s3.S3Buckets;
-import com.example.instaclone.s3.S3Service;
+import com.example.instaclone.payload.response.ImageBatchResponse;
+import com.example.instaclone.payload.response.ImageUrlResponse;
+import com.example.instaclone.storage.ObjectStore;
+import com.example.instaclone.storage.SignedUrl;
+import com.example.instaclone.storage.StoredObject;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.Principal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
-import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
 
 @Service
 @Slf4j
@@ -29,43 +39,38 @@ public class ImageUploadService {
 
     private final ImageRepository imageRepository;
     private final UserRepository userRepository;
-    private final S3Service s3Service;
-    private final S3Buckets s3Buckets;
+    private final ObjectStore objectStore;
+    private final ImageStore imageStore;
+
+    /** Upper bound on post and user ids together in one batch request. */
+    @Value("${images.batch.max-ids:200}")
+    private int maxBatchIds = 200;
 
     @Autowired
-    public ImageUploadService(ImageRepository imageRepository, UserRepository userRepository, S3Service s3Service, S3Buckets s3Buckets) {
+    public ImageUploadService(ImageRepository imageRepository, UserRepository userRepository, ObjectStore objectStore,
+                              ImageStore imageStore) {
         this.imageRepository = imageRepository;
         this.userRepository = userRepository;
-        this.s3Service = s3Service;
-        this.s3Buckets = s3Buckets;
+        this.objectStore = objectStore;
+        this.imageStore = imageStore;
     }
 
     public void uploadImageToUser(MultipartFile file, Principal principal) throws IOException {
         User user = getUserByPrincipal(principal);
         log.info("Uploading image profile to User {}", user.getUsername());
 
-        imageRepository.findByUserIdAndPostId(user.getId(), null).ifPresent(existingImage -> {
-            s3Service.deleteObject(s3Buckets.getImgBucket(), existingImage.getS3Key());
-            imageRepository.delete(existingImage);
-        });
-
-        String s3Key = "profile-images/" + user.getId() + "/" + file.getOriginalFilename();
-        log.info("Constructed S3 Key for profile-images: {}", s3Key);
-        s3Service.putObject(s3Buckets.getImgBucket(), s3Key, file.getBytes());
+        imageRepository.findByUserIdAndPostId(user.getId(), null).ifPresent(imageStore::release);
 
         ImageModel image = new ImageModel();
         image.setUserId(user.getId());
         image.setName(file.getOriginalFilename());
-        image.setS3Key(s3Key);
-        imageRepository.save(image);
+        imageStore.store(image, file);
+        log.info("Stored profile image of User {} as {}", user.getId(), image.getS3Key());
     }
 
     public void deleteProfileImage(Principal principal){
         User user = getUserByPrincipal(principal);
-        imageRepository.findByUserIdAndPostId(user.getId(), null).ifPresent(existingImage -> {
-            s3Service.deleteObject(s3Buckets.getImgBucket(), existingImage.getS3Key());
-            imageRepository.delete(existingImage);
-        });
+        imageRepository.findByUserIdAndPostId(user.getId(), null).ifPresent(imageStore::release);
     }
 
     public void uploadImageToPost(MultipartFile file, Principal principal, Long postId) throws IOException {
@@ -74,88 +79,109 @@ public class ImageUploadService {
                 .stream()
                 .filter(p -> p.getId().equals(postId))
                 .collect(toSinglePostCollector());
+        log.info("Uploading image to Post: {}", postId);
 
-        String s3Key = "post-images/" + postId + "/" + file.getOriginalFilename();
-        log.info("Constructed S3 Key for post-images: {}", s3Key);
-        s3Service.putObject(s3Buckets.getImgBucket(), s3Key, file.getBytes());
+        imageRepository.findByPostId(post.getId()).ifPresent(imageStore::release);
 
         ImageModel imageModel = new ImageModel();
         imageModel.setPostId(post.getId());
         imageModel.setName(file.getOriginalFilename());
         imageModel.setUserId(user.getId());
-        imageModel.setS3Key(s3Key);
-        log.info(s3Key);
-        log.info("Uploading image profile to Post: {}", postId);
-
-        imageRepository.save(imageModel);
+        imageStore.store(imageModel, file);
+        log.info("Stored image of Post {} as {}", postId, imageModel.getS3Key());
     }
 
     public ImageModel getImageToUser(Principal principal) {
         User user = getUserByPrincipal(principal);
-
-        ImageModel image = imageRepository.findByUserIdAndPostId(user.getId(), null)
+        return imageRepository.findByUserIdAndPostId(user.getId(), null)
                 .orElseThrow(() -> new ImageNotFoundException("Cannot find image for User: " + user.getId()));
-
-        byte[] imageBytes = s3Service.getObject(s3Buckets.getImgBucket(), image.getS3Key());
-        image.setImageBytes(imageBytes);
-
-        return image;
     }
 
     public ImageModel getProfileImageToPost(Long userId) {
-        ImageModel image = imageRepository.findByUserIdAndPostId(userId, null)
+        return imageRepository.findByUserIdAndPostId(userId, null)
                 .orElseThrow(() -> new ImageNotFoundException("Cannot find profile image for User: " + userId));
-
-        byte[] imageBytes = s3Service.getObject(s3Buckets.getImgBucket(), image.getS3Key());
-        image.setImageBytes(imageBytes);
-
-        return image;
     }
 
     public ImageModel getImageToPost(Long postId) {
-        ImageModel image = imageRepository.findByPostId(postId)
+        return imageRepository.findByPostId(postId)
                 .orElseThrow(() -> new ImageNotFoundException("Cannot find image for Post: " + postId));
+    }
 
-        byte[] imageBytes = s3Service.getObject(s3Buckets.getImgBucket(), image.getS3Key());
-        image.setImageBytes(imageBytes);
+    /**
+     * Opens the stored image for streaming to the client without blocking on the store; the caller must close it.
+     *
+     * @param width width the client will display the image at, or {@code null} for the original
+     */
+    public CompletableFuture<StoredObject> openImage(ImageModel image, Integer width) {
+        return objectStore.openAsync(objectKey(image, rendition(image, width)));
+    }
 
-        return image;
+    public ImageUrlResponse presignImage(ImageModel image, Integer width) {
+        Optional<ERendition> rendition = rendition(image, width);
+        SignedUrl signed = objectStore.signedUrl(objectKey(image, rendition));
+        return new ImageUrlResponse(signed.url(), signed.expiresAt(), etag(image, rendition));
     }
 
-    private byte[] compressBytes(byte[] data) {
-        Deflater deflater = new Deflater();
-        deflater.setInput(data);
-        deflater.finish();
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] buffer = new byte[1024];
-        while (!deflater.finished()) {
-            int count = deflater.deflate(buffer);
-            outputStream.write(buffer, 0, count);
+    /**
+     * Presigns the post images of {@code postIds} and the profile images of {@code userIds} for one feed
+     * page, loading all rows with a single query. Signing is local, so the store is not contacted.
+     */
+    public ImageBatchResponse presignImages(Collection<Long> postIds, Collection<Long> userIds,
+                                            Integer postWidth, Integer avatarWidth) {
+        Set<Long> posts = postIds == null ? Set.of() : new HashSet<>(postIds);
+        Set<Long> users = userIds == null ? Set.of() : new HashSet<>(userIds);
+        if (posts.size() + users.size() > maxBatchIds) {
+            throw new BatchTooLargeException("At most " + maxBatchIds + " ids can be requested at once");
+        }
+        Map<Long, ImageUrlResponse> postImages = new HashMap<>();
+        Map<Long, ImageUrlResponse> profileImages = new HashMap<>();
+        if (posts.isEmpty() && users.isEmpty()) {
+            return new ImageBatchResponse(postImages, profileImages);
         }
-        try {
-            outputStream.close();
-        } catch (IOException e) {
-            log.error("Cannot compress bytes");
+        // An empty IN list is not valid SQL, so a side that was not asked for is left out of the query.
+        List<ImageModel> images;
+        if (users.isEmpty()) {
+            images = imageRepository.findPostImages(posts);
+        } else if (posts.isEmpty()) {
+            images = imageRepository.findProfileImages(users);
+        } else {
+            images = imageRepository.findPostAndProfileImages(posts, users);
         }
-        System.out.println("Compressed image byte size: " + outputStream.toByteArray().length);
-        return outputStream.toByteArray();
+        for (ImageModel image : images) {
+            if (image.getPostId() != null) {
+                postImages.put(image.getPostId(), presignImage(image, postWidth));
+            } else {
+                profileImages.put(image.getUserId(), presignImage(image, avatarWidth));
+            }
+        }
+        return new ImageBatchResponse(postImages, profileImages);
     }
 
-    private static byte[] decompressBytes(byte[] data) {
-        Inflater inflater = new Inflater();
-        inflater.setInput(data);
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
-        byte[] buffer = new byte[1024];
-        try {
-            while (!inflater.finished()) {
-                int count = inflater.inflate(buffer);
-                outputStream.write(buffer, 0, count);
-            }
-            outputStream.close();
-        } catch (IOException | DataFormatException e) {
-            log.error("Cannot decompress bytes");
+    /**
+     * Picks the smallest rendition at least {@code width} wide, or empty for the original while
+     * renditions are still being produced or when none is wide enough.
+     */
+    private static Optional<ERendition> rendition(ImageModel image, Integer width) {
+        if (width == null || image.getRenditions() == null) {
+            return Optional.empty();
         }
-        return outputStream.toByteArray();
+        return ERendition.smallestCovering(image.getRenditions(), width);
+    }
+
+    private static String objectKey(ImageModel image, Optional<ERendition> rendition) {
+        return rendition.map(r -> r.key(image.getS3Key())).orElse(image.getS3Key());
+    }
+
+    /**
+     * A content-addressed object is tagged with the SHA-256 in its key. Objects under older keys are never
+     * rewritten while their image row exists, so the row id versions them. A rendition adds its width.
+     */
+    private static String etag(ImageModel image, Optional<ERendition> rendition) {
+        String s3Key = image.getS3Key();
+        String version = s3Key.startsWith(ImageStore.CONTENT_PREFIX)
+                ? s3Key.substring(ImageStore.CONTENT_PREFIX.length())
+                : "image-" + image.getId();
+        return "\"" + version + rendition.map(r -> "-" + r.getWidth()).orElse("") + "\"";
     }
 
     private <T> Collector<T, ?, T> toSinglePostCollector() {
@@ -0,0 +1,237 @@
+package com.example.instaclone.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for {@code post.likes}. Likes on the same post add to a striped {@link LongAdder}
+ * instead of updating the post row, and the accumulated deltas are applied in one JDBC batch every
+ * {@code likes.flush.interval-ms} or as soon as {@code likes.flush.threshold} updates are pending.
+ * A batch is applied in one transaction, so a failed flush leaves nothing behind and its deltas are put back whole.
+ * <p>
+ * The buffer is drained before the context closes, retrying for up to {@code likes.flush.shutdown-timeout-ms}.
+ * If the database stays unreachable, the deltas are written to {@code likes.flush.spill-file} and added back
+ * to the buffer by the next start.
+ */
+@Service
+@Slf4j
+public class LikeCounterBuffer {
+
+    private static final String APPLY_DELTA = "update post set likes = coalesce(likes, 0) + ? where id = ?";
+
+    private static final long SHUTDOWN_RETRY_MILLIS = 500;
+
+    /** Flushes a counter may stay at zero before its entry is dropped from the map. */
+    private static final int IDLE_FLUSHES_BEFORE_RETIRE = 2;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TaskScheduler taskScheduler;
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    private final LongAdder pendingUpdates = new LongAdder();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final Object flushLock = new Object();
+
+    /** Deltas taken out of the counters but not yet committed, so reads don't dip mid-flush. */
+    private volatile Map<Long, Long> inFlight = Map.of();
+
+    private volatile boolean closed;
+
+    @Value("${likes.flush.threshold:10000}")
+    private long flushThreshold = 10_000;
+
+    @Value("${likes.flush.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMillis = 30_000;
+
+    @Value("${likes.flush.spill-file:like-deltas.pending}")
+    private Path spillFile = Path.of("like-deltas.pending");
+
+    @Autowired
+    public LikeCounterBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             @Qualifier("taskScheduler") TaskScheduler taskScheduler) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Takes back the deltas a previous run could not flush on shutdown.
+     */
+    @PostConstruct
+    public void restoreSpilled() throws IOException {
+        if (!Files.exists(spillFile)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(spillFile);
+        for (String line : lines) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length == 2) {
+                addToCounter(Long.valueOf(fields[0]), Long.parseLong(fields[1]));
+            }
+        }
+        Files.delete(spillFile);
+        log.warn("Restored {} like delta(s) left over from the last shutdown", lines.size());
+    }
+
+    public void add(Long postId, long delta) {
+        if (closed) {
+            jdbcTemplate.update(APPLY_DELTA, delta, postId);
+            return;
+        }
+        addToCounter(postId, delta);
+        pendingUpdates.increment();
+        if (pendingUpdates.sum() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now());
+        }
+    }
+
+    /**
+     * Likes recorded for the post that are not yet visible in {@code post.likes}.
+     */
+    public long pending(Long postId) {
+        Counter counter = counters.get(postId);
+        long buffered = counter == null ? 0 : counter.adder.sum();
+        return buffered + inFlight.getOrDefault(postId, 0L);
+    }
+
+    @Scheduled(fixedDelayString = "${likes.flush.interval-ms:500}")
+    public void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            pendingUpdates.reset();
+
+            Map<Long, Long> deltas = new HashMap<>();
+            for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+                Counter counter = entry.getValue();
+                long delta = counter.adder.sumThenReset();
+                if (delta != 0) {
+                    deltas.put(entry.getKey(), delta);
+                    counter.idleFlushes = 0;
+                } else if (++counter.idleFlushes >= IDLE_FLUSHES_BEFORE_RETIRE) {
+                    retire(entry.getKey(), counter);
+                }
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            inFlight = deltas;
+            try {
+                List<Object[]> batch = new ArrayList<>(deltas.size());
+                deltas.forEach((postId, delta) -> batch.add(new Object[]{delta, postId}));
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(APPLY_DELTA, batch));
+                log.debug("Flushed like deltas for {} posts", deltas.size());
+            } catch (RuntimeException e) {
+                log.error("Failed to flush like deltas for {} posts, keeping them for the next attempt", deltas.size(), e);
+                deltas.forEach(this::addToCounter);
+                throw e;
+            } finally {
+                inFlight = Map.of();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closed = true;
+        long deadline = System.nanoTime() + Duration.ofMillis(shutdownTimeoutMillis).toNanos();
+        while (true) {
+            try {
+                flush();
+                return;
+            } catch (RuntimeException e) {
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+                log.warn("Like flush failed during shutdown, retrying", e);
+                Thread.sleep(SHUTDOWN_RETRY_MILLIS);
+            }
+        }
+        Map<Long, Long> unflushed = snapshot();
+        log.error("Could not flush like deltas for {} posts on shutdown, writing them to {}", unflushed.size(), spillFile);
+        spill(unflushed);
+    }
+
+    /**
+     * Appends, so deltas spilled by an earlier shutdown that were never restored are kept too.
+     */
+    private void spill(Map<Long, Long> deltas) {
+        StringBuilder lines = new StringBuilder();
+        deltas.forEach((postId, delta) -> lines.append(postId).append(' ').append(delta).append('\n'));
+        try {
+            Files.writeString(spillFile, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Like deltas were neither flushed nor spilled: " + deltas, e);
+        }
+    }
+
+    private void addToCounter(Long postId, long delta) {
+        Counter counter = counters.computeIfAbsent(postId, id -> new Counter());
+        counter.adder.add(delta);
+        if (counter.retired) {
+            // The flusher dropped this counter concurrently; move whatever is left of it to a live one.
+            long orphaned = counter.adder.sumThenReset();
+            if (orphaned != 0) {
+                addToCounter(postId, orphaned);
+            }
+        }
+    }
+
+    /**
+     * Drops an idle counter. Writers check {@code retired} after adding, so every increment is
+     * collected exactly once: either by the final drain here or by the writer itself.
+     */
+    private void retire(Long postId, Counter counter) {
+        counter.retired = true;
+        counters.remove(postId, counter);
+        long late = counter.adder.sumThenReset();
+        if (late != 0) {
+            addToCounter(postId, late);
+        }
+    }
+
+    private Map<Long, Long> snapshot() {
+        Map<Long, Long> snapshot = new HashMap<>();
+        counters.forEach((postId, counter) -> {
+            long sum = counter.adder.sum();
+            if (sum != 0) {
+                snapshot.put(postId, sum);
+            }
+        });
+        return snapshot;
+    }
+
+    private static final class Counter {
+        private final LongAdder adder = new LongAdder();
+        private volatile boolean retired;
+        private int idleFlushes;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for chat messages. Messages from all chats wait here until {@code chat.ingest.max-batch}
+ * have arrived or the first of them has waited {@code chat.ingest.linger-ms}. A single writer thread then
+ * inserts them with one JDBC batch in one transaction, so a burst of messages shares one commit and one
+ * log flush instead of paying for one each.
+ * <p>
+ * {@link #submit} returns the durability ack: it completes with the message, id assigned, once the batch
+ * is committed and its messages were added to the {@link RecentMessageBuffer}, or exceptionally if the
+ * batch failed. Acks complete on their own {@code message-ack} thread,
+ * in commit order, so whatever callers chain onto them does not hold up the next batch. A full queue blocks
+ * the submitting thread, which slows senders down instead of dropping messages. The queue is drained before
+ * the context closes.
+ */
+@Service
+@Slf4j
+public class MessageIngestQueue {
+
+    private static final String INSERT = "insert into message (chat_chat_id, sender, t_stamp, content) values (?, ?, ?, ?)";
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final RecentMessageBuffer recentMessageBuffer;
+
+    private final BlockingQueue<Pending> queue;
+
+    private final int maxBatch;
+
+    private final long lingerNanos;
+
+    private final Thread writer = new Thread(this::run, "message-ingest");
+
+    private final ExecutorService acks = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "message-ack");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean closed;
+
+    @Autowired
+    public MessageIngestQueue(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              RecentMessageBuffer recentMessageBuffer,
+                              @Value("${chat.ingest.queue-capacity:10000}") int queueCapacity,
+                              @Value("${chat.ingest.max-batch:256}") int maxBatch,
+                              @Value("${chat.ingest.linger-ms:2}") long lingerMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recentMessageBuffer = recentMessageBuffer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the message for the next batch. The message must have its chat set.
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        Pending pending = new Pending(message, new CompletableFuture<>());
+        if (closed) {
+            write(List.of(pending));
+            return pending.ack();
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.ack().completeExceptionally(e);
+        }
+        return pending.ack();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closed = true;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            write(left);
+        }
+        acks.shutdown();
+        acks.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch, System.nanoTime() + lingerNanos);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Message writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds whatever is queued already, then waits for more until the batch is full or the deadline passes.
+     */
+    private void collect(List<Pending> batch, long deadline) throws InterruptedException {
+        queue.drainTo(batch, maxBatch - batch.size());
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                    connection -> connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Message message = batch.get(i).message();
+                            ps.setLong(1, message.getChat().getChatId());
+                            ps.setString(2, message.getSender());
+                            ps.setString(3, message.getT_stamp());
+                            ps.setString(4, message.getContent());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batch.size();
+                        }
+                    },
+                    keys));
+        } catch (RuntimeException e) {
+            log.error("Failed to write a batch of {} messages", batch.size(), e);
+            List<Pending> failed = List.copyOf(batch);
+            complete(() -> failed.forEach(pending -> pending.ack().completeExceptionally(e)));
+            return;
+        }
+        List<Map<String, Object>> ids = keys.getKeyList();
+        if (ids.size() != batch.size()) {
+            log.warn("Got {} generated ids for a batch of {} messages", ids.size(), batch.size());
+        }
+        for (int i = 0; i < batch.size() && i < ids.size(); i++) {
+            Message message = batch.get(i).message();
+            message.setMs_id(((Number) ids.get(i).values().iterator().next()).longValue());
+            recentMessageBuffer.append(message);
+        }
+        List<Pending> written = List.copyOf(batch);
+        complete(() -> written.forEach(pending -> pending.ack().complete(pending.message())));
+        log.debug("Wrote a batch of {} messages", batch.size());
+    }
+
+    /**
+     * Completes acks off the writer thread. Once closed, the submitting thread completes them itself.
+     */
+    private void complete(Runnable completion) {
+        try {
+            acks.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
+    private record Pending(Message message, CompletableFuture<Message> ack) {
+    }
+}
@@ -2,12 +2,19 @@ package com.example.instaclone.services;
 
 import com.example.instaclone.entity.Chat;
 import com.example.instaclone.entity.Message;
+import com.example.instaclone.exceptions.InvalidCursorException;
 import com.example.instaclone.repository.MessageRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
@@ -15,9 +22,22 @@ public class MessageService {
 
     private final MessageRepository messageRepository;
 
+    private final MessageIngestQueue messageIngestQueue;
+
+    private final RecentMessageBuffer recentMessageBuffer;
+
+    @Value("${chat.page.default-size:50}")
+    private int defaultPageSize = 50;
+
+    @Value("${chat.page.max-size:200}")
+    private int maxPageSize = 200;
+
     @Autowired
-    public MessageService(MessageRepository messageRepository) {
+    public MessageService(MessageRepository messageRepository, MessageIngestQueue messageIngestQueue,
+                          RecentMessageBuffer recentMessageBuffer) {
         this.messageRepository = messageRepository;
+        this.messageIngestQueue = messageIngestQueue;
+        this.recentMessageBuffer = recentMessageBuffer;
     }
 
     public Message save(Message message) {
@@ -25,8 +45,52 @@ public class MessageService {
         return messageRepository.save(message);
     }
 
-    public List<Message> findAllByChat(Chat chat) {
-        log.info("Finding all messages for chat: {}", chat);
-        return messageRepository.findAllByChat(chat);
+    /**
+     * Stores the message with the next group commit.
+     *
+     * @return completes with the stored message once it is durable, after it was added to the recent messages
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        return messageIngestQueue.submit(message);
+    }
+
+    /**
+     * One page of the chat's history, oldest message first. The newest page, and catching up on recent
+     * messages, are served from the {@link RecentMessageBuffer} when it holds them.
+     *
+     * @param before only messages with a smaller id, to scroll back; the newest page if both cursors are {@code null}
+     * @param after  only messages with a larger id, to catch up with new ones
+     */
+    public List<Message> findPage(Chat chat, Long before, Long after, Integer size) {
+        if (before != null && after != null) {
+            throw new InvalidCursorException("Only one of before and after may be given");
+        }
+        int pageSize = resolvePageSize(size);
+        log.info("Finding messages for chat: {}, before: {}, after: {}", chat.getName(), before, after);
+        if (before == null) {
+            Optional<List<Message>> recent = after == null
+                    ? recentMessageBuffer.findLatest(chat, pageSize)
+                    : recentMessageBuffer.findAfter(chat, after, pageSize);
+            if (recent.isPresent()) {
+                return recent.get();
+            }
+        }
+        PageRequest limit = PageRequest.ofSize(pageSize);
+        if (after != null) {
+            return messageRepository.findAfter(chat, after, limit);
+        }
+        List<Message> newestFirst = before == null
+                ? messageRepository.findLatest(chat, limit)
+                : messageRepository.findBefore(chat, before, limit);
+        List<Message> page = new ArrayList<>(newestFirst);
+        Collections.reverse(page);
+        return page;
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
     }
 }
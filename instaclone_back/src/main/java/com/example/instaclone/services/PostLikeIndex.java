@@ -0,0 +1,147 @@
+package com.example.instaclone.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * In-memory "who liked this post" sets, one compressed Roaring bitmap of user ids per post.
+ * A post's bitmap is loaded from {@code post_like} the first time it is asked about and then kept in
+ * step with likes and unlikes as their transactions commit. At most {@code likes.bitmap.cache-size}
+ * posts are held: past that Caffeine evicts the posts least likely to be asked about again, and a post
+ * nobody asked about for {@code likes.bitmap.idle-minutes} is dropped. Evicted posts are reloaded on their
+ * next lookup. Hit, miss and eviction counts are published as {@code cache.*} meters tagged
+ * {@code cache=likedBy}.
+ */
+@Service
+@Slf4j
+public class PostLikeIndex {
+
+    static final String CACHE_NAME = "likedBy";
+
+    private static final String SELECT_LIKERS = "select user_id from post_like where post_id = ?";
+
+    private static final String SELECT_LIKED_AMONG = "select post_id from post_like where user_id = ? and post_id in (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Cache<Long, LikedBy> bitmaps;
+
+    @Autowired
+    public PostLikeIndex(JdbcTemplate jdbcTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${likes.bitmap.cache-size:10000}") long cacheSize,
+                         @Value("${likes.bitmap.idle-minutes:60}") long idleMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bitmaps = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, bitmaps, CACHE_NAME);
+    }
+
+    public boolean isLikedBy(Long postId, Long userId) {
+        if (postId == null || userId == null) {
+            return false;
+        }
+        LikedBy likedBy = bitmaps.get(postId, id -> new LikedBy());
+        synchronized (likedBy) {
+            if (!likedBy.loaded) {
+                jdbcTemplate.query(SELECT_LIKERS, rs -> {
+                    likedBy.userIds.addLong(rs.getLong(1));
+                }, postId);
+                likedBy.userIds.runOptimize();
+                likedBy.loaded = true;
+            }
+            return likedBy.userIds.contains(userId);
+        }
+    }
+
+    /**
+     * Batch form of {@link #isLikedBy} for a feed page. Cached bitmaps answer from memory; posts that
+     * are not cached are checked together in one query instead of loading a bitmap for each of them.
+     *
+     * @return the ids among {@code postIds} that {@code userId} has liked
+     */
+    public Set<Long> likedAmong(Long userId, Collection<Long> postIds) {
+        Set<Long> liked = new HashSet<>();
+        if (userId == null || postIds.isEmpty()) {
+            return liked;
+        }
+        List<Long> uncached = new ArrayList<>();
+        for (Long postId : postIds) {
+            LikedBy likedBy = bitmaps.getIfPresent(postId);
+            if (likedBy == null) {
+                uncached.add(postId);
+                continue;
+            }
+            synchronized (likedBy) {
+                if (!likedBy.loaded) {
+                    uncached.add(postId);
+                } else if (likedBy.userIds.contains(userId)) {
+                    liked.add(postId);
+                }
+            }
+        }
+        if (!uncached.isEmpty()) {
+            String placeholders = String.join(", ", Collections.nCopies(uncached.size(), "?"));
+            List<Object> args = new ArrayList<>(uncached.size() + 1);
+            args.add(userId);
+            args.addAll(uncached);
+            liked.addAll(jdbcTemplate.queryForList(SELECT_LIKED_AMONG.formatted(placeholders), Long.class, args.toArray()));
+        }
+        return liked;
+    }
+
+    /**
+     * Records a committed like. Callers defer this until their transaction has committed.
+     */
+    public void added(Long postId, Long userId) {
+        update(postId, userId, true);
+    }
+
+    /**
+     * Records a committed unlike. Callers defer this until their transaction has committed.
+     */
+    public void removed(Long postId, Long userId) {
+        update(postId, userId, false);
+    }
+
+    public void evict(Long postId) {
+        bitmaps.invalidate(postId);
+    }
+
+    private void update(Long postId, Long userId, boolean liked) {
+        LikedBy likedBy = bitmaps.getIfPresent(postId);
+        if (likedBy == null) {
+            return;
+        }
+        synchronized (likedBy) {
+            // An unloaded bitmap will read the committed row when it loads.
+            if (!likedBy.loaded) {
+                return;
+            }
+            if (liked) {
+                likedBy.userIds.addLong(userId);
+            } else {
+                likedBy.userIds.removeLong(userId);
+            }
+        }
+    }
+
+    private static final class LikedBy {
+        private final Roaring64NavigableMap userIds = new Roaring64NavigableMap();
+        private boolean loaded;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.instaclone.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Copies likes from {@code post_liked_users}, where they were kept by username, into {@code post_like}.
+ * {@code posts.likes} already counts them, so without the copy every past liker could like again and the
+ * counter would count them twice. Runs before the server accepts requests, once: the old table is renamed
+ * to {@code post_liked_users_migrated} afterwards. Likes by users that no longer exist are not copied.
+ */
+@Service
+@Slf4j
+@DependsOn("entityManagerFactory")
+public class PostLikeMigration {
+
+    static final String LEGACY_TABLE = "post_liked_users";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public PostLikeMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        Integer legacyTables = jdbcTemplate.queryForObject("select count(*) from information_schema.tables " +
+                "where table_schema = database() and table_name = ?", Integer.class, LEGACY_TABLE);
+        if (legacyTables == null || legacyTables == 0) {
+            return;
+        }
+        int copied = jdbcTemplate.update("insert ignore into post_like (post_id, user_id) " +
+                "select l.post_id, u.id from " + LEGACY_TABLE + " l join `user` u on u.username = l.liked_users");
+        jdbcTemplate.execute("rename table " + LEGACY_TABLE + " to " + LEGACY_TABLE + "_migrated");
+        log.info("Copied {} like(s) from {} to post_like", copied, LEGACY_TABLE);
+    }
+}
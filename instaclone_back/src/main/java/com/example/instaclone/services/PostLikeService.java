@@ -0,0 +1,95 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.exceptions.PostNotFoundException;
+import com.example.instaclone.repository.PostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Like bookkeeping without read-modify-write: membership is a unique (post_id, user_id) row and the
+ * counter moves only when that row was actually inserted or deleted, so concurrent likes cannot be lost.
+ * Counter changes go through {@link LikeCounterBuffer}, so a hot post's row is not updated per like,
+ * and membership changes are mirrored into the cached bitmaps of {@link PostLikeIndex}. Both happen only
+ * once the membership change has committed, so a rolled-back like is neither counted nor shown.
+ */
+@Service
+@Slf4j
+public class PostLikeService {
+
+    private final PostRepository postRepository;
+
+    private final LikeCounterBuffer likeCounterBuffer;
+
+    private final PostLikeIndex postLikeIndex;
+
+    @Autowired
+    public PostLikeService(PostRepository postRepository, LikeCounterBuffer likeCounterBuffer, PostLikeIndex postLikeIndex) {
+        this.postRepository = postRepository;
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.postLikeIndex = postLikeIndex;
+    }
+
+    /**
+     * @return {@code true} if the like was recorded, {@code false} if the user already liked the post
+     */
+    @Transactional
+    public boolean like(Long postId, Long userId) {
+        requirePost(postId);
+        if (postRepository.insertLike(postId, userId) == 0) {
+            return false;
+        }
+        recordLike(postId, userId);
+        return true;
+    }
+
+    /**
+     * @return {@code true} if a like was removed, {@code false} if there was nothing to remove
+     */
+    @Transactional
+    public boolean unlike(Long postId, Long userId) {
+        requirePost(postId);
+        if (postRepository.deleteLike(postId, userId) == 0) {
+            return false;
+        }
+        recordUnlike(postId, userId);
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the post is liked after the call
+     */
+    @Transactional
+    public boolean toggle(Long postId, Long userId) {
+        requirePost(postId);
+        if (postRepository.deleteLike(postId, userId) > 0) {
+            recordUnlike(postId, userId);
+            return false;
+        }
+        if (postRepository.insertLike(postId, userId) > 0) {
+            recordLike(postId, userId);
+        }
+        return true;
+    }
+
+    private void recordLike(Long postId, Long userId) {
+        AfterCommit.run(() -> {
+            likeCounterBuffer.add(postId, 1);
+            postLikeIndex.added(postId, userId);
+        });
+    }
+
+    private void recordUnlike(Long postId, Long userId) {
+        AfterCommit.run(() -> {
+            likeCounterBuffer.add(postId, -1);
+            postLikeIndex.removed(postId, userId);
+        });
+    }
+
+    private void requirePost(Long postId) {
+        if (!postRepository.existsById(postId)) {
+            throw new PostNotFoundException("Post cannot be found");
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package com.example.instaclone.services;
 
 import com.example.instaclone.dto.PostDTO;
+import com.example.instaclone.dto.PostFeedRow;
 import com.example.instaclone.entity.ImageModel;
 import com.example.instaclone.entity.Post;
 import com.example.instaclone.entity.User;
+import com.example.instaclone.events.PostCreatedEvent;
+import com.example.instaclone.events.PostDeletedEvent;
 import com.example.instaclone.exceptions.PostNotFoundException;
+import com.example.instaclone.pagination.FeedCursor;
+import com.example.instaclone.payload.response.PageResponse;
 import com.example.instaclone.repository.ImageRepository;
 import com.example.instaclone.repository.PostRepository;
+import com.example.instaclone.repository.TimelineRepository;
 import com.example.instaclone.repository.UserRepository;
-import com.example.instaclone.s3.S3Buckets;
-import com.example.instaclone.s3.S3Service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
@@ -29,17 +35,51 @@ public class PostService {
 
     private final ImageRepository imageRepository;
 
-    private final S3Service s3Service;
+    private final ImageStore imageStore;
 
-    private final S3Buckets s3Buckets;
+    private final TimelineRepository timelineRepository;
+
+    private final TimelineFanoutService timelineFanoutService;
+
+    private final HomeTimelineService homeTimelineService;
+
+    private final PostLikeService postLikeService;
+
+    private final UserPostsCache userPostsCache;
+
+    private final GlobalFeedCache globalFeedCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${feed.page.default-size:20}")
+    private int defaultPageSize = 20;
+
+    @Value("${feed.page.max-size:100}")
+    private int maxPageSize = 100;
 
     @Autowired
-    public PostService(PostRepository postRepository, UserRepository userRepository, ImageRepository imageRepository, S3Service s3Service, S3Buckets s3Buckets) {
+    public PostService(PostRepository postRepository,
+                       UserRepository userRepository,
+                       ImageRepository imageRepository,
+                       ImageStore imageStore,
+                       TimelineRepository timelineRepository,
+                       TimelineFanoutService timelineFanoutService,
+                       HomeTimelineService homeTimelineService,
+                       PostLikeService postLikeService,
+                       UserPostsCache userPostsCache,
+                       GlobalFeedCache globalFeedCache,
+                       ApplicationEventPublisher eventPublisher) {
         this.postRepository = postRepository;
         this.userRepository = userRepository;
         this.imageRepository = imageRepository;
-        this.s3Service = s3Service;
-        this.s3Buckets = s3Buckets;
+        this.imageStore = imageStore;
+        this.timelineRepository = timelineRepository;
+        this.timelineFanoutService = timelineFanoutService;
+        this.homeTimelineService = homeTimelineService;
+        this.postLikeService = postLikeService;
+        this.userPostsCache = userPostsCache;
+        this.globalFeedCache = globalFeedCache;
+        this.eventPublisher = eventPublisher;
     }
 
     public Post createPost(PostDTO postDTO, Principal principal) {
@@ -52,11 +92,25 @@ public class PostService {
         post.setLikes(0);
 
         log.info("Saving Post for User: {}", user.getEmail());
-        return postRepository.save(post);
+        Post saved = postRepository.save(post);
+        if (homeTimelineService.isHighFollowerAccount(user)) {
+            // Followers pull these posts at read time instead.
+            timelineFanoutService.addToAuthorTimeline(saved.getId(), user.getId(), saved.getCreatedAt());
+        } else {
+            timelineFanoutService.fanOutPost(saved.getId(), user.getId(), saved.getCreatedAt());
+        }
+        eventPublisher.publishEvent(new PostCreatedEvent(saved.getId(), user.getId()));
+        return saved;
     }
 
-    public List<Post> getAllPosts() {
-        return postRepository.findAllByOrderByCreatedAtDesc();
+    public PageResponse<PostFeedRow> getAllPosts(String cursor, Integer size) {
+        FeedCursor after = cursor == null || cursor.isBlank() ? null : FeedCursor.decode(cursor);
+        return globalFeedCache.getPage(after, resolvePageSize(size));
+    }
+
+    public PageResponse<PostFeedRow> getHomeFeed(Principal principal, String cursor, Integer size) {
+        User user = getUserByPrincipal(principal);
+        return homeTimelineService.getHomeFeed(user.getId(), cursor, resolvePageSize(size));
     }
 
     public Post getPostById(Long postId, Principal principal) {
@@ -65,37 +119,50 @@ public class PostService {
                 .orElseThrow(() -> new PostNotFoundException("Post cannot be found for username: " + user.getEmail()));
     }
 
-    public List<Post> getAllPostForUser(Principal principal) {
+    public PageResponse<PostFeedRow> getAllPostForUser(Principal principal, String cursor, Integer size) {
         User user = getUserByPrincipal(principal);
-        return postRepository.findAllByUserOrderByCreatedAtDesc(user);
+        FeedCursor after = cursor == null || cursor.isBlank() ? null : FeedCursor.decode(cursor);
+        return userPostsCache.getPage(user.getId(), after, resolvePageSize(size));
     }
 
     public Post likePost(Long postId, String username) {
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new PostNotFoundException("Post cannot be found"));
+        User user = userRepository.findUserByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("Username not found"));
+        postLikeService.toggle(postId, user.getId());
+        return getPost(postId);
+    }
 
-        Optional<String> userLiked = post.getLikedUsers()
-                .stream()
-                .filter(u -> u.equals(username)).findAny();
+    public Post like(Long postId, Principal principal) {
+        User user = getUserByPrincipal(principal);
+        postLikeService.like(postId, user.getId());
+        return getPost(postId);
+    }
 
-        if (userLiked.isPresent()) {
-            post.setLikes(post.getLikes() - 1);
-            post.getLikedUsers().remove(username);
-        } else {
-            post.setLikes(post.getLikes() + 1);
-            post.getLikedUsers().add(username);
-        }
-        return postRepository.save(post);
+    public Post unlike(Long postId, Principal principal) {
+        User user = getUserByPrincipal(principal);
+        postLikeService.unlike(postId, user.getId());
+        return getPost(postId);
     }
 
     public void deletePost(Long postId, Principal principal) {
         Post post = getPostById(postId, principal);
         Optional<ImageModel> imageModel = imageRepository.findByPostId(post.getId());
         postRepository.delete(post);
-        imageModel.ifPresent(existingImage -> {
-            imageRepository.delete(existingImage);
-            s3Service.deleteObject(s3Buckets.getImgBucket(), existingImage.getS3Key());
-        });
+        timelineRepository.deleteByPostId(post.getId());
+        eventPublisher.publishEvent(new PostDeletedEvent(post.getId(), post.getUser().getId()));
+        imageModel.ifPresent(imageStore::release);
+    }
+
+    private Post getPost(Long postId) {
+        return postRepository.findById(postId)
+                .orElseThrow(() -> new PostNotFoundException("Post cannot be found"));
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
     }
 
     private User getUserByPrincipal(Principal principal) {
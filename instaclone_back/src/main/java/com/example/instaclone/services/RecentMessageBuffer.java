@@ -0,0 +1,222 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.Chat;
+import com.example.instaclone.entity.Message;
+import com.example.instaclone.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The last {@code chat.recent.messages-per-chat} messages of recently opened chats, so opening a chat and
+ * catching up on it skip MySQL. A chat's ring is seeded from the database the first time its newest page is
+ * read, and stored messages are appended as their batch commits. Older pages always come from the database.
+ * <p>
+ * Memory is capped at {@code chat.recent.max-messages} messages across all chats. Past that, Caffeine evicts
+ * the chats least likely to be opened again, and a chat nobody has read or written for
+ * {@code chat.recent.idle-minutes} is dropped. Hit, miss and eviction counts are published as
+ * {@code cache.*} meters tagged {@code cache=recentMessages}.
+ * <p>
+ * Each server only sees the messages it stored itself, which is all of them while chat runs on the
+ * in-memory STOMP broker.
+ */
+@Service
+@Slf4j
+public class RecentMessageBuffer {
+
+    static final String CACHE_NAME = "recentMessages";
+
+    private final MessageRepository messageRepository;
+
+    private final Cache<Long, Ring> rings;
+
+    private final int capacity;
+
+    @Autowired
+    public RecentMessageBuffer(MessageRepository messageRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${chat.recent.messages-per-chat:100}") int capacity,
+                               @Value("${chat.recent.max-messages:200000}") long maxMessages,
+                               @Value("${chat.recent.idle-minutes:60}") long idleMinutes) {
+        this.messageRepository = messageRepository;
+        this.capacity = capacity;
+        // Every ring counts as full, so the cap holds however the chats fill up.
+        this.rings = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxMessages / capacity))
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rings, CACHE_NAME);
+    }
+
+    /**
+     * Adds a stored message to its chat's ring, if the chat has one. Messages may arrive in any order.
+     */
+    public void append(Message saved) {
+        Ring ring = rings.getIfPresent(saved.getChat().getChatId());
+        if (ring != null) {
+            ring.append(copy(saved));
+        }
+    }
+
+    /**
+     * The chat's newest messages, oldest first, or empty if more were asked for than a ring holds.
+     */
+    public Optional<List<Message>> findLatest(Chat chat, int size) {
+        if (size > capacity) {
+            return Optional.empty();
+        }
+        Ring ring = rings.get(chat.getChatId(), chatId -> new Ring(capacity));
+        if (!ring.isSeeded()) {
+            // Queried outside the ring's lock so the message writer never waits on it. Messages stored
+            // meanwhile are appended to the ring already, and seeding drops the ones it reads twice.
+            List<Message> newestFirst = messageRepository.findLatest(chat, PageRequest.ofSize(capacity));
+            ring.seed(newestFirst.stream().map(RecentMessageBuffer::copy).toList());
+        }
+        return Optional.ofNullable(ring.latest(size));
+    }
+
+    /**
+     * The messages after {@code after}, oldest first, or empty if the chat's ring may not hold all of them.
+     */
+    public Optional<List<Message>> findAfter(Chat chat, Long after, int size) {
+        Ring ring = rings.getIfPresent(chat.getChatId());
+        return ring == null ? Optional.empty() : Optional.ofNullable(ring.after(after, size));
+    }
+
+    /**
+     * Keeps the ring free of JPA proxies and of changes callers make to their message.
+     */
+    private static Message copy(Message message) {
+        Message copy = new Message(message.getSender(), message.getT_stamp(), message.getContent(), null);
+        copy.setMs_id(message.getMs_id());
+        return copy;
+    }
+
+    /**
+     * Fixed-size circular buffer of one chat's newest messages in id order. Until it is seeded it only
+     * collects appended messages, and readers must not use it.
+     */
+    static final class Ring {
+
+        private final Message[] slots;
+
+        /** Index of the oldest message. */
+        private int head;
+
+        private int size;
+
+        private boolean seeded;
+
+        /** Whether the ring holds the chat's entire history. */
+        private boolean complete;
+
+        Ring(int capacity) {
+            this.slots = new Message[capacity];
+        }
+
+        synchronized boolean isSeeded() {
+            return seeded;
+        }
+
+        /**
+         * Inserts the message by id. Usually it is the newest and goes at the end.
+         */
+        synchronized void append(Message message) {
+            int at = size;
+            while (at > 0 && get(at - 1).getMs_id() > message.getMs_id()) {
+                at--;
+            }
+            if (at > 0 && get(at - 1).getMs_id().equals(message.getMs_id())) {
+                return;
+            }
+            if (size == slots.length) {
+                complete = false;
+                if (at == 0) {
+                    // Older than everything the ring holds.
+                    return;
+                }
+                slots[head] = null;
+                head = (head + 1) % slots.length;
+                size--;
+                at--;
+            }
+            for (int i = size; i > at; i--) {
+                set(i, get(i - 1));
+            }
+            set(at, message);
+            size++;
+        }
+
+        /**
+         * Merges the chat's newest messages, newest first as the database returns them, with what was
+         * appended since the ring was created.
+         */
+        synchronized void seed(List<Message> newestFirst) {
+            if (seeded) {
+                return;
+            }
+            List<Message> merged = new ArrayList<>(newestFirst);
+            for (int i = 0; i < size; i++) {
+                merged.add(get(i));
+            }
+            merged.sort(Comparator.comparing(Message::getMs_id));
+            head = 0;
+            size = 0;
+            Arrays.fill(slots, null);
+            // A short page from the database is the whole history, for as long as append drops nothing.
+            complete = newestFirst.size() < slots.length;
+            for (Message message : merged) {
+                append(message);
+            }
+            seeded = true;
+        }
+
+        synchronized List<Message> latest(int count) {
+            if (!seeded || (count > size && !complete)) {
+                return null;
+            }
+            return range(Math.max(0, size - count), size);
+        }
+
+        synchronized List<Message> after(Long after, int count) {
+            if (!seeded || (!complete && (size == 0 || get(0).getMs_id() > after))) {
+                return null;
+            }
+            int from = 0;
+            while (from < size && get(from).getMs_id() <= after) {
+                from++;
+            }
+            return range(from, Math.min(size, from + count));
+        }
+
+        private List<Message> range(int from, int to) {
+            List<Message> messages = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                messages.add(get(i));
+            }
+            return messages;
+        }
+
+        private Message get(int index) {
+            return slots[(head + index) % slots.length];
+        }
+
+        private void set(int index, Message message) {
+            slots[(head + index) % slots.length] = message;
+        }
+    }
+}
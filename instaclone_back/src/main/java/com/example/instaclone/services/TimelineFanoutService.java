@@ -0,0 +1,88 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.repository.FollowRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Pushes new posts into the materialized home timelines of the author's followers.
+ * Followers are paged by id and each page is written with one JDBC batch.
+ */
+@Service
+@Slf4j
+public class TimelineFanoutService {
+
+    private static final String INSERT_ENTRY =
+            "insert ignore into timeline_entry (user_id, post_id, author_id, created_at) values (?, ?, ?, ?)";
+
+    private static final String BACKFILL_ENTRIES =
+            "insert ignore into timeline_entry (user_id, post_id, author_id, created_at) " +
+            "select ?, p.id, p.user_id, p.created_at from post p where p.user_id = ? " +
+            "order by p.created_at desc, p.id desc limit ?";
+
+    private final FollowRepository followRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${timeline.fanout.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${timeline.backfill.size:20}")
+    private int backfillSize = 20;
+
+    @Autowired
+    public TimelineFanoutService(FollowRepository followRepository, JdbcTemplate jdbcTemplate) {
+        this.followRepository = followRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Async("fanoutExecutor")
+    public void fanOutPost(Long postId, Long authorId, LocalDateTime createdAt) {
+        insertEntries(List.of(authorId), postId, authorId, createdAt);
+        long delivered = 1;
+
+        Long afterFollowerId = 0L;
+        while (true) {
+            List<Long> followerIds = followRepository.findFollowerIdsAfter(authorId, afterFollowerId, PageRequest.ofSize(batchSize));
+            if (followerIds.isEmpty()) {
+                break;
+            }
+            insertEntries(followerIds, postId, authorId, createdAt);
+            delivered += followerIds.size();
+            if (followerIds.size() < batchSize) {
+                break;
+            }
+            afterFollowerId = followerIds.get(followerIds.size() - 1);
+        }
+        log.info("Fanned out Post {} to {} timelines", postId, delivered);
+    }
+
+    @Async("fanoutExecutor")
+    public void addToAuthorTimeline(Long postId, Long authorId, LocalDateTime createdAt) {
+        insertEntries(List.of(authorId), postId, authorId, createdAt);
+    }
+
+    @Async("fanoutExecutor")
+    public void backfill(Long followerId, Long authorId) {
+        int inserted = jdbcTemplate.update(BACKFILL_ENTRIES, followerId, authorId, backfillSize);
+        log.info("Backfilled {} posts of User {} into timeline of User {}", inserted, authorId, followerId);
+    }
+
+    private void insertEntries(List<Long> userIds, Long postId, Long authorId, LocalDateTime createdAt) {
+        Timestamp timestamp = Timestamp.valueOf(createdAt);
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, userIds, userIds.size(), (ps, userId) -> {
+            ps.setLong(1, userId);
+            ps.setLong(2, postId);
+            ps.setLong(3, authorId);
+            ps.setTimestamp(4, timestamp);
+        });
+    }
+}
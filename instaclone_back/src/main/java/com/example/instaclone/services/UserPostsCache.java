@@ -0,0 +1,114 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.events.PostCreatedEvent;
+import com.example.instaclone.events.PostDeletedEvent;
+import com.example.instaclone.pagination.FeedCursor;
+import com.example.instaclone.pagination.FeedPages;
+import com.example.instaclone.payload.response.PageResponse;
+import com.example.instaclone.repository.PostRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * In-process cache of each author's newest {@code profile.cache.posts-per-user} posts, so repeated
+ * profile views skip MySQL. Pages within those posts are cut from memory; only pages reaching past
+ * them are read from the database. Caffeine's W-TinyLFU policy evicts once the total number of
+ * cached rows passes {@code profile.cache.max-entries}.
+ * Post events invalidate an author's entry. A short TTL limits how stale like and comment counts can get.
+ * Hit, miss and eviction counts are published as {@code cache.*} meters tagged {@code cache=userPosts}.
+ */
+@Service
+@Slf4j
+public class UserPostsCache {
+
+    static final String CACHE_NAME = "userPosts";
+
+    private final PostRepository postRepository;
+
+    private final Cache<Long, Head> cache;
+
+    @Value("${profile.cache.posts-per-user:50}")
+    private int postsPerUser = 50;
+
+    @Autowired
+    public UserPostsCache(PostRepository postRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${profile.cache.max-entries:100000}") long maxEntries,
+                          @Value("${profile.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.postRepository = postRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxEntries)
+                .<Long, Head>weigher((userId, head) -> Math.max(1, head.rows().size()))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * @param after cursor of the previous page, {@code null} for the first page
+     * @return the author's posts older than {@code after}, newest first
+     */
+    public PageResponse<PostFeedRow> getPage(Long userId, FeedCursor after, int pageSize) {
+        Head head = cache.get(userId, this::loadHead);
+        List<PostFeedRow> rows = head.rows();
+        int from = 0;
+        while (after != null && from < rows.size() && !isBefore(rows.get(from), after)) {
+            from++;
+        }
+        List<PostFeedRow> cached = rows.subList(from, Math.min(rows.size(), from + pageSize + 1));
+        if (cached.size() > pageSize || !head.hasMore()) {
+            return FeedPages.slice(cached, pageSize);
+        }
+        if (!cached.isEmpty() && cached.size() == pageSize) {
+            // Ends exactly where the cached posts do, and the author has older ones.
+            PostFeedRow last = cached.get(pageSize - 1);
+            return new PageResponse<>(cached, new FeedCursor(last.getCreatedAt(), last.getId()).encode());
+        }
+        // One extra row tells us whether another page exists without a count query.
+        PageRequest limit = PageRequest.ofSize(pageSize + 1);
+        List<PostFeedRow> posts = after == null
+                ? postRepository.findAuthorFirstPage(userId, limit)
+                : postRepository.findAuthorPageBefore(userId, after.createdAt(), after.id(), limit);
+        return FeedPages.slice(posts, pageSize);
+    }
+
+    @EventListener
+    public void onPostCreated(PostCreatedEvent event) {
+        cache.invalidate(event.authorId());
+    }
+
+    @EventListener
+    public void onPostDeleted(PostDeletedEvent event) {
+        cache.invalidate(event.authorId());
+    }
+
+    private Head loadHead(Long userId) {
+        List<PostFeedRow> rows = postRepository.findAuthorFirstPage(userId, PageRequest.ofSize(postsPerUser + 1));
+        boolean hasMore = rows.size() > postsPerUser;
+        return new Head(List.copyOf(hasMore ? rows.subList(0, postsPerUser) : rows), hasMore);
+    }
+
+    private static boolean isBefore(PostFeedRow row, FeedCursor cursor) {
+        int byTime = row.getCreatedAt().compareTo(cursor.createdAt());
+        return byTime < 0 || (byTime == 0 && row.getId() < cursor.id());
+    }
+
+    /**
+     * The author's newest posts, and whether they have older ones.
+     */
+    private record Head(List<PostFeedRow> rows, boolean hasMore) {
+    }
+}
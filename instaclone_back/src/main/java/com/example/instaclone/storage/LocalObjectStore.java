@@ -0,0 +1,248 @@
+package com.example.instaclone.storage;
+
+import com.example.instaclone.exceptions.ObjectNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * {@link ObjectStore} on the local filesystem, for load tests without AWS and single-node installs.
+ * Each key is a file under {@code storage.local.dir}, with its content type in a {@code .content-type}
+ * file next to it.
+ * <p>
+ * Writes go to a temporary file in the target directory, which is then renamed over the key. Readers see
+ * the old object or the new one, never a partial write. {@link #file} exposes the file behind a key so that
+ * signed URLs can be served by the servlet container with {@code sendfile}; {@link #open} is a plain stream.
+ * <p>
+ * Signed URLs point at {@code /api/objects} on this server and carry an HMAC of the key and expiry.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+@Slf4j
+public class LocalObjectStore implements ObjectStore {
+
+    static final String URL_PATH = "/api/objects";
+
+    private static final String CONTENT_TYPE_SUFFIX = ".content-type";
+
+    private final Path root;
+
+    private final String publicUrl;
+
+    private final Duration urlTtl;
+
+    private final byte[] urlSecret;
+
+    @Autowired
+    public LocalObjectStore(@Value("${storage.local.dir:data/objects}") Path root,
+                            @Value("${storage.local.public-url:http://localhost:8080}") String publicUrl,
+                            @Value("${storage.local.url-ttl:10m}") Duration urlTtl,
+                            @Value("${storage.local.url-secret:}") String urlSecret) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.publicUrl = publicUrl;
+        this.urlTtl = urlTtl;
+        this.urlSecret = urlSecret.isEmpty() ? randomSecret() : urlSecret.getBytes(StandardCharsets.UTF_8);
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        // Content first: if it cannot be written, the old object keeps its content type.
+        writeAtomically(target, content);
+        if (contentType != null) {
+            writeAtomically(resolve(key + CONTENT_TYPE_SUFFIX),
+                    new ByteArrayInputStream(contentType.getBytes(StandardCharsets.UTF_8)));
+        } else {
+            Files.deleteIfExists(resolve(key + CONTENT_TYPE_SUFFIX));
+        }
+    }
+
+    @Override
+    public StoredObject open(String key) {
+        Path file = resolve(key);
+        try {
+            String contentType = contentType(key);
+            // Size and content from the same open file, even if the key is written meanwhile.
+            SeekableByteChannel channel = Files.newByteChannel(file);
+            return new StoredObject(Channels.newInputStream(channel), channel.size(), contentType);
+        } catch (NoSuchFileException e) {
+            throw new ObjectNotFoundException("Cannot find object " + key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The file holding the object, which the next write of the key replaces rather than changes.
+     */
+    public Path file(String key) {
+        Path file = resolve(key);
+        if (!Files.isRegularFile(file)) {
+            throw new ObjectNotFoundException("Cannot find object " + key);
+        }
+        return file;
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+            Files.deleteIfExists(resolve(key + CONTENT_TYPE_SUFFIX));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int deleteAll(Collection<String> keys) {
+        int deleted = 0;
+        for (String key : keys) {
+            if (exists(key)) {
+                delete(key);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    /**
+     * Walks the whole tree for every page and keeps the {@code limit} smallest keys after {@code cursor}, so
+     * memory stays bounded while the pages come out in key order like S3's. Meant for single-node sizes.
+     */
+    @Override
+    public ObjectPage list(String prefix, String cursor, int limit) {
+        PriorityQueue<ObjectPage.Entry> page =
+                new PriorityQueue<>(Comparator.comparing(ObjectPage.Entry::key).reversed());
+        boolean more = false;
+        try (Stream<Path> files = Files.walk(root)) {
+            Iterator<Path> iterator = files.filter(Files::isRegularFile).iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                String key = root.relativize(file).toString().replace(File.separatorChar, '/');
+                if (!key.startsWith(prefix) || key.endsWith(CONTENT_TYPE_SUFFIX) || key.endsWith(".tmp")
+                        || (cursor != null && key.compareTo(cursor) <= 0)) {
+                    continue;
+                }
+                page.add(new ObjectPage.Entry(key, Files.getLastModifiedTime(file).toInstant()));
+                if (page.size() > limit) {
+                    page.poll();
+                    more = true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<ObjectPage.Entry> objects = new ArrayList<>(page);
+        objects.sort(Comparator.comparing(ObjectPage.Entry::key));
+        String next = more ? objects.get(objects.size() - 1).key() : null;
+        return new ObjectPage(objects, next);
+    }
+
+    @Override
+    public SignedUrl signedUrl(String key) {
+        Instant expiresAt = Instant.now().plus(urlTtl);
+        long expires = expiresAt.getEpochSecond();
+        String url = publicUrl + URL_PATH
+                + "?key=" + URLEncoder.encode(key, StandardCharsets.UTF_8)
+                + "&expires=" + expires
+                + "&signature=" + sign(key, expires);
+        return new SignedUrl(url, Instant.ofEpochSecond(expires));
+    }
+
+    /**
+     * Whether a URL from {@link #signedUrl} with these parameters is genuine and not yet expired.
+     */
+    public boolean verify(String key, long expires, String signature) {
+        if (Instant.now().getEpochSecond() > expires) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(key, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void writeAtomically(Path target, InputStream content) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private String contentType(String key) throws IOException {
+        try {
+            return Files.readString(resolve(key + CONTENT_TYPE_SUFFIX), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Maps the key to a file under the root, rejecting keys that would escape it.
+     */
+    private Path resolve(String key) {
+        Path file = root.resolve(key).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IllegalArgumentException("Invalid object key: " + key);
+        }
+        return file;
+    }
+
+    private String sign(String key, long expires) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(urlSecret, "HmacSHA256"));
+            byte[] signature = mac.doFinal((key + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] randomSecret() {
+        log.info("No storage.local.url-secret set, signed object URLs will not survive a restart");
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+}
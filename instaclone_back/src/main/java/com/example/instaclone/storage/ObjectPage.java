@@ -0,0 +1,13 @@
+package com.example.instaclone.storage;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * @param next cursor for the following page, or {@code null} if this is the last one
+ */
+public record ObjectPage(List<Entry> objects, String next) {
+
+    public record Entry(String key, Instant lastModified) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.instaclone.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Blob storage for image bytes, addressed by key. A write replaces the key's object as a whole, so a
+ * reader sees the old or the new object, never a half-written one. Originals are keyed by their content
+ * and so written once; rendition keys are written again whenever their renditions are regenerated.
+ * The backend is picked with {@code storage.type}: {@code s3} (the default) or {@code local}.
+ */
+public interface ObjectStore {
+
+    /**
+     * @param size content length in bytes, or {@code -1} if unknown
+     */
+    void put(String key, InputStream content, long size, String contentType) throws IOException;
+
+    /**
+     * Opens the object for streaming; the caller must close it.
+     */
+    StoredObject open(String key);
+
+    /**
+     * Like {@link #open}, but for request threads that must not wait on a remote store.
+     */
+    default CompletableFuture<StoredObject> openAsync(String key) {
+        return CompletableFuture.completedFuture(open(key));
+    }
+
+    void delete(String key);
+
+    /**
+     * Deletes the keys in as few requests as the store allows and returns how many were deleted.
+     */
+    int deleteAll(Collection<String> keys);
+
+    boolean exists(String key);
+
+    /**
+     * One page of keys under {@code prefix}. Listing a large store is done page by page, so memory
+     * stays bounded by {@code limit}.
+     *
+     * @param cursor {@link ObjectPage#next()} of the previous page, or {@code null} for the first
+     */
+    ObjectPage list(String prefix, String cursor, int limit);
+
+    /**
+     * A time-limited URL clients can load the object from without the JWT.
+     */
+    SignedUrl signedUrl(String key);
+}
@@ -0,0 +1,6 @@
+package com.example.instaclone.storage;
+
+import java.time.Instant;
+
+public record SignedUrl(String url, Instant expiresAt) {
+}
@@ -0,0 +1,19 @@
+package com.example.instaclone.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An opened object.
+ *
+ * @param size        content length in bytes, or {@code -1} if the store does not report it
+ * @param contentType as given on upload; may be {@code null}
+ */
+public record StoredObject(InputStream content, long size, String contentType) implements Closeable {
+
+    @Override
+    public void close() throws IOException {
+        content.close();
+    }
+}
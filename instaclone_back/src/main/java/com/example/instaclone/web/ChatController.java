@@ -2,10 +2,13 @@ package com.example.instaclone.web;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import com.example.instaclone.dto.ChatNameDTO;
+import com.example.instaclone.dto.ChatSummaryDTO;
 import com.example.instaclone.entity.Chat;
 import com.example.instaclone.entity.Message;
 import com.example.instaclone.services.ChatService;
@@ -33,26 +36,38 @@ public class ChatController {
         Chat chat = createAndOrGetChat(to);
         message.setChat(chat);
         message.setT_stamp(generateTimeStamp());
-        message = messageService.save(message);
-        log.info("Message saved with id: {}", message.getMs_id());
-
-        simpMessagingTemplate.convertAndSend("/topic/messages/" + to, message);
-        log.info("Message sent to topic /topic/messages/{}", to);
+        // Broadcast only once the message is durable, so no one sees a message that could still be lost.
+        messageService.submit(message).whenComplete((saved, error) -> {
+            if (error != null) {
+                log.error("Message from {} to {} was not saved", message.getSender(), to, error);
+                return;
+            }
+            log.info("Message saved with id: {}", saved.getMs_id());
+            simpMessagingTemplate.convertAndSend("/topic/messages/" + to, saved);
+            log.info("Message sent to topic /topic/messages/{}", to);
+        });
     }
 
     @PostMapping("/getChats")
-    public List<Chat> getChats(@RequestBody String user) {
-        log.info("Getting chats for user: {}", user);
-        return chatService.findByParticipant(user);
+    public List<ChatSummaryDTO> getChats(Principal principal) {
+        log.info("Getting chats for user: {}", principal.getName());
+        return chatService.findSummaries(principal);
     }
 
+    /**
+     * One page of the chat's history, oldest first. Without a cursor this is the newest page; pass the
+     * smallest loaded id as {@code before} to scroll back, or the largest as {@code after} to catch up.
+     */
     @PostMapping("/getMessages")
-    public List<Message> getMessages(@RequestBody ChatNameDTO chatNameDTO) {
+    public List<Message> getMessages(@RequestBody ChatNameDTO chatNameDTO,
+                                     @RequestParam(value = "before", required = false) Long before,
+                                     @RequestParam(value = "after", required = false) Long after,
+                                     @RequestParam(value = "size", required = false) Integer size) {
         String chatName = chatNameDTO.getChat();
         log.info("Getting messages for chat: {}", chatName);
-        Chat chat = chatService.findChatByName(chatName);
-        if (chat != null) {
-            List<Message> messages = messageService.findAllByChat(chat);
+        Optional<Chat> chat = chatService.findChat(chatName);
+        if (chat.isPresent()) {
+            List<Message> messages = messageService.findPage(chat.get(), before, after, size);
             log.info("Found {} messages for chat: {}", messages.size(), chatName);
             return messages;
         } else {
@@ -63,13 +78,7 @@ public class ChatController {
 
     public Chat createAndOrGetChat(String name) {
         log.info("Creating or getting chat with name: {}", name);
-        Chat chat = chatService.findChatByName(name);
-        if (chat == null) {
-            chat = new Chat(name);
-            chat = chatService.save(chat);
-            log.info("Created new chat: {}", chat);
-        }
-        return chat;
+        return chatService.findOrCreateChat(name);
     }
 
     private String generateTimeStamp() {
@@ -0,0 +1,40 @@
+package com.example.instaclone.web;
+
+import com.example.instaclone.payload.response.MessageResponse;
+import com.example.instaclone.services.FollowService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.Map;
+
+@RestController
+@RequestMapping("api/follow")
+@CrossOrigin
+@RequiredArgsConstructor
+public class FollowController {
+
+    private final FollowService followService;
+
+    @PostMapping("/{userId}/follow")
+    public ResponseEntity<MessageResponse> follow(@PathVariable("userId") String userId, Principal principal) {
+        followService.follow(Long.parseLong(userId), principal);
+        return new ResponseEntity<>(new MessageResponse("User followed"), HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{userId}/unfollow")
+    public ResponseEntity<MessageResponse> unfollow(@PathVariable("userId") String userId, Principal principal) {
+        followService.unfollow(Long.parseLong(userId), principal);
+        return new ResponseEntity<>(new MessageResponse("User unfollowed"), HttpStatus.OK);
+    }
+
+    @GetMapping("/{userId}/counts")
+    public ResponseEntity<Map<String, Long>> getCounts(@PathVariable("userId") String userId) {
+        Long id = Long.parseLong(userId);
+        return new ResponseEntity<>(Map.of(
+                "followers", followService.getFollowersCount(id),
+                "following", followService.getFollowingCount(id)), HttpStatus.OK);
+    }
+}
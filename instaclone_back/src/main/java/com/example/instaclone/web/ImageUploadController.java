@@ -1,16 +1,24 @@
 package com.example.instaclone.web;
 
 import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.payload.response.ImageBatchResponse;
+import com.example.instaclone.payload.response.ImageUrlResponse;
 import com.example.instaclone.payload.response.MessageResponse;
 import com.example.instaclone.services.ImageUploadService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("api/image")
@@ -36,21 +44,55 @@ public class ImageUploadController {
     }
 
     @GetMapping("/profileImage")
-    public ResponseEntity<ImageModel> getImageForUser(Principal principal) {
+    public CompletableFuture<ResponseEntity<InputStreamResource>> getImageForUser(@RequestParam(value = "w", required = false) Integer width,
+                                                                                  Principal principal) {
+        return streamImage(imageUploadService.getImageToUser(principal), width);
+    }
+
+    @GetMapping("/profileImage/url")
+    public ResponseEntity<ImageUrlResponse> getImageUrlForUser(@RequestParam(value = "w", required = false) Integer width,
+                                                               Principal principal) {
         ImageModel userImage = imageUploadService.getImageToUser(principal);
-        return new ResponseEntity<>(userImage, HttpStatus.OK);
+        return new ResponseEntity<>(imageUploadService.presignImage(userImage, width), HttpStatus.OK);
     }
 
     @GetMapping("/profileImage/{userId}")
-    public ResponseEntity<ImageModel> getProfileImageToPost(@PathVariable("userId") Long userId) {
+    public CompletableFuture<ResponseEntity<InputStreamResource>> getProfileImageToPost(@PathVariable("userId") Long userId,
+                                                                                        @RequestParam(value = "w", required = false) Integer width) {
+        return streamImage(imageUploadService.getProfileImageToPost(userId), width);
+    }
+
+    @GetMapping("/profileImage/{userId}/url")
+    public ResponseEntity<ImageUrlResponse> getProfileImageUrlToPost(@PathVariable("userId") Long userId,
+                                                                     @RequestParam(value = "w", required = false) Integer width) {
         ImageModel userImage = imageUploadService.getProfileImageToPost(userId);
-        return new ResponseEntity<>(userImage, HttpStatus.OK);
+        return new ResponseEntity<>(imageUploadService.presignImage(userImage, width), HttpStatus.OK);
     }
 
     @GetMapping("/{postId}/image")
-    public ResponseEntity<ImageModel> getImageToPost(@PathVariable("postId") String postId) {
+    public CompletableFuture<ResponseEntity<InputStreamResource>> getImageToPost(@PathVariable("postId") String postId,
+                                                                                 @RequestParam(value = "w", required = false) Integer width) {
+        return streamImage(imageUploadService.getImageToPost(Long.parseLong(postId)), width);
+    }
+
+    @GetMapping("/{postId}/image/url")
+    public ResponseEntity<ImageUrlResponse> getImageUrlToPost(@PathVariable("postId") String postId,
+                                                              @RequestParam(value = "w", required = false) Integer width) {
         ImageModel postImage = imageUploadService.getImageToPost(Long.parseLong(postId));
-        return new ResponseEntity<>(postImage, HttpStatus.OK);
+        return new ResponseEntity<>(imageUploadService.presignImage(postImage, width), HttpStatus.OK);
+    }
+
+    /**
+     * URLs for every post and profile image of a feed page, so clients need one request per page
+     * instead of one per image.
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<ImageBatchResponse> getImageUrls(@RequestParam(value = "postIds", required = false) List<Long> postIds,
+                                                           @RequestParam(value = "userIds", required = false) List<Long> userIds,
+                                                           @RequestParam(value = "postWidth", required = false) Integer postWidth,
+                                                           @RequestParam(value = "avatarWidth", required = false) Integer avatarWidth) {
+        ImageBatchResponse images = imageUploadService.presignImages(postIds, userIds, postWidth, avatarWidth);
+        return new ResponseEntity<>(images, HttpStatus.OK);
     }
 
     @DeleteMapping("/profileImage/delete")
@@ -59,4 +101,25 @@ public class ImageUploadController {
         return ResponseEntity.ok(new MessageResponse("Profile image deleted successfully"));
     }
 
+    /**
+     * Copies the object to the response as-is; nothing is base64-encoded. The request thread is released
+     * while the object is fetched and the response is written once it is local.
+     */
+    private CompletableFuture<ResponseEntity<InputStreamResource>> streamImage(ImageModel image, Integer width) {
+        return imageUploadService.openImage(image, width).thenApply(object -> {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(resolveContentType(object.contentType(), image.getName()));
+            if (object.size() >= 0) {
+                headers.setContentLength(object.size());
+            }
+            return new ResponseEntity<>(new InputStreamResource(object.content()), headers, HttpStatus.OK);
+        });
+    }
+
+    private static MediaType resolveContentType(String stored, String fileName) {
+        if (stored != null && stored.startsWith("image/")) {
+            return MediaType.parseMediaType(stored);
+        }
+        return MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
 }
@@ -0,0 +1,67 @@
+package com.example.instaclone.web;
+
+import com.example.instaclone.storage.LocalObjectStore;
+import com.example.instaclone.storage.StoredObject;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Serves signed URLs issued by {@link LocalObjectStore}, standing in for presigned S3 URLs. No JWT is
+ * needed; the signature is the authorization.
+ * <p>
+ * On a Tomcat connector that supports it, the file is handed to Tomcat through its {@code sendfile} request
+ * attributes, the same way its {@code DefaultServlet} serves static files: the kernel copies the file to the
+ * socket and the body never passes through the JVM. Elsewhere the file is streamed.
+ */
+@RestController
+@RequestMapping("api/objects")
+@CrossOrigin
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+@RequiredArgsConstructor
+public class LocalObjectController {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final LocalObjectStore localObjectStore;
+
+    @GetMapping
+    public ResponseEntity<InputStreamResource> getObject(@RequestParam("key") String key,
+                                                         @RequestParam("expires") long expires,
+                                                         @RequestParam("signature") String signature,
+                                                         HttpServletRequest request) throws IOException {
+        if (!localObjectStore.verify(key, expires, signature)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        StoredObject object = localObjectStore.open(key);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(object.contentType() != null
+                ? MediaType.parseMediaType(object.contentType())
+                : MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentLength(object.size());
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            object.close();
+            // Tomcat sends the file after the headers, and writes no body of ours.
+            request.setAttribute(SENDFILE_FILENAME, localObjectStore.file(key).toRealPath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, object.size());
+            return new ResponseEntity<>(headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(new InputStreamResource(object.content()), headers, HttpStatus.OK);
+    }
+}
@@ -1,20 +1,29 @@
 package com.example.instaclone.web;
 
 import com.example.instaclone.dto.PostDTO;
+import com.example.instaclone.dto.PostFeedRow;
 import com.example.instaclone.entity.Post;
 import com.example.instaclone.mapper.PostMapper;
 import com.example.instaclone.payload.response.MessageResponse;
+import com.example.instaclone.payload.response.PageResponse;
 import com.example.instaclone.services.PostService;
 import com.example.instaclone.validations.ResponseErrorValidation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.ObjectUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
+import java.util.HexFormat;
 import java.util.List;
 
 @RestController
@@ -26,6 +35,7 @@ public class PostController {
     private final PostMapper postMapper;
     private final PostService postService;
     private final ResponseErrorValidation responseErrorValidation;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/create")
     public ResponseEntity<Object> createPost(@Valid @RequestBody PostDTO postDTO,
@@ -36,39 +46,83 @@ public class PostController {
         if (!ObjectUtils.isEmpty(errors)) return errors;
 
         Post post = postService.createPost(postDTO, principal);
-        PostDTO createdPost = postMapper.postToPostDTO(post);
+        PostDTO createdPost = postMapper.postToPostDTO(post, principal);
         return new ResponseEntity<>(createdPost, HttpStatus.OK);
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<PostDTO>> getAllPosts() {
-        List<PostDTO> postDTOList = postService.getAllPosts()
-                .stream()
-                .map(postMapper::postToPostDTO)
-                .toList();
-        return new ResponseEntity<>(postDTOList, HttpStatus.OK);
+    public ResponseEntity<PageResponse<PostDTO>> getAllPosts(@RequestParam(value = "cursor", required = false) String cursor,
+                                                             @RequestParam(value = "size", required = false) Integer size,
+                                                             Principal principal,
+                                                             WebRequest webRequest) {
+        PageResponse<PostFeedRow> page = postService.getAllPosts(cursor, size);
+        List<PostDTO> postDTOList = postMapper.feedRowsToPostDTOs(page.getItems(), principal);
+        PageResponse<PostDTO> body = new PageResponse<>(postDTOList, page.getNext());
+        String etag = etag(body);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    @GetMapping("/feed")
+    public ResponseEntity<PageResponse<PostDTO>> getHomeFeed(@RequestParam(value = "cursor", required = false) String cursor,
+                                                             @RequestParam(value = "size", required = false) Integer size,
+                                                             Principal principal) {
+        PageResponse<PostFeedRow> page = postService.getHomeFeed(principal, cursor, size);
+        List<PostDTO> postDTOList = postMapper.feedRowsToPostDTOs(page.getItems(), principal);
+        return new ResponseEntity<>(new PageResponse<>(postDTOList, page.getNext()), HttpStatus.OK);
     }
 
     @GetMapping("/user/posts")
-    public ResponseEntity<List<PostDTO>> getAllPostsForUser(Principal principal) {
-        List<PostDTO> postDTOList = postService.getAllPostForUser(principal)
-                .stream()
-                .map(postMapper::postToPostDTO)
-                .toList();
-        return new ResponseEntity<>(postDTOList, HttpStatus.OK);
+    public ResponseEntity<PageResponse<PostDTO>> getAllPostsForUser(@RequestParam(value = "cursor", required = false) String cursor,
+                                                                    @RequestParam(value = "size", required = false) Integer size,
+                                                                    Principal principal) {
+        PageResponse<PostFeedRow> page = postService.getAllPostForUser(principal, cursor, size);
+        List<PostDTO> postDTOList = postMapper.feedRowsToPostDTOs(page.getItems(), principal);
+        return new ResponseEntity<>(new PageResponse<>(postDTOList, page.getNext()), HttpStatus.OK);
     }
 
     @PostMapping("/{postId}/{username}/like")
     public ResponseEntity<PostDTO> likePost(@PathVariable("postId") String postId,
-                                            @PathVariable("username") String username) {
+                                            @PathVariable("username") String username,
+                                            Principal principal) {
         Post post = postService.likePost(Long.parseLong(postId), username);
-        PostDTO postDTO = postMapper.postToPostDTO(post);
+        PostDTO postDTO = postMapper.postToPostDTO(post, principal);
         return new ResponseEntity<>(postDTO, HttpStatus.OK);
     }
 
+    @PutMapping("/{postId}/like")
+    public ResponseEntity<PostDTO> like(@PathVariable("postId") String postId, Principal principal) {
+        Post post = postService.like(Long.parseLong(postId), principal);
+        return new ResponseEntity<>(postMapper.postToPostDTO(post, principal), HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{postId}/like")
+    public ResponseEntity<PostDTO> unlike(@PathVariable("postId") String postId, Principal principal) {
+        Post post = postService.unlike(Long.parseLong(postId), principal);
+        return new ResponseEntity<>(postMapper.postToPostDTO(post, principal), HttpStatus.OK);
+    }
+
     @DeleteMapping("/{postId}/delete")
     public ResponseEntity<MessageResponse> deletePost(@PathVariable("postId") String postId, Principal principal) {
         postService.deletePost(Long.parseLong(postId), principal);
         return new ResponseEntity<>(new MessageResponse("Post was deleted"), HttpStatus.OK);
     }
+
+    /**
+     * SHA-256 of the page as it is serialized, so every field of {@link PostDTO}, present or added later,
+     * counts. The DTOs carry {@code likedByMe}, so viewers who liked different posts get different tags.
+     * Cut to 128 bits.
+     */
+    private String etag(PageResponse<PostDTO> page) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(page));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
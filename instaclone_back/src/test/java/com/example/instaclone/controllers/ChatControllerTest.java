@@ -1,6 +1,7 @@
 package com.example.instaclone.controllers;
 
 import com.example.instaclone.dto.ChatNameDTO;
+import com.example.instaclone.dto.ChatSummaryDTO;
 import com.example.instaclone.entity.Chat;
 import com.example.instaclone.entity.Message;
 import com.example.instaclone.security.JWTTokenProvider;
@@ -36,8 +37,10 @@ import org.springframework.web.socket.sockjs.client.Transport;
 import org.springframework.web.socket.sockjs.client.WebSocketTransport;
 
 import java.lang.reflect.Type;
+import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -141,8 +144,8 @@ class ChatControllerTest {
         Chat chat = new Chat();
         chat.setName("testChat");
 
-        when(chatService.findChatByName(anyString())).thenReturn(chat);
-        when(messageService.findAllByChat(any(Chat.class))).thenReturn(messageList);
+        when(chatService.findChat(anyString())).thenReturn(Optional.of(chat));
+        when(messageService.findPage(any(Chat.class), isNull(), isNull(), isNull())).thenReturn(messageList);
 
         ChatNameDTO chatNameDTO = new ChatNameDTO();
         chatNameDTO.setChat("testChat");
@@ -158,18 +161,15 @@ class ChatControllerTest {
 
     @Test
     public void testGetChats() throws Exception {
-        List<Chat> chatList = new ArrayList<>();
-        Chat chat = new Chat();
-        chat.setName("testChat");
-        chatList.add(chat);
+        ChatSummaryDTO summary = new ChatSummaryDTO(1L, "testChat", 5L);
+        summary.setLastMessage("Hello");
 
-        when(chatService.findByParticipant(anyString())).thenReturn(chatList);
+        when(chatService.findSummaries(any(Principal.class))).thenReturn(List.of(summary));
 
         mockMvc.perform(post("/getChats")
-                        .header("Authorization", "Bearer " + jwtToken)  // Add your JWT token here
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(new ObjectMapper().writeValueAsString("testUser")))
+                        .header("Authorization", "Bearer " + jwtToken))  // Add your JWT token here
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].name").value("testChat"));
+                .andExpect(jsonPath("$[0].name").value("testChat"))
+                .andExpect(jsonPath("$[0].lastMessage").value("Hello"));
     }
 }
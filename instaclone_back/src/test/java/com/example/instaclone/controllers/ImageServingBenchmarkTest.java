@@ -0,0 +1,121 @@
+package com.example.instaclone.controllers;
+
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.services.ImageUploadService;
+import com.example.instaclone.storage.StoredObject;
+import com.example.instaclone.web.ImageUploadController;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Compares serving a post image as base64 inside {@link ImageModel} JSON (the previous behaviour)
+ * with streaming the raw bytes. Both paths run through the same MockMvc stack against an in-memory object.
+ */
+@Tag("benchmark")
+class ImageServingBenchmarkTest {
+
+    private static final int IMAGE_BYTES = 1_000_000;
+    private static final int WARMUP = 5;
+    private static final int REQUESTS = 30;
+
+    private final byte[] image = new byte[IMAGE_BYTES];
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        new Random(42).nextBytes(image);
+        ImageModel imageModel = new ImageModel();
+        imageModel.setName("bench.jpg");
+        imageModel.setS3Key("post-images/1/bench.jpg");
+
+        ImageUploadService imageUploadService = mock(ImageUploadService.class);
+        when(imageUploadService.getImageToPost(anyLong())).thenReturn(imageModel);
+        when(imageUploadService.openImage(any(), any())).thenAnswer(invocation -> CompletableFuture.completedFuture(
+                new StoredObject(new ByteArrayInputStream(image), IMAGE_BYTES, "image/jpeg")));
+
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new ImageUploadController(imageUploadService), new LegacyImageController(image))
+                .build();
+    }
+
+    @Test
+    void streamingBeatsBase64Json() throws Exception {
+        Result legacy = run("/legacy/1/image");
+        Result streaming = run("/api/image/1/image");
+
+        System.out.printf("Image serving, %d x %d KB: base64 JSON = %.0f req/s (%d bytes), streaming = %.0f req/s (%d bytes)%n",
+                REQUESTS, IMAGE_BYTES / 1000, legacy.requestsPerSecond(), legacy.bytes(),
+                streaming.requestsPerSecond(), streaming.bytes());
+        assertThat(streaming.bytes()).isEqualTo(IMAGE_BYTES);
+        // Base64 alone adds a third on top of the raw image.
+        assertThat(legacy.bytes()).isGreaterThan(IMAGE_BYTES * 4 / 3);
+    }
+
+    private Result run(String url) throws Exception {
+        int bytes = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            perform(url);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            bytes = perform(url).getResponse().getContentAsByteArray().length;
+        }
+        return new Result(REQUESTS / ((System.nanoTime() - start) / 1e9), bytes);
+    }
+
+    private MvcResult perform(String url) throws Exception {
+        MvcResult result = mockMvc.perform(get(url)).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result;
+    }
+
+    private record Result(double requestsPerSecond, int bytes) {
+    }
+
+    /**
+     * The pre-streaming endpoint: the whole image read onto the heap and returned inside the entity.
+     */
+    @RestController
+    static class LegacyImageController {
+
+        private final byte[] image;
+
+        LegacyImageController(byte[] image) {
+            this.image = image;
+        }
+
+        @GetMapping("/legacy/{postId}/image")
+        ResponseEntity<LegacyImage> getImageToPost(@PathVariable("postId") String postId) {
+            return ResponseEntity.ok(new LegacyImage("bench.jpg", new ByteArrayInputStream(image).readAllBytes()));
+        }
+    }
+
+    /**
+     * The shape {@link ImageModel} had while it still carried {@code imageBytes}.
+     */
+    record LegacyImage(String name, byte[] imageBytes) {
+    }
+}
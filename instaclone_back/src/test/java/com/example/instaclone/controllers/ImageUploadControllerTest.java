@@ -1,9 +1,12 @@
 package com.example.instaclone.controllers;
 
 import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.payload.response.ImageBatchResponse;
+import com.example.instaclone.payload.response.ImageUrlResponse;
 import com.example.instaclone.security.JWTTokenProvider;
 import com.example.instaclone.services.CustomUserDetailService;
 import com.example.instaclone.services.ImageUploadService;
+import com.example.instaclone.storage.StoredObject;
 import com.example.instaclone.web.ImageUploadController;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +15,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -22,16 +26,22 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.security.Principal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.BDDMockito.given;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(ImageUploadController.class)
@@ -105,28 +115,70 @@ public class ImageUploadControllerTest {
     public void testGetImageForUser() throws Exception {
         ImageModel imageModel = new ImageModel();
         imageModel.setName("test.jpg");
-        imageModel.setImageBytes("test image".getBytes());
 
         given(imageUploadService.getImageToUser(any(Principal.class))).willReturn(imageModel);
+        given(imageUploadService.openImage(imageModel, null)).willReturn(CompletableFuture.completedFuture(object("test image", "image/jpeg")));
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/image/profileImage")
+        MvcResult started = mockMvc.perform(MockMvcRequestBuilders.get("/api/image/profileImage")
                         .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.name").value("test.jpg"));
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andExpect(content().bytes("test image".getBytes()));
     }
 
     @Test
     public void testGetProfileImageToPost() throws Exception {
+        ImageModel imageModel = new ImageModel();
+        imageModel.setName("test.png");
+
+        given(imageUploadService.getProfileImageToPost(anyLong())).willReturn(imageModel);
+        given(imageUploadService.openImage(imageModel, null)).willReturn(CompletableFuture.completedFuture(object("test image", null)));
+
+        MvcResult started = mockMvc.perform(MockMvcRequestBuilders.get("/api/image/profileImage/1")
+                        .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(content().bytes("test image".getBytes()));
+    }
+
+    @Test
+    public void testGetProfileImageUrlToPost() throws Exception {
         ImageModel imageModel = new ImageModel();
         imageModel.setName("test.jpg");
-        imageModel.setImageBytes("test image".getBytes());
 
         given(imageUploadService.getProfileImageToPost(anyLong())).willReturn(imageModel);
+        given(imageUploadService.presignImage(imageModel, 150))
+                .willReturn(new ImageUrlResponse("https://bucket.s3.amazonaws.com/test.jpg?X-Amz-Signature=abc",
+                        Instant.parse("2024-05-01T12:10:00Z"), "\"1a2b3c\""));
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/image/profileImage/1")
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/image/profileImage/1/url?w=150")
                         .header("Authorization", "Bearer " + jwtToken))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.name").value("test.jpg"));
+                .andExpect(jsonPath("$.url").value("https://bucket.s3.amazonaws.com/test.jpg?X-Amz-Signature=abc"));
+    }
+
+    @Test
+    public void testGetImageUrls() throws Exception {
+        ImageUrlResponse url = new ImageUrlResponse("https://bucket.s3.amazonaws.com/test.jpg?X-Amz-Signature=abc",
+                Instant.parse("2024-05-01T12:10:00Z"), "\"1a2b3c\"");
+
+        given(imageUploadService.presignImages(List.of(1L, 2L), List.of(3L), 640, 150))
+                .willReturn(new ImageBatchResponse(Map.of(1L, url), Map.of(3L, url)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/image/batch?postIds=1,2&userIds=3&postWidth=640&avatarWidth=150")
+                        .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts.1.etag").value("\"1a2b3c\""))
+                .andExpect(jsonPath("$.profiles.3.url").value("https://bucket.s3.amazonaws.com/test.jpg?X-Amz-Signature=abc"));
     }
 
     @Test
@@ -142,14 +194,19 @@ public class ImageUploadControllerTest {
     public void testGetImageToPost() throws Exception {
         ImageModel imageModel = new ImageModel();
         imageModel.setName("test.jpg");
-        imageModel.setImageBytes("test image".getBytes());
 
         given(imageUploadService.getImageToPost(anyLong())).willReturn(imageModel);
+        given(imageUploadService.openImage(imageModel, null)).willReturn(CompletableFuture.completedFuture(object("test image", "image/jpeg")));
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/image/1/image")
+        MvcResult started = mockMvc.perform(MockMvcRequestBuilders.get("/api/image/1/image")
                         .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.name").value("test.jpg"));
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(content().bytes("test image".getBytes()));
     }
 
     // Additional tests for error cases
@@ -179,4 +236,9 @@ public class ImageUploadControllerTest {
                         .with(SecurityMockMvcRequestPostProcessors.csrf()))
                 .andExpect(status().isInternalServerError());
     }
+
+    private static StoredObject object(String content, String contentType) {
+        byte[] bytes = content.getBytes();
+        return new StoredObject(new ByteArrayInputStream(bytes), bytes.length, contentType);
+    }
 }
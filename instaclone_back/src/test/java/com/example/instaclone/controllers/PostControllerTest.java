@@ -1,8 +1,10 @@
 package com.example.instaclone.controllers;
 
 import com.example.instaclone.dto.PostDTO;
+import com.example.instaclone.dto.PostFeedRow;
 import com.example.instaclone.entity.Post;
 import com.example.instaclone.mapper.PostMapper;
+import com.example.instaclone.payload.response.PageResponse;
 import com.example.instaclone.security.JWTTokenProvider;
 import com.example.instaclone.services.CustomUserDetailService;
 import com.example.instaclone.services.PostService;
@@ -33,6 +35,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
@@ -102,7 +105,7 @@ public class PostControllerTest {
 
         given(responseErrorValidation.mapValidationService(any())).willReturn(null);
         given(postService.createPost(any(PostDTO.class), any(Principal.class))).willReturn(post);
-        given(postMapper.postToPostDTO(any(Post.class))).willReturn(postDTO);
+        given(postMapper.postToPostDTO(any(Post.class), any())).willReturn(postDTO);
 
         String postJson = "{\"title\":\"Test Title\",\"caption\":\"Test Caption\"}";
 
@@ -124,14 +127,15 @@ public class PostControllerTest {
 
         List<PostDTO> postDTOList = Arrays.asList(postDTO);
 
-        given(postService.getAllPosts()).willReturn(Arrays.asList(new Post()));
-        given(postMapper.postToPostDTO(any(Post.class))).willReturn(postDTO);
+        given(postService.getAllPosts(any(), any())).willReturn(new PageResponse<>(Arrays.asList(new PostFeedRow()), "next-token"));
+        given(postMapper.feedRowsToPostDTOs(anyList(), any())).willReturn(postDTOList);
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/post/all")
                         .header("Authorization", "Bearer " + jwtToken))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].title").value("Test Title"))
-                .andExpect(jsonPath("$[0].caption").value("Test Caption"));
+                .andExpect(jsonPath("$.items[0].title").value("Test Title"))
+                .andExpect(jsonPath("$.items[0].caption").value("Test Caption"))
+                .andExpect(jsonPath("$.next").value("next-token"));
     }
 
     @Test
@@ -142,14 +146,14 @@ public class PostControllerTest {
 
         List<PostDTO> postDTOList = Arrays.asList(postDTO);
 
-        given(postService.getAllPostForUser(any(Principal.class))).willReturn(Arrays.asList(new Post()));
-        given(postMapper.postToPostDTO(any(Post.class))).willReturn(postDTO);
+        given(postService.getAllPostForUser(any(Principal.class), any(), any())).willReturn(new PageResponse<>(Arrays.asList(new PostFeedRow()), null));
+        given(postMapper.feedRowsToPostDTOs(anyList(), any())).willReturn(postDTOList);
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/post/user/posts")
                         .header("Authorization", "Bearer " + jwtToken))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].title").value("Test Title"))
-                .andExpect(jsonPath("$[0].caption").value("Test Caption"));
+                .andExpect(jsonPath("$.items[0].title").value("Test Title"))
+                .andExpect(jsonPath("$.items[0].caption").value("Test Caption"));
     }
 
     @Test
@@ -164,7 +168,7 @@ public class PostControllerTest {
         post.setCaption("Test Caption");
 
         given(postService.likePost(anyLong(), anyString())).willReturn(post);
-        given(postMapper.postToPostDTO(any(Post.class))).willReturn(postDTO);
+        given(postMapper.postToPostDTO(any(Post.class), any())).willReturn(postDTO);
 
         mockMvc.perform(MockMvcRequestBuilders.post("/api/post/1/testUser/like")
                         .header("Authorization", "Bearer " + jwtToken)
@@ -1,6 +1,9 @@
 package com.example.instaclone.repository;
 
+import com.example.instaclone.dto.ChatSummaryDTO;
 import com.example.instaclone.entity.Chat;
+import com.example.instaclone.entity.ChatMember;
+import com.example.instaclone.entity.Message;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,6 +11,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.testcontainers.containers.MySQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -15,6 +20,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DataJpaTest
 @Testcontainers
@@ -29,16 +35,23 @@ class ChatRepositoryTest {
     @Autowired
     private ChatRepository chatRepository;
 
+    @Autowired
+    private ChatMemberRepository chatMemberRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
     @BeforeEach
     void setUp() {
         Chat chat = new Chat();
         chat.setName("Test Chat");
-        chat.setParticipant("John");
         chatRepository.save(chat);
     }
 
     @AfterEach
     void tearDown() {
+        messageRepository.deleteAll();
+        chatMemberRepository.deleteAll();
         chatRepository.deleteAll();
     }
 
@@ -62,15 +75,45 @@ class ChatRepositoryTest {
     }
 
     @Test
-    void shouldFindByParticipantContaining() {
-        List<Chat> chats = chatRepository.findByParticipantContaining("John");
-        assertThat(chats.size()).isEqualTo(1);
-        assertThat(chats.get(0).getParticipant()).isEqualTo("John");
+    void shouldInsertChatOnlyIfNameIsNew() {
+        Long existingId = chatRepository.findChatByName("Test Chat").getChatId();
+
+        chatRepository.insertIfAbsent("Test Chat");
+        chatRepository.insertIfAbsent("Other Chat");
+
+        assertThat(chatRepository.findChatIdByName("Test Chat")).contains(existingId);
+        assertThat(chatRepository.findChatIdByName("Other Chat")).isPresent();
+        assertThat(chatRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFailInsertOfNameLongerThanColumn() {
+        assertThatThrownBy(() -> chatRepository.insertIfAbsent("a".repeat(Chat.NAME_MAX_LENGTH + 1)))
+                .isInstanceOf(DataIntegrityViolationException.class);
     }
 
     @Test
-    void shouldNotFindByParticipantContaining() {
-        List<Chat> chats = chatRepository.findByParticipantContaining("Wrong Name");
-        assertThat(chats.size()).isEqualTo(0);
+    void shouldFindSummariesOfMemberChatsWithLatestMessage() {
+        Chat chat = chatRepository.findChatByName("Test Chat");
+        chatMemberRepository.save(new ChatMember(chat.getChatId(), 1L));
+        messageRepository.save(new Message("John", "2024/10/11-10:00", "Hello!", chat));
+        Message latest = messageRepository.save(new Message("Jane", "2024/10/11-11:00", "Hi!", chat));
+
+        List<ChatSummaryDTO> summaries = chatMemberRepository.findSummariesByUserId(1L);
+
+        assertThat(summaries).hasSize(1);
+        assertThat(summaries.get(0).getName()).isEqualTo("Test Chat");
+        assertThat(summaries.get(0).getLastMessageId()).isEqualTo(latest.getMs_id());
+        assertThat(chatMemberRepository.findSummariesByUserId(2L)).isEmpty();
+    }
+
+    @Test
+    void shouldFindOnlyChatsWithoutMembers() {
+        Chat chat = chatRepository.findChatByName("Test Chat");
+        assertThat(chatRepository.findWithoutMembersAfter(0L, PageRequest.ofSize(10))).containsExactly(chat);
+
+        chatMemberRepository.save(new ChatMember(chat.getChatId(), 1L));
+
+        assertThat(chatRepository.findWithoutMembersAfter(0L, PageRequest.ofSize(10))).isEmpty();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.entity.Comment;
+import com.example.instaclone.entity.Post;
+import com.example.instaclone.entity.TimelineEntry;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.services.HomeTimelineService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the statements Hibernate prepares for one feed page. The projection queries must read
+ * post, author and comment count in one statement no matter how many posts the page holds.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(HomeTimelineService.class)
+class FeedQueryCountTest {
+
+    private static final int POSTS = 30;
+    private static final int PAGE_SIZE = 20;
+    private static final int COMMENTS_PER_POST = 3;
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mySQLContainer
+            = new MySQLContainer<>("mysql:latest");
+
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private TimelineRepository timelineRepository;
+    @Autowired
+    private HomeTimelineService homeTimelineService;
+    @Autowired
+    private EntityManager entityManager;
+
+    private User reader;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        User author = user("author");
+        reader = user("reader");
+        for (int i = 0; i < POSTS; i++) {
+            Post post = new Post();
+            post.setTitle("Post " + i);
+            post.setCaption("Caption");
+            post.setLocation("Location");
+            post.setLikes(0);
+            post.setUser(author);
+            postRepository.save(post);
+            for (int c = 0; c < COMMENTS_PER_POST; c++) {
+                Comment comment = new Comment();
+                comment.setPost(post);
+                comment.setUserId(reader.getId());
+                comment.setUsername(reader.getUsername());
+                comment.setMessage("Comment " + c);
+                commentRepository.save(comment);
+            }
+            TimelineEntry entry = new TimelineEntry();
+            entry.setUserId(reader.getId());
+            entry.setPostId(post.getId());
+            entry.setAuthorId(author.getId());
+            entry.setCreatedAt(post.getCreatedAt());
+            timelineRepository.save(entry);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void globalFeedPageIsOneStatement() {
+        List<PostFeedRow> page = postRepository.findFeedFirstPage(PageRequest.ofSize(PAGE_SIZE));
+
+        assertThat(page).hasSize(PAGE_SIZE);
+        assertThat(page).allSatisfy(row -> {
+            assertThat(row.getUsername()).isEqualTo("author");
+            assertThat(row.getCommentCount()).isEqualTo(COMMENTS_PER_POST);
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+
+    @Test
+    void homeFeedPageDoesNotGrowWithPageSize() {
+        List<PostFeedRow> page = homeTimelineService.getHomeFeed(reader.getId(), null, PAGE_SIZE).getItems();
+
+        assertThat(page).hasSize(PAGE_SIZE);
+        assertThat(page).extracting(PostFeedRow::getCommentCount).containsOnly((long) COMMENTS_PER_POST);
+        // Materialized timeline page plus the lookup of high-follower accounts to pull from.
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setName(username);
+        user.setLastname(username);
+        user.setUsername(username);
+        user.setPassword("password");
+        return userRepository.save(user);
+    }
+}
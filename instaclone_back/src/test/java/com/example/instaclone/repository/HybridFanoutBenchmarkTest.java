@@ -0,0 +1,156 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.services.HomeTimelineService;
+import com.example.instaclone.services.TimelineFanoutService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the push and pull paths for one account with many followers:
+ * timeline rows written per post, and latency of the first home feed page for a follower.
+ * {@code @Async} is not active in this slice, so fan-out runs inline and can be counted.
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TimelineFanoutService.class, HomeTimelineService.class})
+class HybridFanoutBenchmarkTest {
+
+    private static final int FOLLOWERS = 20_000;
+    private static final int POSTS = 30;
+    private static final int PAGE_SIZE = 20;
+    private static final int READS = 50;
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mySQLContainer
+            = new MySQLContainer<>("mysql:latest");
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TimelineFanoutService timelineFanoutService;
+    @Autowired
+    private HomeTimelineService homeTimelineService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User author;
+    private User reader;
+
+    @BeforeEach
+    void setUp() {
+        author = saveUser("author");
+        reader = saveUser("reader");
+
+        List<Object[]> follows = new ArrayList<>(FOLLOWERS);
+        follows.add(new Object[]{reader.getId(), author.getId()});
+        for (long i = 1; i < FOLLOWERS; i++) {
+            // Followers other than the reader only exist as ids; nothing joins them to user rows.
+            follows.add(new Object[]{1_000_000 + i, author.getId()});
+        }
+        jdbcTemplate.batchUpdate("insert into follow (follower_id, followee_id) values (?, ?)", follows);
+    }
+
+    @Test
+    void compareWriteAmplificationAndReadLatency() {
+        List<Long> postIds = seedPosts();
+
+        // Push: every post lands in every follower's timeline.
+        long pushStart = System.nanoTime();
+        for (Long postId : postIds) {
+            timelineFanoutService.fanOutPost(postId, author.getId(), createdAt(postId));
+        }
+        long pushWriteNanos = System.nanoTime() - pushStart;
+        long pushRows = countTimelineRows();
+        long pushReadNanos = medianHomeFeedNanos();
+        List<Long> pushedPage = homeFeedIds();
+
+        // Pull: only the author's own timeline is written, followers merge at read time.
+        jdbcTemplate.update("delete from timeline_entry");
+        jdbcTemplate.update("update user set followers_count = ? where id = ?", FOLLOWERS, author.getId());
+        long pullStart = System.nanoTime();
+        for (Long postId : postIds) {
+            timelineFanoutService.addToAuthorTimeline(postId, author.getId(), createdAt(postId));
+        }
+        long pullWriteNanos = System.nanoTime() - pullStart;
+        long pullRows = countTimelineRows();
+        long pullReadNanos = medianHomeFeedNanos();
+        List<Long> pulledPage = homeFeedIds();
+
+        System.out.printf("push: %d rows written in %d ms, home feed p50 %d us%n",
+                pushRows, pushWriteNanos / 1_000_000, pushReadNanos / 1_000);
+        System.out.printf("pull: %d rows written in %d ms, home feed p50 %d us%n",
+                pullRows, pullWriteNanos / 1_000_000, pullReadNanos / 1_000);
+
+        assertThat(pushRows).isEqualTo((long) POSTS * FOLLOWERS + POSTS);
+        assertThat(pullRows).isEqualTo(POSTS);
+        assertThat(pulledPage).isEqualTo(pushedPage);
+    }
+
+    private User saveUser(String username) {
+        User user = new User();
+        user.setName(username);
+        user.setLastname(username);
+        user.setUsername(username);
+        user.setPassword("password");
+        return userRepository.save(user);
+    }
+
+    private List<Long> seedPosts() {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < POSTS; i++) {
+            jdbcTemplate.update("insert into post (title, caption, location, likes, created_at, user_id) values (?, ?, ?, ?, ?, ?)",
+                    "Post " + i, "Caption", "Location", 0, Timestamp.valueOf(base.plusMinutes(i)), author.getId());
+        }
+        return jdbcTemplate.queryForList("select id from post where user_id = ? order by id", Long.class, author.getId());
+    }
+
+    private LocalDateTime createdAt(Long postId) {
+        return jdbcTemplate.queryForObject("select created_at from post where id = ?", Timestamp.class, postId)
+                .toLocalDateTime();
+    }
+
+    private long countTimelineRows() {
+        return jdbcTemplate.queryForObject("select count(*) from timeline_entry", Long.class);
+    }
+
+    private long medianHomeFeedNanos() {
+        long[] samples = new long[READS];
+        for (int i = 0; i < READS; i++) {
+            long start = System.nanoTime();
+            homeTimelineService.getHomeFeed(reader.getId(), null, PAGE_SIZE);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[READS / 2];
+    }
+
+    private List<Long> homeFeedIds() {
+        return homeTimelineService.getHomeFeed(reader.getId(), null, PAGE_SIZE).getItems()
+                .stream()
+                .map(PostFeedRow::getId)
+                .toList();
+    }
+}
@@ -12,7 +12,6 @@ import org.testcontainers.containers.MySQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -32,17 +31,15 @@ class ImageRepositoryTest {
 
     @BeforeEach
     void setUp() {
-        byte[] sampleImage = "sample image data".getBytes(StandardCharsets.UTF_8);
-
         ImageModel imageModel1 = new ImageModel();
-        imageModel1.setImageBytes(sampleImage);
+        imageModel1.setS3Key("images/sha256/1");
         imageModel1.setUserId(1L);
         imageModel1.setPostId(1L);
         imageModel1.setName("Image1");
         imageRepository.save(imageModel1);
 
         ImageModel imageModel2 = new ImageModel();
-        imageModel2.setImageBytes(sampleImage);
+        imageModel2.setS3Key("images/sha256/2");
         imageModel2.setUserId(2L);
         imageModel2.setPostId(2L);
         imageModel2.setName("Image2");
@@ -67,7 +64,7 @@ class ImageRepositoryTest {
         assertThat(imageModel.isPresent()).isTrue();
         assertThat(imageModel.get().getName()).isEqualTo("Image1");
         assertThat(imageModel.get().getUserId()).isEqualTo(1L);
-        assertThat(imageModel.get().getImageBytes()).isEqualTo("sample image data".getBytes(StandardCharsets.UTF_8));
+        assertThat(imageModel.get().getS3Key()).isEqualTo("images/sha256/1");
     }
 
     @Test
@@ -0,0 +1,98 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.entity.Chat;
+import com.example.instaclone.entity.Message;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reads the same page of a chat's history, deep in the past, once the history holds 1 000 messages and
+ * again at 100 000. Keyset pages on {@code idx_message_chat_id} take about the same time at both sizes.
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MessageHistoryPagingBenchmarkTest {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int WARMUP = 20;
+    private static final int RUNS = 50;
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mySQLContainer =
+            new MySQLContainer<>("mysql:latest");
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pageLatencyStaysFlatAsHistoryGrows() {
+        Chat chat = chatRepository.save(new Chat("alice&bob"));
+        Chat other = chatRepository.save(new Chat("alice&carol"));
+        insertMessages(chat, 500);
+        insertMessages(other, 500);
+        Long cursor = messageRepository.findLatest(chat, PageRequest.ofSize(250)).get(249).getMs_id();
+
+        long small = medianPageNanos(chat, cursor);
+        for (int i = 0; i < 99; i++) {
+            insertMessages(chat, 500);
+            insertMessages(other, 500);
+        }
+        long large = medianPageNanos(chat, cursor);
+
+        System.out.printf("Chat page of %d before message %d: %.2f ms at 1k messages, %.2f ms at 100k%n",
+                PAGE_SIZE, cursor, small / 1e6, large / 1e6);
+        assertThat(large).isLessThan(small * 3 + 2_000_000);
+    }
+
+    private long medianPageNanos(Chat chat, Long before) {
+        long[] timings = new long[RUNS];
+        for (int i = -WARMUP; i < RUNS; i++) {
+            entityManager.clear();
+            long start = System.nanoTime();
+            List<Message> page = messageRepository.findBefore(chat, before, PageRequest.ofSize(PAGE_SIZE));
+            long elapsed = System.nanoTime() - start;
+            assertThat(page).hasSize(PAGE_SIZE);
+            if (i >= 0) {
+                timings[i] = elapsed;
+            }
+        }
+        Arrays.sort(timings);
+        return timings[RUNS / 2];
+    }
+
+    private void insertMessages(Chat chat, int count) {
+        StringJoiner rows = new StringJoiner(", ", "insert into message (chat_chat_id, sender, t_stamp, content) values ", "");
+        for (int i = 0; i < count; i++) {
+            rows.add("(" + chat.getChatId() + ", 'alice', '2024/10/11-10:00', 'message " + i + "')");
+        }
+        jdbcTemplate.update(rows.toString());
+    }
+}
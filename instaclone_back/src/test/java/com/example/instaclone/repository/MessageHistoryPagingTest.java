@@ -0,0 +1,80 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.entity.Chat;
+import com.example.instaclone.entity.Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A page of a chat's history before a cursor is read through {@code idx_message_chat_id}, so its cost does
+ * not grow with the history. {@link MessageHistoryPagingBenchmarkTest} measures that.
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MessageHistoryPagingTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mySQLContainer =
+            new MySQLContainer<>("mysql:latest");
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pageBeforeCursorUsesChatIndex() {
+        // Given
+        Chat chat = chatRepository.save(new Chat("alice&bob"));
+        Chat other = chatRepository.save(new Chat("alice&carol"));
+        for (int i = 0; i < 10; i++) {
+            insertMessages(chat, 500);
+            insertMessages(other, 500);
+        }
+        jdbcTemplate.execute("analyze table message");
+        Long cursor = messageRepository.findLatest(chat, PageRequest.ofSize(250)).get(249).getMs_id();
+
+        // When
+        List<Message> page = messageRepository.findBefore(chat, cursor, PageRequest.ofSize(PAGE_SIZE));
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("explain select * from message " +
+                "where chat_chat_id = ? and ms_id < ? order by ms_id desc limit " + PAGE_SIZE, chat.getChatId(), cursor);
+
+        // Then
+        assertThat(page).hasSize(PAGE_SIZE);
+        assertThat(page).allSatisfy(message -> {
+            assertThat(message.getChat().getChatId()).isEqualTo(chat.getChatId());
+            assertThat(message.getMs_id()).isLessThan(cursor);
+        });
+        assertThat(plan.get(0).get("key")).isEqualTo("idx_message_chat_id");
+    }
+
+    private void insertMessages(Chat chat, int count) {
+        StringJoiner rows = new StringJoiner(", ", "insert into message (chat_chat_id, sender, t_stamp, content) values ", "");
+        for (int i = 0; i < count; i++) {
+            rows.add("(" + chat.getChatId() + ", 'alice', '2024/10/11-10:00', 'message " + i + "')");
+        }
+        jdbcTemplate.update(rows.toString());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures how long it takes to read a feed page deep into the table as the table grows.
+ * With the keyset query and the (created_at, id) index the cost should track the page size, not the row count.
+ * Seeded rows are rolled back with the test transaction.
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PostFeedPaginationBenchmarkTest {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int PAGES_TO_WALK = 25;
+    private static final int BATCH = 1_000;
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mySQLContainer
+            = new MySQLContainer<>("mysql:latest");
+
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setName("bench");
+        user.setLastname("bench");
+        user.setUsername("bench");
+        user.setPassword("password");
+        userRepository.save(user);
+    }
+
+    @Test
+    void pageLatencyStaysFlatAsTableGrows() {
+        seedPosts(5_000, 0);
+        long small = medianNanosPerPage();
+
+        seedPosts(95_000, 5_000);
+        long large = medianNanosPerPage();
+
+        System.out.printf("Feed page latency: 5k rows = %d us, 100k rows = %d us%n", small / 1_000, large / 1_000);
+        // Generous bound: a full scan would be ~20x slower at 100k rows.
+        assertThat(large).isLessThan(small * 4 + 2_000_000);
+    }
+
+    private long medianNanosPerPage() {
+        long[] samples = new long[PAGES_TO_WALK];
+        List<PostFeedRow> page = postRepository.findFeedFirstPage(PageRequest.ofSize(PAGE_SIZE));
+        for (int i = 0; i < PAGES_TO_WALK && !page.isEmpty(); i++) {
+            PostFeedRow last = page.get(page.size() - 1);
+            long start = System.nanoTime();
+            page = postRepository.findFeedPageBefore(last.getCreatedAt(), last.getId(), PageRequest.ofSize(PAGE_SIZE));
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private void seedPosts(int count, int offset) {
+        LocalDateTime base = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int from = 0; from < count; from += BATCH) {
+            List<Object[]> rows = new ArrayList<>(BATCH);
+            for (int i = from; i < Math.min(from + BATCH, count); i++) {
+                int n = offset + i;
+                rows.add(new Object[]{"Post " + n, "Caption", "Location", 0,
+                        Timestamp.valueOf(base.plusSeconds(n / 3)), user.getId()});
+            }
+            jdbcTemplate.batchUpdate(
+                    "insert into post (title, caption, location, likes, created_at, user_id) values (?, ?, ?, ?, ?, ?)",
+                    rows);
+        }
+    }
+}
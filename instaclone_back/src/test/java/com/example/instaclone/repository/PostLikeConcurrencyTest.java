@@ -0,0 +1,148 @@
+package com.example.instaclone.repository;
+
+import com.example.instaclone.config.SchedulingConfig;
+import com.example.instaclone.entity.Post;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.services.LikeCounterBuffer;
+import com.example.instaclone.services.PostLikeIndex;
+import com.example.instaclone.services.PostLikeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fires likes from many threads at once; each thread commits its own transaction.
+ * Counter deltas are buffered, so the buffer is flushed before the post row is read.
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PostLikeService.class, LikeCounterBuffer.class, PostLikeIndex.class, SchedulingConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PostLikeConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int USERS = 3_000;
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mySQLContainer
+            = new MySQLContainer<>("mysql:latest");
+
+    @Autowired
+    private PostLikeService postLikeService;
+    @Autowired
+    private LikeCounterBuffer likeCounterBuffer;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Post post;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setName("user");
+        user.setLastname("userLastname");
+        user.setUsername("user123");
+        user.setPassword("password");
+        userRepository.save(user);
+
+        post = new Post();
+        post.setTitle("Viral");
+        post.setCaption("Caption");
+        post.setLikes(0);
+        post.setUser(user);
+        postRepository.save(post);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from post_like");
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void parallelLikesFromDistinctUsersAreAllCounted() throws Exception {
+        runConcurrently(USERS, i -> postLikeService.like(post.getId(), (long) i + 1));
+
+        assertThat(currentLikes()).isEqualTo(USERS);
+        assertThat(likeRows()).isEqualTo(USERS);
+    }
+
+    @Test
+    void parallelLikesFromSameUserCountOnce() throws Exception {
+        runConcurrently(USERS, i -> postLikeService.like(post.getId(), 42L));
+
+        assertThat(currentLikes()).isEqualTo(1);
+        assertThat(likeRows()).isEqualTo(1);
+    }
+
+    @Test
+    void parallelLikeAndUnlikeKeepCounterConsistentWithRows() throws Exception {
+        runConcurrently(USERS, i -> {
+            long userId = i % 100;
+            if (i % 2 == 0) {
+                postLikeService.like(post.getId(), userId);
+            } else {
+                postLikeService.unlike(post.getId(), userId);
+            }
+        });
+
+        assertThat(currentLikes()).isEqualTo(likeRows());
+    }
+
+    private void runConcurrently(int tasks, IntConsumer task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            int n = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.accept(n);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private int currentLikes() {
+        likeCounterBuffer.flush();
+        return jdbcTemplate.queryForObject("select likes from post where id = ?", Integer.class, post.getId());
+    }
+
+    private int likeRows() {
+        return jdbcTemplate.queryForObject("select count(*) from post_like where post_id = ?", Integer.class, post.getId());
+    }
+
+    @FunctionalInterface
+    private interface IntConsumer {
+        void accept(int value) throws Exception;
+    }
+}
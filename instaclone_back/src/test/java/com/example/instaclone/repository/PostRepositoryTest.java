@@ -1,5 +1,6 @@
 package com.example.instaclone.repository;
 
+import com.example.instaclone.dto.PostFeedRow;
 import com.example.instaclone.entity.Post;
 import com.example.instaclone.entity.User;
 import org.junit.jupiter.api.AfterEach;
@@ -9,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
 import org.testcontainers.containers.MySQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -88,6 +90,19 @@ class PostRepositoryTest {
         assertThat(posts.get(0).getTitle()).isEqualTo(post2.getTitle());
     }
 
+    @Test
+    void shouldPageFeedByCreatedAtAndId() {
+        List<PostFeedRow> firstPage = postRepository.findFeedFirstPage(PageRequest.ofSize(1));
+        assertThat(firstPage).extracting(PostFeedRow::getTitle).containsExactly("Post 2");
+
+        PostFeedRow last = firstPage.get(0);
+        List<PostFeedRow> secondPage = postRepository.findFeedPageBefore(last.getCreatedAt(), last.getId(), PageRequest.ofSize(1));
+        assertThat(secondPage).extracting(PostFeedRow::getTitle).containsExactly("Post 1");
+
+        PostFeedRow end = secondPage.get(0);
+        assertThat(postRepository.findFeedPageBefore(end.getCreatedAt(), end.getId(), PageRequest.ofSize(1))).isEmpty();
+    }
+
     @Test
     void shouldReturnPostWhenFindPostByIdAndUser() {
         Optional<Post> post = postRepository.findPostByIdAndUser(post1.getId(), user);
@@ -1,17 +1,32 @@
 package com.example.instaclone.services;
 
+import com.example.instaclone.dto.ChatSummaryDTO;
 import com.example.instaclone.entity.Chat;
+import com.example.instaclone.entity.ChatMember;
+import com.example.instaclone.entity.Message;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.exceptions.ChatNameTooLongException;
+import com.example.instaclone.repository.ChatMemberRepository;
 import com.example.instaclone.repository.ChatRepository;
+import com.example.instaclone.repository.MessageRepository;
+import com.example.instaclone.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 
+import java.security.Principal;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -20,16 +35,29 @@ class ChatServiceTest {
     @Mock
     private ChatRepository chatRepository;
 
-    @InjectMocks
+    @Mock
+    private ChatMemberRepository chatMemberRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private ChatService chatService;
 
     private Chat chat;
 
     @BeforeEach
     void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        chatService = new ChatService(chatRepository, chatMemberRepository, messageRepository, userRepository,
+                transactionManager, new SimpleMeterRegistry(), 100);
         chat = new Chat();
         chat.setName("TestChat");
-        chat.setParticipant("TestUser");
     }
 
     @Test
@@ -56,16 +84,114 @@ class ChatServiceTest {
     }
 
     @Test
-    void findByParticipant_shouldReturnChatsWhenParticipantFound() {
-        String participant = "TestUser";
-        List<Chat> chats = List.of(chat);
-        when(chatRepository.findByParticipantContaining(participant)).thenReturn(chats);
+    void findOrCreateChat_shouldAddBothUsersAsMembersOfNewChat() {
+        when(chatRepository.findChatIdByName("bob&alice")).thenReturn(Optional.empty(), Optional.of(7L));
+        when(userRepository.findUserByUsername("bob")).thenReturn(Optional.of(user(2L, "bob")));
+        when(userRepository.findUserByUsername("alice")).thenReturn(Optional.of(user(1L, "alice")));
+
+        Chat chat = chatService.findOrCreateChat("bob&alice");
+
+        assertEquals(7L, chat.getChatId());
+        assertEquals("bob&alice", chat.getName());
+        verify(chatMemberRepository).saveAll(List.of(new ChatMember(7L, 2L), new ChatMember(7L, 1L)));
+    }
+
+    @Test
+    void findOrCreateChat_shouldUseChatCreatedConcurrentlyWithoutTouchingMembers() {
+        when(chatRepository.findChatIdByName("bob&alice")).thenReturn(Optional.empty(), Optional.of(7L));
+        when(chatMemberRepository.existsByChatId(7L)).thenReturn(true);
+
+        assertEquals(7L, chatService.findOrCreateChat("bob&alice").getChatId());
+        verify(chatRepository).insertIfAbsent("bob&alice");
+        verify(chatMemberRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void findOrCreateChat_shouldRejectNameLongerThanColumn() {
+        String name = "a".repeat(Chat.NAME_MAX_LENGTH + 1);
+
+        assertThrows(ChatNameTooLongException.class, () -> chatService.findOrCreateChat(name));
+        verifyNoInteractions(chatRepository, chatMemberRepository);
+    }
+
+    @Test
+    void findOrCreateChat_shouldReadChatIdOnlyOnce() {
+        when(chatRepository.findChatIdByName("TestChat")).thenReturn(Optional.of(3L));
+
+        chatService.findOrCreateChat("TestChat");
+        Chat chat = chatService.findOrCreateChat("TestChat");
+
+        assertEquals(3L, chat.getChatId());
+        verify(chatRepository, times(1)).findChatIdByName("TestChat");
+        verify(chatRepository, never()).insertIfAbsent(any());
+        verifyNoInteractions(chatMemberRepository);
+    }
+
+    @Test
+    void findChat_shouldCacheExistingChatsButNotMissingOnes() {
+        when(chatRepository.findChatIdByName("TestChat")).thenReturn(Optional.of(3L));
+        when(chatRepository.findChatIdByName("NoChat")).thenReturn(Optional.empty());
+
+        chatService.findChat("TestChat");
+        Optional<Chat> chat = chatService.findChat("TestChat");
+        chatService.findChat("NoChat");
+        Optional<Chat> missing = chatService.findChat("NoChat");
+
+        assertEquals(3L, chat.orElseThrow().getChatId());
+        assertTrue(missing.isEmpty());
+        verify(chatRepository, times(1)).findChatIdByName("TestChat");
+        verify(chatRepository, times(2)).findChatIdByName("NoChat");
+        verify(chatRepository, never()).insertIfAbsent(any());
+    }
+
+    @Test
+    void findSummaries_shouldPreviewLatestMessageAndOrderByActivity() {
+        Principal principal = () -> "alice";
+        when(userRepository.findUserByUsername("alice")).thenReturn(Optional.of(user(1L, "alice")));
+        when(chatMemberRepository.findSummariesByUserId(1L)).thenReturn(List.of(
+                new ChatSummaryDTO(1L, "alice&carol", null),
+                new ChatSummaryDTO(2L, "bob&alice", 40L),
+                new ChatSummaryDTO(3L, "dave&alice", 90L)));
+        Message older = message(40L, "bob", "x".repeat(150));
+        Message newer = message(90L, "alice", "see you");
+        when(messageRepository.findAllById(List.of(40L, 90L))).thenReturn(List.of(older, newer));
+
+        List<ChatSummaryDTO> summaries = chatService.findSummaries(principal);
+
+        assertEquals(List.of(3L, 2L, 1L), summaries.stream().map(ChatSummaryDTO::getChatId).toList());
+        assertEquals("see you", summaries.get(0).getLastMessage());
+        assertEquals("alice", summaries.get(0).getLastSender());
+        assertEquals(101, summaries.get(1).getLastMessage().length());
+        assertNull(summaries.get(2).getLastMessage());
+    }
+
+    @Test
+    void addMissingMembers_shouldTakeMembersFromNameOfOlderChats() {
+        chat.setChatId(3L);
+        chat.setName("bob&alice");
+        when(chatRepository.findWithoutMembersAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(chat));
+        when(chatRepository.findWithoutMembersAfter(eq(3L), any(Pageable.class))).thenReturn(List.of());
+        when(userRepository.findUserByUsername("bob")).thenReturn(Optional.of(user(2L, "bob")));
+        when(userRepository.findUserByUsername("alice")).thenReturn(Optional.empty());
 
-        List<Chat> foundChats = chatService.findByParticipant(participant);
+        chatService.addMissingMembers();
+
+        verify(chatMemberRepository).saveAll(List.of(new ChatMember(3L, 2L)));
+    }
+
+    private static User user(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
 
-        assertNotNull(foundChats);
-        assertEquals(1, foundChats.size());
-        assertEquals("TestUser", foundChats.get(0).getParticipant());
-        verify(chatRepository).findByParticipantContaining(participant);
+    private static Message message(Long id, String sender, String content) {
+        Message message = new Message();
+        message.setMs_id(id);
+        message.setSender(sender);
+        message.setContent(content);
+        message.setT_stamp("2024/10/11-10:00");
+        return message;
     }
-}
\ No newline at end of file
+}
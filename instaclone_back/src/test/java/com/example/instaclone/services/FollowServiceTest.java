@@ -0,0 +1,144 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.Follow;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.exceptions.SelfFollowException;
+import com.example.instaclone.repository.FollowRepository;
+import com.example.instaclone.repository.TimelineRepository;
+import com.example.instaclone.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.security.Principal;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FollowServiceTest {
+
+    @InjectMocks
+    private FollowService followService;
+
+    @Mock
+    private FollowRepository followRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TimelineRepository timelineRepository;
+
+    @Mock
+    private TimelineFanoutService timelineFanoutService;
+
+    @Mock
+    private HomeTimelineService homeTimelineService;
+
+    private User follower;
+    private User followee;
+    private Principal principal;
+
+    @BeforeEach
+    void setUp() {
+        follower = new User();
+        follower.setId(1L);
+        follower.setUsername("follower");
+
+        followee = new User();
+        followee.setId(2L);
+        followee.setUsername("followee");
+
+        principal = mock(Principal.class);
+        when(principal.getName()).thenReturn("follower");
+        when(userRepository.findUserByUsername("follower")).thenReturn(Optional.of(follower));
+    }
+
+    @Test
+    void follow_shouldSaveRelationshipAndBackfillTimeline() {
+        // Given
+        when(userRepository.findById(2L)).thenReturn(Optional.of(followee));
+
+        // When
+        followService.follow(2L, principal);
+
+        // Then
+        ArgumentCaptor<Follow> followCaptor = ArgumentCaptor.forClass(Follow.class);
+        verify(followRepository).save(followCaptor.capture());
+        assertThat(followCaptor.getValue().getFollowerId()).isEqualTo(1L);
+        assertThat(followCaptor.getValue().getFolloweeId()).isEqualTo(2L);
+        verify(userRepository).adjustFollowersCount(2L, 1);
+        verify(timelineFanoutService).backfill(1L, 2L);
+    }
+
+    @Test
+    void follow_shouldNotBackfillHighFollowerAccount() {
+        // Given
+        when(userRepository.findById(2L)).thenReturn(Optional.of(followee));
+        when(homeTimelineService.isHighFollowerAccount(followee)).thenReturn(true);
+
+        // When
+        followService.follow(2L, principal);
+
+        // Then
+        verify(followRepository).save(any(Follow.class));
+        verifyNoInteractions(timelineFanoutService);
+    }
+
+    @Test
+    void follow_shouldBeIdempotentWhenAlreadyFollowing() {
+        // Given
+        when(userRepository.findById(2L)).thenReturn(Optional.of(followee));
+        when(followRepository.existsByFollowerIdAndFolloweeId(1L, 2L)).thenReturn(true);
+
+        // When
+        followService.follow(2L, principal);
+
+        // Then
+        verify(followRepository, never()).save(any());
+        verifyNoInteractions(timelineFanoutService);
+    }
+
+    @Test
+    void follow_shouldTolerateConcurrentDuplicateInsert() {
+        // Given
+        when(userRepository.findById(2L)).thenReturn(Optional.of(followee));
+        when(followRepository.save(any(Follow.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // When
+        followService.follow(2L, principal);
+
+        // Then
+        verifyNoInteractions(timelineFanoutService);
+    }
+
+    @Test
+    void follow_shouldRejectSelfFollow() {
+        assertThatThrownBy(() -> followService.follow(1L, principal))
+                .isInstanceOf(SelfFollowException.class);
+    }
+
+    @Test
+    void unfollow_shouldDeleteRelationshipAndTimelineEntries() {
+        // Given
+        Follow follow = new Follow(1L, 2L);
+        when(followRepository.findByFollowerIdAndFolloweeId(1L, 2L)).thenReturn(Optional.of(follow));
+
+        // When
+        followService.unfollow(2L, principal);
+
+        // Then
+        verify(followRepository).delete(follow);
+        verify(userRepository).adjustFollowersCount(2L, -1);
+        verify(timelineRepository).deleteByUserIdAndAuthorId(1L, 2L);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.events.PostDeletedEvent;
+import com.example.instaclone.pagination.FeedCursor;
+import com.example.instaclone.payload.response.PageResponse;
+import com.example.instaclone.repository.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GlobalFeedCacheTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_000);
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Test
+    void getPage_shouldSliceRowsAndPointCursorAtLastItem() {
+        // Given
+        GlobalFeedCache underTest = cache(60_000, 120_000);
+        PostFeedRow first = row(3L, NOW);
+        PostFeedRow second = row(2L, NOW);
+        PostFeedRow extra = row(1L, NOW.minusSeconds(1));
+        when(postRepository.findFeedFirstPage(PageRequest.ofSize(3))).thenReturn(List.of(first, second, extra));
+
+        // When
+        PageResponse<PostFeedRow> result = underTest.getPage(null, 2);
+
+        // Then
+        assertThat(result.getItems()).containsExactly(first, second);
+        assertThat(FeedCursor.decode(result.getNext())).isEqualTo(new FeedCursor(NOW, 2L));
+    }
+
+    @Test
+    void getPage_shouldSeekPastCursor() {
+        // Given
+        GlobalFeedCache underTest = cache(60_000, 120_000);
+        FeedCursor after = new FeedCursor(NOW, 7L);
+        PostFeedRow older = row(6L, NOW.minusSeconds(1));
+        when(postRepository.findFeedPageBefore(NOW, 7L, PageRequest.ofSize(21))).thenReturn(List.of(older));
+
+        // When
+        PageResponse<PostFeedRow> result = underTest.getPage(after, 20);
+
+        // Then
+        assertThat(result.getItems()).containsExactly(older);
+        assertThat(result.getNext()).isNull();
+    }
+
+    @Test
+    void getPage_shouldComputeOncePerPageForConcurrentCallers() throws Exception {
+        // Given
+        GlobalFeedCache underTest = cache(60_000, 120_000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch callers = new CountDownLatch(8);
+        CountDownLatch release = new CountDownLatch(1);
+        when(postRepository.findFeedFirstPage(PageRequest.ofSize(21))).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(row(1L, NOW));
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                callers.countDown();
+                underTest.getPage(null, 20);
+            });
+        }
+        // Callers that have not reached the cache by the release find the loaded page there.
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(callers.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        verify(postRepository, times(1)).findFeedFirstPage(PageRequest.ofSize(21));
+    }
+
+    @Test
+    void getPage_shouldServeStalePageWhileRefreshing() {
+        // Given
+        AtomicLong nanos = new AtomicLong();
+        GlobalFeedCache underTest = new GlobalFeedCache(postRepository, new SimpleMeterRegistry(), 1_000, 60_000, 100, nanos::get);
+        CountDownLatch release = new CountDownLatch(1);
+        List<PostFeedRow> fresh = List.of(row(2L, NOW.plusSeconds(1)), row(1L, NOW));
+        when(postRepository.findFeedFirstPage(PageRequest.ofSize(21)))
+                .thenReturn(List.of(row(1L, NOW)))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return fresh;
+                });
+        PageResponse<PostFeedRow> stale = underTest.getPage(null, 20);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        // When
+        PageResponse<PostFeedRow> served = underTest.getPage(null, 20);
+        release.countDown();
+
+        // Then
+        assertThat(served).isSameAs(stale);
+        verify(postRepository, timeout(1_000).times(2)).findFeedFirstPage(PageRequest.ofSize(21));
+    }
+
+    @Test
+    void onPostDeleted_shouldDropCachedPages() {
+        // Given
+        GlobalFeedCache underTest = cache(60_000, 120_000);
+        when(postRepository.findFeedFirstPage(PageRequest.ofSize(21))).thenReturn(List.of(row(1L, NOW)));
+        underTest.getPage(null, 20);
+
+        // When
+        underTest.onPostDeleted(new PostDeletedEvent(1L, 5L));
+        underTest.getPage(null, 20);
+
+        // Then
+        verify(postRepository, times(2)).findFeedFirstPage(PageRequest.ofSize(21));
+    }
+
+    private GlobalFeedCache cache(long refreshMillis, long expireMillis) {
+        return new GlobalFeedCache(postRepository, new SimpleMeterRegistry(), refreshMillis, expireMillis, 100);
+    }
+
+    private static PostFeedRow row(Long id, LocalDateTime createdAt) {
+        PostFeedRow row = new PostFeedRow();
+        row.setId(id);
+        row.setCreatedAt(createdAt);
+        return row;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.entity.User;
+import com.example.instaclone.pagination.FeedCursor;
+import com.example.instaclone.payload.response.PageResponse;
+import com.example.instaclone.repository.FollowRepository;
+import com.example.instaclone.repository.PostRepository;
+import com.example.instaclone.repository.TimelineRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HomeTimelineServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @InjectMocks
+    private HomeTimelineService homeTimelineService;
+
+    @Mock
+    private TimelineRepository timelineRepository;
+
+    @Mock
+    private FollowRepository followRepository;
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Test
+    void getHomeFeed_shouldMergePulledAccountsIntoMaterializedTimeline() {
+        // Given
+        PostFeedRow pushed1 = post(10L, 50);
+        PostFeedRow pushed2 = post(7L, 20);
+        PostFeedRow celebrity1 = post(9L, 40);
+        PostFeedRow celebrity2 = post(8L, 30);
+        PostFeedRow other = post(6L, 10);
+        when(timelineRepository.findHomeFirstPage(1L, PageRequest.ofSize(4))).thenReturn(List.of(pushed1, pushed2));
+        when(followRepository.findHighFollowerFolloweeIds(eq(1L), anyLong(), any())).thenReturn(List.of(2L, 3L));
+        when(postRepository.findAuthorFirstPage(2L, PageRequest.ofSize(4))).thenReturn(List.of(celebrity1, celebrity2));
+        when(postRepository.findAuthorFirstPage(3L, PageRequest.ofSize(4))).thenReturn(List.of(other));
+
+        // When
+        PageResponse<PostFeedRow> result = homeTimelineService.getHomeFeed(1L, null, 3);
+
+        // Then
+        assertThat(result.getItems()).containsExactly(pushed1, celebrity1, celebrity2);
+        assertThat(FeedCursor.decode(result.getNext())).isEqualTo(new FeedCursor(celebrity2.getCreatedAt(), 8L));
+    }
+
+    @Test
+    void getHomeFeed_shouldSeekEverySourcePastCursorAndDropDuplicates() {
+        // Given
+        PostFeedRow shared = post(5L, 5);
+        PostFeedRow older = post(4L, 4);
+        FeedCursor cursor = new FeedCursor(NOW.plusSeconds(6), 6L);
+        when(timelineRepository.findHomePageBefore(1L, cursor.createdAt(), 6L, PageRequest.ofSize(3)))
+                .thenReturn(List.of(shared));
+        when(followRepository.findHighFollowerFolloweeIds(eq(1L), anyLong(), any())).thenReturn(List.of(2L));
+        when(postRepository.findAuthorPageBefore(2L, cursor.createdAt(), 6L, PageRequest.ofSize(3)))
+                .thenReturn(List.of(shared, older));
+
+        // When
+        PageResponse<PostFeedRow> result = homeTimelineService.getHomeFeed(1L, cursor.encode(), 2);
+
+        // Then
+        assertThat(result.getItems()).containsExactly(shared, older);
+        assertThat(result.getNext()).isNull();
+    }
+
+    @Test
+    void isHighFollowerAccount_shouldCompareAgainstThreshold() {
+        User user = new User();
+        user.setFollowersCount(10_000L);
+        assertThat(homeTimelineService.isHighFollowerAccount(user)).isFalse();
+
+        user.setFollowersCount(10_001L);
+        assertThat(homeTimelineService.isHighFollowerAccount(user)).isTrue();
+    }
+
+    private static PostFeedRow post(Long id, int secondsAfterNow) {
+        PostFeedRow row = new PostFeedRow();
+        row.setId(id);
+        row.setCreatedAt(NOW.plusSeconds(secondsAfterNow));
+        return row;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.ImageBlob;
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.repository.ImageBlobRepository;
+import com.example.instaclone.repository.ImageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageBlobMigrationTest {
+
+    @Mock
+    private ImageBlobRepository imageBlobRepository;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ImageBlobMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        migration = new ImageBlobMigration(imageBlobRepository, imageRepository, imageStore, transactionManager);
+    }
+
+    @Test
+    void migrate_shouldStoreInflatedLegacyBytesAndClearColumn() throws IOException {
+        // Given
+        ImageModel image = image(1L, null);
+        ImageBlob blob = blob(1L, deflate("legacy image"));
+        ImageStore.Upload upload = upload();
+        givenLegacyIds(1L);
+        when(imageRepository.findById(1L)).thenReturn(Optional.of(image));
+        when(imageRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(image));
+        when(imageBlobRepository.findById(1L)).thenReturn(Optional.of(blob));
+        when(imageStore.upload(any(InputStreamSource.class), eq(12L), eq("image/jpeg"))).thenReturn(upload);
+
+        // When
+        migration.migrate();
+
+        // Then
+        ArgumentCaptor<InputStreamSource> content = ArgumentCaptor.forClass(InputStreamSource.class);
+        verify(imageStore).upload(content.capture(), eq(12L), eq("image/jpeg"));
+        assertThat(content.getValue().getInputStream().readAllBytes()).isEqualTo("legacy image".getBytes());
+        verify(imageStore).attach(image, upload);
+        assertThat(blob.getImageBytes()).isNull();
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void migrate_shouldOnlyClearBytesOfImageAlreadyInStorage() throws IOException {
+        // Given
+        ImageBlob blob = blob(1L, "copy of stored object".getBytes());
+        givenLegacyIds(1L);
+        when(imageRepository.findById(1L)).thenReturn(Optional.of(image(1L, "images/sha256/abc")));
+        when(imageRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(image(1L, "images/sha256/abc")));
+        when(imageBlobRepository.findById(1L)).thenReturn(Optional.of(blob));
+
+        // When
+        migration.migrate();
+
+        // Then
+        verify(imageStore, never()).upload(any(InputStreamSource.class), anyLong(), any());
+        verify(imageStore, never()).attach(any(), any());
+        assertThat(blob.getImageBytes()).isNull();
+    }
+
+    @Test
+    void migrate_shouldKeepBytesOfFailedRowAndContinue() throws IOException {
+        // Given
+        ImageBlob failing = blob(1L, "first".getBytes());
+        ImageBlob next = blob(2L, "second".getBytes());
+        givenLegacyIds(1L, 2L);
+        when(imageRepository.findById(1L)).thenReturn(Optional.of(image(1L, null)));
+        when(imageRepository.findById(2L)).thenReturn(Optional.of(image(2L, null)));
+        when(imageRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(image(2L, null)));
+        when(imageBlobRepository.findById(1L)).thenReturn(Optional.of(failing));
+        when(imageBlobRepository.findById(2L)).thenReturn(Optional.of(next));
+        when(imageStore.upload(any(InputStreamSource.class), eq(5L), any())).thenThrow(new IOException("storage unavailable"));
+        when(imageStore.upload(any(InputStreamSource.class), eq(6L), any())).thenReturn(upload());
+
+        // When
+        migration.migrate();
+
+        // Then
+        verify(imageRepository, never()).findByIdForUpdate(1L);
+        assertThat(failing.getImageBytes()).isEqualTo("first".getBytes());
+        assertThat(next.getImageBytes()).isNull();
+    }
+
+    private void givenLegacyIds(Long... ids) {
+        when(imageBlobRepository.findLegacyIds(eq(0L), any(Pageable.class))).thenReturn(List.of(ids));
+        when(imageBlobRepository.findLegacyIds(eq(ids[ids.length - 1]), any(Pageable.class))).thenReturn(List.of());
+    }
+
+    private static ImageStore.Upload upload() {
+        return new ImageStore.Upload("images/sha256/abc", null, 0, "image/jpeg", 0, true, null);
+    }
+
+    private static ImageModel image(Long id, String s3Key) {
+        ImageModel image = new ImageModel();
+        image.setId(id);
+        image.setName("photo.jpg");
+        image.setS3Key(s3Key);
+        return image;
+    }
+
+    private static ImageBlob blob(Long id, byte[] bytes) {
+        ImageBlob blob = new ImageBlob();
+        blob.setId(id);
+        blob.setImageBytes(bytes);
+        return blob;
+    }
+
+    private static byte[] deflate(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(content.getBytes());
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.repository.ImageObjectRepository;
+import com.example.instaclone.repository.ImageRepository;
+import com.example.instaclone.storage.ObjectPage;
+import com.example.instaclone.storage.ObjectStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageReconcilerTest {
+
+    private static final Instant OLD = Instant.now().minus(1, ChronoUnit.DAYS);
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageObjectRepository imageObjectRepository;
+
+    @Mock
+    private ObjectStore objectStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ImageReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(objectStore.list(anyString(), any(), anyInt())).thenReturn(new ObjectPage(List.of(), null));
+        lenient().when(imageRepository.findStoredAfter(anyLong(), any(Pageable.class))).thenReturn(List.of());
+        meterRegistry = new SimpleMeterRegistry();
+        reconciler = new ImageReconciler(imageRepository, imageObjectRepository, objectStore, transactionManager,
+                meterRegistry);
+    }
+
+    @Test
+    void reconcile_shouldDeleteOldUnreferencedObjectsAndTheirRenditionsAcrossPages() {
+        // Given
+        when(objectStore.list(eq("images/"), isNull(), anyInt())).thenReturn(new ObjectPage(List.of(
+                new ObjectPage.Entry("images/sha256/kept", OLD),
+                new ObjectPage.Entry("images/sha256/orphan", OLD)), "images/sha256/orphan"));
+        when(objectStore.list(eq("images/"), eq("images/sha256/orphan"), anyInt())).thenReturn(new ObjectPage(List.of(
+                new ObjectPage.Entry("images/sha256/uploading", Instant.now())), null));
+        when(objectStore.list(eq("renditions/"), isNull(), anyInt())).thenReturn(new ObjectPage(List.of(
+                new ObjectPage.Entry("renditions/640/images/sha256/kept", OLD),
+                new ObjectPage.Entry("renditions/640/images/sha256/orphan", OLD)), null));
+        when(imageRepository.findReferencedKeys(any())).thenReturn(List.of("images/sha256/kept"));
+        when(objectStore.deleteAll(any())).thenAnswer(invocation -> invocation.getArgument(0, Collection.class).size());
+
+        // When
+        reconciler.reconcile();
+
+        // Then
+        InOrder inOrder = inOrder(imageObjectRepository, imageRepository, objectStore);
+        inOrder.verify(imageObjectRepository).lock("images/sha256/orphan");
+        inOrder.verify(imageRepository).findByS3Key("images/sha256/orphan");
+        inOrder.verify(imageObjectRepository).incrementGeneration("images/sha256/orphan");
+        inOrder.verify(objectStore).deleteAll(List.of("images/sha256/orphan"));
+        verify(objectStore).deleteAll(List.of("renditions/640/images/sha256/orphan"));
+        verifyNoMoreInteractions(ignoreStubs(objectStore));
+        // Only deleting the original changes what an upload of the same content must write again.
+        verify(imageObjectRepository, times(1)).incrementGeneration(anyString());
+        assertThat(count("images.reconcile.objects", "scanned")).isEqualTo(5);
+        assertThat(count("images.reconcile.objects", "deleted")).isEqualTo(2);
+    }
+
+    @Test
+    void reconcile_shouldKeepOrphanThatGainedReferenceBeforeDeletion() {
+        // Given
+        when(objectStore.list(eq("images/"), isNull(), anyInt())).thenReturn(new ObjectPage(List.of(
+                new ObjectPage.Entry("images/sha256/reuploaded", OLD)), null));
+        when(imageRepository.findReferencedKeys(any())).thenReturn(List.of());
+        when(imageRepository.findByS3Key("images/sha256/reuploaded")).thenReturn(List.of(image(7L, "images/sha256/reuploaded")));
+
+        // When
+        reconciler.reconcile();
+
+        // Then
+        verify(imageObjectRepository).lock("images/sha256/reuploaded");
+        verify(imageObjectRepository, never()).incrementGeneration(anyString());
+        verify(objectStore, never()).deleteAll(any());
+        assertThat(count("images.reconcile.objects", "orphaned")).isEqualTo(1);
+        assertThat(count("images.reconcile.objects", "deleted")).isZero();
+    }
+
+    @Test
+    void reconcile_shouldDeleteImagesWhoseObjectIsGone() {
+        // Given
+        when(imageRepository.findStoredAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                image(1L, "images/sha256/present"), image(2L, "images/sha256/missing"), image(3L, "images/sha256/missing")));
+        when(objectStore.exists("images/sha256/present")).thenReturn(true);
+        when(objectStore.exists("images/sha256/missing")).thenReturn(false);
+
+        // When
+        reconciler.reconcile();
+
+        // Then
+        ArgumentCaptor<Iterable<Long>> ids = ArgumentCaptor.forClass(Iterable.class);
+        InOrder inOrder = inOrder(imageObjectRepository, imageRepository);
+        inOrder.verify(imageObjectRepository).lock("images/sha256/missing");
+        inOrder.verify(imageRepository).deleteAllByIdInBatch(ids.capture());
+        assertThat(ids.getValue()).containsExactly(2L, 3L);
+        // Once for the page, once more under the key's lock.
+        verify(objectStore, times(2)).exists("images/sha256/missing");
+        assertThat(count("images.reconcile.rows", "scanned")).isEqualTo(3);
+        assertThat(count("images.reconcile.rows", "deleted")).isEqualTo(2);
+    }
+
+    @Test
+    void reconcile_shouldKeepImagesWhoseObjectAppearsOnceLocked() {
+        // Given
+        when(imageRepository.findStoredAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                image(1L, "images/sha256/reuploaded")));
+        when(objectStore.exists("images/sha256/reuploaded")).thenReturn(false, true);
+
+        // When
+        reconciler.reconcile();
+
+        // Then
+        verify(imageObjectRepository).lock("images/sha256/reuploaded");
+        verify(imageRepository, never()).deleteAllByIdInBatch(any());
+        assertThat(count("images.reconcile.rows", "dangling")).isEqualTo(1);
+        assertThat(count("images.reconcile.rows", "deleted")).isZero();
+    }
+
+    @Test
+    void reconcile_shouldLeaveRecentImagesAlone() {
+        // Given
+        ImageModel recent = image(1L, "images/sha256/uploading");
+        recent.setCreatedAt(LocalDateTime.now());
+        when(imageRepository.findStoredAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(recent));
+
+        // When
+        reconciler.reconcile();
+
+        // Then
+        verify(objectStore, never()).exists(anyString());
+        verifyNoInteractions(imageObjectRepository);
+        verify(imageRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    private double count(String name, String result) {
+        return meterRegistry.get(name).tag("result", result).counter().count();
+    }
+
+    private static ImageModel image(Long id, String s3Key) {
+        ImageModel image = new ImageModel();
+        image.setId(id);
+        image.setName("photo.jpg");
+        image.setS3Key(s3Key);
+        return image;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.entity.enums.ERendition;
+import com.example.instaclone.repository.ImageRepository;
+import com.example.instaclone.storage.ObjectStore;
+import com.example.instaclone.storage.StoredObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageRenditionServiceTest {
+
+    private static final String KEY = "post-images/1/photo.png";
+
+    @InjectMocks
+    private ImageRenditionService imageRenditionService;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ObjectStore objectStore;
+
+    private final Map<String, byte[]> uploaded = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        lenient().doAnswer(invocation -> {
+            uploaded.put(invocation.getArgument(0), invocation.<InputStream>getArgument(1).readAllBytes());
+            return null;
+        }).when(objectStore).put(anyString(), any(InputStream.class), anyLong(), eq("image/jpeg"));
+    }
+
+    @Test
+    void generateRenditions_shouldStoreEveryWidthNarrowerThanOriginal() throws IOException {
+        // Given
+        givenOriginal(2000, 1000);
+        ImageModel image = image();
+        when(imageRepository.findByS3Key(KEY)).thenReturn(List.of(image));
+
+        // When
+        imageRenditionService.generateRenditions(KEY);
+
+        // Then
+        assertThat(uploaded).containsOnlyKeys(
+                "renditions/1080/" + KEY, "renditions/640/" + KEY, "renditions/150/" + KEY);
+        assertThat(width("renditions/1080/" + KEY)).isEqualTo(1080);
+        assertThat(width("renditions/640/" + KEY)).isEqualTo(640);
+        BufferedImage avatar = ImageIO.read(new ByteArrayInputStream(uploaded.get("renditions/150/" + KEY)));
+        assertThat(avatar.getWidth()).isEqualTo(150);
+        assertThat(avatar.getHeight()).isEqualTo(75);
+        assertThat(image.getRenditions()).containsExactlyInAnyOrder(ERendition.values());
+        verify(imageRepository).saveAll(List.of(image));
+    }
+
+    @Test
+    void generateRenditions_shouldNotUpscaleSmallOriginal() throws IOException {
+        // Given
+        givenOriginal(400, 400);
+        ImageModel image = image();
+        when(imageRepository.findByS3Key(KEY)).thenReturn(List.of(image));
+
+        // When
+        imageRenditionService.generateRenditions(KEY);
+
+        // Then
+        assertThat(uploaded).containsOnlyKeys("renditions/150/" + KEY);
+        assertThat(image.getRenditions()).containsExactly(ERendition.AVATAR);
+    }
+
+    @Test
+    void generateRenditions_shouldDropRenditionsOfImageDeletedMeanwhile() throws IOException {
+        // Given
+        givenOriginal(800, 600);
+        when(imageRepository.findByS3Key(KEY)).thenReturn(List.of());
+
+        // When
+        imageRenditionService.generateRenditions(KEY);
+
+        // Then
+        verify(objectStore).delete("renditions/640/" + KEY);
+        verify(objectStore).delete("renditions/150/" + KEY);
+        verify(imageRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void generateRenditions_shouldSkipUndecodableUpload() {
+        // Given
+        when(objectStore.open(KEY)).thenReturn(object("not an image".getBytes()));
+
+        // When
+        imageRenditionService.generateRenditions(KEY);
+
+        // Then
+        assertThat(uploaded).isEmpty();
+        verifyNoInteractions(imageRepository);
+    }
+
+    @Test
+    void deleteRenditions_shouldDeleteEveryRecordedRendition() {
+        // Given
+        ImageModel image = image();
+        image.setRenditions(EnumSet.of(ERendition.AVATAR, ERendition.FULL));
+
+        // When
+        imageRenditionService.deleteRenditions(image);
+
+        // Then
+        verify(objectStore).delete("renditions/150/" + KEY);
+        verify(objectStore).delete("renditions/1080/" + KEY);
+        verifyNoMoreInteractions(objectStore);
+    }
+
+    @Test
+    void smallestCovering_shouldPickNarrowestAvailableRenditionAtLeastAsWide() {
+        EnumSet<ERendition> available = EnumSet.of(ERendition.AVATAR, ERendition.FULL);
+
+        assertThat(ERendition.smallestCovering(available, 100)).contains(ERendition.AVATAR);
+        assertThat(ERendition.smallestCovering(available, 300)).contains(ERendition.FULL);
+        assertThat(ERendition.smallestCovering(available, 2000)).isEmpty();
+    }
+
+    @Test
+    void placeholder_shouldBeSmallInlineJpegWithOriginalAspectRatio() throws IOException {
+        // Given
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(900, 1600, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        // When
+        String placeholder = imageRenditionService.placeholder(new ByteArrayResource(png.toByteArray()));
+
+        // Then
+        assertThat(placeholder).startsWith("data:image/jpeg;base64,").hasSizeLessThan(2048);
+        byte[] jpeg = Base64.getDecoder().decode(placeholder.substring("data:image/jpeg;base64,".length()));
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertThat(decoded.getWidth()).isEqualTo(9);
+        assertThat(decoded.getHeight()).isEqualTo(16);
+    }
+
+    @Test
+    void placeholder_shouldBeNullForContentThatIsNoImage() {
+        assertThat(imageRenditionService.placeholder(new ByteArrayResource("not an image".getBytes()))).isNull();
+    }
+
+    private void givenOriginal(int width, int height) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", png);
+        when(objectStore.open(KEY)).thenReturn(object(png.toByteArray()));
+    }
+
+    private int width(String key) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(uploaded.get(key))).getWidth();
+    }
+
+    private static ImageModel image() {
+        ImageModel image = new ImageModel();
+        image.setId(1L);
+        image.setS3Key(KEY);
+        return image;
+    }
+
+    private static StoredObject object(byte[] bytes) {
+        return new StoredObject(new ByteArrayInputStream(bytes), bytes.length, null);
+    }
+}
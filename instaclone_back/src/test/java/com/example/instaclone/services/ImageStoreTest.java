@@ -0,0 +1,204 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.ImageModel;
+import com.example.instaclone.entity.enums.ERendition;
+import com.example.instaclone.repository.ImageObjectRepository;
+import com.example.instaclone.repository.ImageRepository;
+import com.example.instaclone.storage.ObjectStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageStoreTest {
+
+    // SHA-256 of "image content"
+    private static final String KEY = "images/sha256/b78f9dfd81d9bc073cad0a0e3acb1d6b164ede188bd71beb775b8004d7237117";
+
+    @InjectMocks
+    private ImageStore imageStore;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageObjectRepository imageObjectRepository;
+
+    @Mock
+    private ObjectStore objectStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ImageRenditionService imageRenditionService;
+
+    private final MockMultipartFile file =
+            new MockMultipartFile("file", "photo.jpg", "image/jpeg", "image content".getBytes());
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(imageRepository.save(any(ImageModel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(imageObjectRepository.findGeneration(anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void store_shouldUploadNewContentUnderItsHash() throws IOException {
+        // Given
+        when(imageRepository.findByS3Key(anyString())).thenReturn(List.of());
+        when(imageRenditionService.placeholder(file)).thenReturn("data:image/jpeg;base64,AAAA");
+        ImageModel image = new ImageModel();
+
+        // When
+        ImageModel stored = imageStore.store(image, file);
+
+        // Then
+        assertThat(stored.getS3Key()).isEqualTo(KEY);
+        assertThat(stored.getPlaceholder()).isEqualTo("data:image/jpeg;base64,AAAA");
+        verify(objectStore).put(eq(KEY), any(InputStream.class), eq(file.getSize()), eq("image/jpeg"));
+        verify(imageRenditionService).generateRenditions(KEY);
+        verify(imageRepository).save(image);
+    }
+
+    @Test
+    void store_shouldReuseObjectAndRenditionsOfIdenticalContent() throws IOException {
+        // Given
+        ImageModel existing = reference(1L);
+        existing.setRenditions(EnumSet.of(ERendition.AVATAR, ERendition.FEED));
+        existing.setPlaceholder("data:image/jpeg;base64,AAAA");
+        when(imageRepository.findByS3Key(anyString())).thenReturn(List.of(existing));
+        ImageModel image = new ImageModel();
+
+        // When
+        ImageModel stored = imageStore.store(image, file);
+
+        // Then
+        assertThat(stored.getRenditions()).containsExactlyInAnyOrder(ERendition.AVATAR, ERendition.FEED);
+        assertThat(stored.getPlaceholder()).isEqualTo("data:image/jpeg;base64,AAAA");
+        verify(objectStore, never()).put(anyString(), any(InputStream.class), anyLong(), any());
+        verifyNoInteractions(imageRenditionService);
+        verify(imageRepository).save(image);
+    }
+
+    @Test
+    void store_shouldGiveSameKeyToSameBytes() throws IOException {
+        // Given
+        when(imageRepository.findByS3Key(anyString())).thenReturn(List.of());
+        MockMultipartFile renamed = new MockMultipartFile("file", "other-name.jpg", "image/jpeg", "image content".getBytes());
+        MockMultipartFile different = new MockMultipartFile("file", "photo.jpg", "image/jpeg", "other content".getBytes());
+
+        // When
+        String first = imageStore.store(new ImageModel(), file).getS3Key();
+        String second = imageStore.store(new ImageModel(), renamed).getS3Key();
+        String third = imageStore.store(new ImageModel(), different).getS3Key();
+
+        // Then
+        assertThat(second).isEqualTo(first);
+        assertThat(third).isNotEqualTo(first);
+    }
+
+    @Test
+    void store_shouldUploadBeforeLockingKey() throws IOException {
+        // Given
+        when(imageRepository.findByS3Key(KEY)).thenReturn(List.of());
+
+        // When
+        imageStore.store(new ImageModel(), file);
+
+        // Then
+        InOrder inOrder = inOrder(objectStore, imageRenditionService, imageObjectRepository, imageRepository);
+        inOrder.verify(objectStore).put(eq(KEY), any(InputStream.class), anyLong(), any());
+        inOrder.verify(imageRenditionService).placeholder(file);
+        inOrder.verify(imageObjectRepository).lock(KEY);
+        inOrder.verify(imageRepository).findByS3Key(KEY);
+        inOrder.verify(imageRepository).save(any(ImageModel.class));
+        verify(objectStore, times(1)).put(anyString(), any(InputStream.class), anyLong(), any());
+    }
+
+    @Test
+    void store_shouldWriteAgainWhenObjectWasDeletedAfterUpload() throws IOException {
+        // Given
+        when(imageRepository.findByS3Key(KEY)).thenReturn(List.of());
+        when(imageObjectRepository.findGeneration(KEY)).thenReturn(Optional.of(3L), Optional.of(4L));
+
+        // When
+        imageStore.store(new ImageModel(), file);
+
+        // Then
+        verify(objectStore, times(2)).put(eq(KEY), any(InputStream.class), eq(file.getSize()), eq("image/jpeg"));
+        verify(imageRepository).save(any(ImageModel.class));
+    }
+
+    @Test
+    void store_shouldWriteWhenReferencesSeenBeforeUploadAreGone() throws IOException {
+        // Given
+        when(imageRepository.findByS3Key(KEY)).thenReturn(List.of(reference(1L)), List.of());
+
+        // When
+        imageStore.store(new ImageModel(), file);
+
+        // Then
+        verify(objectStore, times(1)).put(eq(KEY), any(InputStream.class), eq(file.getSize()), eq("image/jpeg"));
+        verify(imageRenditionService).generateRenditions(KEY);
+    }
+
+    @Test
+    void release_shouldKeepObjectWhileOtherReferencesRemain() {
+        // Given
+        ImageModel image = reference(1L);
+        when(imageRepository.findByS3Key(KEY)).thenReturn(List.of(image, reference(2L)));
+
+        // When
+        imageStore.release(image);
+
+        // Then
+        verify(imageRepository).delete(image);
+        verifyNoInteractions(objectStore, imageRenditionService);
+    }
+
+    @Test
+    void release_shouldDeleteObjectWithLastReference() {
+        // Given
+        ImageModel image = reference(1L);
+        when(imageRepository.findByS3Key(KEY)).thenReturn(List.of(image));
+
+        // When
+        imageStore.release(image);
+
+        // Then
+        verify(imageRepository).delete(image);
+        InOrder inOrder = inOrder(imageObjectRepository, objectStore);
+        inOrder.verify(imageObjectRepository).lock(KEY);
+        inOrder.verify(imageObjectRepository).incrementGeneration(KEY);
+        inOrder.verify(objectStore).delete(KEY);
+        verify(imageRenditionService).deleteRenditions(image);
+    }
+
+    private static ImageModel reference(Long id) {
+        ImageModel image = new ImageModel();
+        image.setId(id);
+        image.setS3Key(KEY);
+        return image;
+    }
+}
@@ -3,10 +3,15 @@ package com.example.instaclone.services;
 import com.example.instaclone.entity.ImageModel;
 import com.example.instaclone.entity.Post;
 import com.example.instaclone.entity.User;
+import com.example.instaclone.entity.enums.ERendition;
+import com.example.instaclone.exceptions.BatchTooLargeException;
+import com.example.instaclone.payload.response.ImageBatchResponse;
 import com.example.instaclone.repository.ImageRepository;
 import com.example.instaclone.repository.UserRepository;
-import com.example.instaclone.s3.S3Buckets;
-import com.example.instaclone.s3.S3Service;
+import com.example.instaclone.payload.response.ImageUrlResponse;
+import com.example.instaclone.storage.ObjectStore;
+import com.example.instaclone.storage.SignedUrl;
+import com.example.instaclone.storage.StoredObject;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -16,13 +21,24 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.security.Principal;
+import java.time.Instant;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,16 +51,16 @@ class ImageUploadServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private S3Service s3Service;
+    private ObjectStore objectStore;
 
     @Mock
-    private S3Buckets s3Buckets;
+    private ImageStore imageStore;
 
     @InjectMocks
     private ImageUploadService imageUploadService;
 
     @Test
-    void uploadImageToUser_shouldUploadAndSaveImage() throws IOException {
+    void uploadImageToUser_shouldReplaceExistingProfileImage() throws IOException {
         // Given
         MultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", "image content".getBytes());
         Principal principal = mock(Principal.class);
@@ -53,25 +69,24 @@ class ImageUploadServiceTest {
         User user = new User();
         user.setId(1L);
         when(userRepository.findUserByUsername("testUser")).thenReturn(Optional.of(user));
-        when(s3Buckets.getImgBucket()).thenReturn("bucket-name");
+        ImageModel existingImage = new ImageModel();
+        when(imageRepository.findByUserIdAndPostId(1L, null)).thenReturn(Optional.of(existingImage));
 
         // When
         imageUploadService.uploadImageToUser(file, principal);
 
         // Then
-        ArgumentCaptor<String> s3KeyCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<ImageModel> imageCaptor = ArgumentCaptor.forClass(ImageModel.class);
+        verify(imageStore).release(existingImage);
+        verify(imageStore).store(imageCaptor.capture(), eq(file));
 
-        verify(s3Service).putObject(eq("bucket-name"), s3KeyCaptor.capture(), eq(file.getBytes()));
-        verify(imageRepository).save(imageCaptor.capture());
-
-        assertTrue(s3KeyCaptor.getValue().contains("profile-images/1/test.jpg"));
         assertEquals("test.jpg", imageCaptor.getValue().getName());
-        assertEquals("profile-images/1/test.jpg", imageCaptor.getValue().getS3Key());
+        assertEquals(1L, imageCaptor.getValue().getUserId());
+        assertNull(imageCaptor.getValue().getPostId());
     }
 
     @Test
-    void deleteProfileImage_shouldDeleteExistingImage() {
+    void deleteProfileImage_shouldReleaseExistingImage() {
         // Given
         Principal principal = mock(Principal.class);
         when(principal.getName()).thenReturn("testUser");
@@ -81,21 +96,19 @@ class ImageUploadServiceTest {
         when(userRepository.findUserByUsername("testUser")).thenReturn(Optional.of(user));
 
         ImageModel existingImage = new ImageModel();
-        existingImage.setS3Key("profile-images/1/test.jpg");
+        existingImage.setS3Key("images/sha256/abc");
         when(imageRepository.findByUserIdAndPostId(user.getId(), null)).thenReturn(Optional.of(existingImage));
 
-        when(s3Buckets.getImgBucket()).thenReturn("bucket-name");
-
         // When
         imageUploadService.deleteProfileImage(principal);
 
         // Then
-        verify(s3Service).deleteObject("bucket-name", "profile-images/1/test.jpg");
-        verify(imageRepository).delete(existingImage);
+        verify(imageStore).release(existingImage);
+        verifyNoInteractions(objectStore);
     }
 
     @Test
-    void uploadImageToPost_shouldUploadAndSaveImageForPost() throws IOException {
+    void uploadImageToPost_shouldStoreImageForPost() throws IOException {
         // Given
         MultipartFile file = new MockMultipartFile("file", "test-post.jpg", "image/jpeg", "image content".getBytes());
         Principal principal = mock(Principal.class);
@@ -107,26 +120,22 @@ class ImageUploadServiceTest {
         post.setId(2L);
         user.setPosts(List.of(post));
         when(userRepository.findUserByUsername("testUser")).thenReturn(Optional.of(user));
-        when(s3Buckets.getImgBucket()).thenReturn("bucket-name");
 
         // When
         imageUploadService.uploadImageToPost(file, principal, post.getId());
 
         // Then
-        ArgumentCaptor<String> s3KeyCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<ImageModel> imageCaptor = ArgumentCaptor.forClass(ImageModel.class);
+        verify(imageStore).store(imageCaptor.capture(), eq(file));
+        verify(imageStore, never()).release(any());
 
-        verify(s3Service).putObject(eq("bucket-name"), s3KeyCaptor.capture(), eq(file.getBytes()));
-        verify(imageRepository).save(imageCaptor.capture());
-
-        assertTrue(s3KeyCaptor.getValue().contains("post-images/2/test-post.jpg"));
         assertEquals("test-post.jpg", imageCaptor.getValue().getName());
-        assertEquals("post-images/2/test-post.jpg", imageCaptor.getValue().getS3Key());
         assertEquals(post.getId(), imageCaptor.getValue().getPostId());
+        assertEquals(1L, imageCaptor.getValue().getUserId());
     }
 
     @Test
-    void getImageToUser_shouldRetrieveAndReturnImage() {
+    void getImageToUser_shouldReturnMetadataWithoutReadingStore() {
         // Given
         Principal principal = mock(Principal.class);
         when(principal.getName()).thenReturn("testUser");
@@ -138,57 +147,132 @@ class ImageUploadServiceTest {
         when(userRepository.findUserByUsername("testUser")).thenReturn(Optional.of(user));
         when(imageRepository.findByUserIdAndPostId(user.getId(), null)).thenReturn(Optional.of(image));
 
-        when(s3Buckets.getImgBucket()).thenReturn("bucket-name");
-        byte[] imageBytes = "image content".getBytes();
-        when(s3Service.getObject("bucket-name", "profile-images/1/test.jpg")).thenReturn(imageBytes);
-
         // When
         ImageModel result = imageUploadService.getImageToUser(principal);
 
         // Then
-        assertEquals(imageBytes, result.getImageBytes());
         assertEquals("profile-images/1/test.jpg", result.getS3Key());
+        verifyNoInteractions(objectStore);
     }
 
     @Test
-    void getProfileImageToPost_shouldRetrieveImageBytesFromS3() {
+    void openImage_shouldStreamObjectFromStore() throws IOException {
         // Given
-        Long userId = 1L;
         ImageModel image = new ImageModel();
-        image.setUserId(userId);
         image.setS3Key("profile-images/1/test.jpg");
+        StoredObject object = new StoredObject(new ByteArrayInputStream("test image bytes".getBytes()), 16L, null);
+        when(objectStore.openAsync("profile-images/1/test.jpg")).thenReturn(CompletableFuture.completedFuture(object));
+
+        // When
+        StoredObject result = imageUploadService.openImage(image, null).join();
+
+        // Then
+        assertEquals(16L, result.size());
+        assertEquals("test image bytes", new String(result.content().readAllBytes()));
+    }
 
-        when(imageRepository.findByUserIdAndPostId(userId, null)).thenReturn(Optional.of(image));
-        when(s3Buckets.getImgBucket()).thenReturn("bucket-name");
-        byte[] imageBytes = "test image bytes".getBytes();
-        when(s3Service.getObject("bucket-name", "profile-images/1/test.jpg")).thenReturn(imageBytes);
+    @Test
+    void presignImage_shouldReturnTimeLimitedUrl() throws Exception {
+        // Given
+        ImageModel image = new ImageModel();
+        image.setId(7L);
+        image.setS3Key("post-images/1/test.jpg");
+        Instant expiresAt = Instant.parse("2024-05-01T12:10:00Z");
+        when(objectStore.signedUrl("post-images/1/test.jpg")).thenReturn(new SignedUrl(
+                "https://bucket-name.s3.amazonaws.com/post-images/1/test.jpg?X-Amz-Signature=abc", expiresAt));
 
         // When
-        ImageModel result = imageUploadService.getProfileImageToPost(userId);
+        ImageUrlResponse result = imageUploadService.presignImage(image, null);
 
         // Then
-        verify(s3Service).getObject("bucket-name", "profile-images/1/test.jpg");
-        assertEquals(imageBytes, result.getImageBytes());
+        assertTrue(result.getUrl().contains("X-Amz-Signature"));
+        assertEquals(expiresAt, result.getExpiresAt());
+        assertEquals("\"image-7\"", result.getEtag());
     }
 
     @Test
-    void getImageToPost_shouldRetrieveImageBytesFromS3() {
+    void openImage_shouldServeSmallestRenditionCoveringRequestedWidth() {
         // Given
-        Long postId = 1L;
         ImageModel image = new ImageModel();
-        image.setPostId(postId);
         image.setS3Key("post-images/1/test.jpg");
+        image.setRenditions(EnumSet.of(ERendition.AVATAR, ERendition.FEED));
+
+        // When
+        imageUploadService.openImage(image, 300);
+        imageUploadService.openImage(image, 2000);
+
+        // Then
+        verify(objectStore).openAsync("renditions/640/post-images/1/test.jpg");
+        verify(objectStore).openAsync("post-images/1/test.jpg");
+    }
+
+    @Test
+    void presignImages_shouldResolveWholePageWithOneQuery() throws Exception {
+        // Given
+        ImageModel postImage = new ImageModel();
+        postImage.setPostId(10L);
+        postImage.setUserId(1L);
+        postImage.setS3Key("images/sha256/aa");
+        postImage.setRenditions(EnumSet.of(ERendition.FEED));
+        ImageModel avatar = new ImageModel();
+        avatar.setUserId(1L);
+        avatar.setS3Key("images/sha256/bb");
+        avatar.setRenditions(EnumSet.of(ERendition.AVATAR));
+        when(imageRepository.findPostAndProfileImages(Set.of(10L, 11L), Set.of(1L)))
+                .thenReturn(List.of(postImage, avatar));
+        when(objectStore.signedUrl(anyString())).thenAnswer(invocation -> new SignedUrl(
+                "https://bucket-name.s3.amazonaws.com/" + invocation.getArgument(0), Instant.now()));
+
+        // When
+        ImageBatchResponse result = imageUploadService.presignImages(List.of(10L, 11L, 10L), List.of(1L), 640, 150);
+
+        // Then
+        assertEquals(Set.of(10L), result.getPosts().keySet());
+        assertEquals("https://bucket-name.s3.amazonaws.com/renditions/640/images/sha256/aa", result.getPosts().get(10L).getUrl());
+        assertEquals("https://bucket-name.s3.amazonaws.com/renditions/150/images/sha256/bb", result.getProfiles().get(1L).getUrl());
+        assertEquals("\"aa-640\"", result.getPosts().get(10L).getEtag());
+        assertEquals("\"bb-150\"", result.getProfiles().get(1L).getEtag());
+        verify(imageRepository).findPostAndProfileImages(anyCollection(), anyCollection());
+    }
+
+    @Test
+    void presignImages_shouldQueryOnlyTheSideThatWasAskedFor() {
+        // Given
+        ImageModel avatar = new ImageModel();
+        avatar.setUserId(1L);
+        avatar.setS3Key("images/sha256/bb");
+        when(imageRepository.findProfileImages(Set.of(1L))).thenReturn(List.of(avatar));
+        when(objectStore.signedUrl(anyString())).thenAnswer(invocation -> new SignedUrl(
+                "https://bucket-name.s3.amazonaws.com/" + invocation.getArgument(0), Instant.now()));
 
-        when(imageRepository.findByPostId(postId)).thenReturn(Optional.of(image));
-        when(s3Buckets.getImgBucket()).thenReturn("bucket-name");
-        byte[] imageBytes = "post image bytes".getBytes();
-        when(s3Service.getObject("bucket-name", "post-images/1/test.jpg")).thenReturn(imageBytes);
+        // When
+        ImageBatchResponse result = imageUploadService.presignImages(null, List.of(1L), null, null);
 
+        // Then
+        assertEquals(Set.of(1L), result.getProfiles().keySet());
+        assertEquals("\"bb\"", result.getProfiles().get(1L).getEtag());
+        verify(imageRepository, never()).findPostAndProfileImages(anyCollection(), anyCollection());
+        verify(imageRepository, never()).findPostImages(anyCollection());
+    }
+
+    @Test
+    void presignImages_shouldSkipQueryForEmptyRequest() {
         // When
-        ImageModel result = imageUploadService.getImageToPost(postId);
+        ImageBatchResponse result = imageUploadService.presignImages(null, List.of(), null, null);
 
         // Then
-        verify(s3Service).getObject("bucket-name", "post-images/1/test.jpg");
-        assertEquals(imageBytes, result.getImageBytes());
+        assertTrue(result.getPosts().isEmpty());
+        assertTrue(result.getProfiles().isEmpty());
+        verifyNoInteractions(imageRepository);
+    }
+
+    @Test
+    void presignImages_shouldRejectOversizedBatch() {
+        // Given
+        List<Long> postIds = LongStream.rangeClosed(1, 201).boxed().toList();
+
+        // When / Then
+        assertThrows(BatchTooLargeException.class, () -> imageUploadService.presignImages(postIds, null, null, null));
+        verifyNoInteractions(imageRepository);
     }
 }
@@ -0,0 +1,204 @@
+package com.example.instaclone.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LikeCounterBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @TempDir
+    private Path tempDir;
+
+    private LikeCounterBuffer underTest;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        underTest = new LikeCounterBuffer(jdbcTemplate, transactionManager, taskScheduler);
+        ReflectionTestUtils.setField(underTest, "spillFile", tempDir.resolve("like-deltas.pending"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldApplyAccumulatedDeltasInOneBatch() {
+        // Given
+        underTest.add(1L, 1);
+        underTest.add(1L, 1);
+        underTest.add(2L, -1);
+
+        // When
+        underTest.flush();
+
+        // Then
+        ArgumentCaptor<List<Object[]>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batchCaptor.capture());
+        assertThat(batchCaptor.getValue())
+                .extracting(row -> row[1] + "=" + row[0])
+                .containsExactlyInAnyOrder("1=2", "2=-1");
+        assertThat(underTest.pending(1L)).isZero();
+    }
+
+    @Test
+    void pending_shouldExposeUnflushedDelta() {
+        underTest.add(1L, 1);
+        underTest.add(1L, 1);
+        underTest.add(1L, -1);
+
+        assertThat(underTest.pending(1L)).isEqualTo(1);
+        assertThat(underTest.pending(2L)).isZero();
+    }
+
+    @Test
+    void flush_shouldKeepDeltasWhenWriteFails() {
+        // Given
+        underTest.add(1L, 3);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db down"));
+
+        // When & Then
+        assertThatThrownBy(() -> underTest.flush()).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(underTest.pending(1L)).isEqualTo(3);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void flush_shouldSkipWriteWhenNothingPending() {
+        underTest.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void add_shouldScheduleFlushOnceThresholdIsReached() {
+        // Given
+        ReflectionTestUtils.setField(underTest, "flushThreshold", 3L);
+
+        // When
+        underTest.add(1L, 1);
+        underTest.add(1L, 1);
+        underTest.add(1L, 1);
+        underTest.add(1L, 1);
+
+        // Then
+        verify(taskScheduler, times(1)).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    @Test
+    void concurrentAddsAndFlushes_shouldNotLoseIncrements() throws Exception {
+        // Given
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    underTest.add(1L, 1);
+                }
+            });
+        }
+        // Flush concurrently with the writers, including idle rounds that retire the counter.
+        executor.submit(() -> {
+            for (int i = 0; i < 200; i++) {
+                underTest.flush();
+            }
+        });
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        underTest.flush();
+
+        // Then
+        long flushed = flushedTotal();
+        assertThat(flushed + underTest.pending(1L)).isEqualTo((long) threads * perThread);
+    }
+
+    @Test
+    void close_shouldDrainBufferAndWriteLateLikesDirectly() throws InterruptedException {
+        // Given
+        underTest.add(1L, 2);
+
+        // When
+        underTest.close();
+        underTest.add(1L, 1);
+
+        // Then
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        verify(jdbcTemplate).update(anyString(), eq(1L), eq(1L));
+    }
+
+    @Test
+    void close_shouldSpillDeltasItCannotFlushAndNextStartShouldRestoreThem() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(underTest, "shutdownTimeoutMillis", 0L);
+        underTest.add(1L, 3);
+        underTest.add(2L, -1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db down"));
+
+        // When
+        underTest.close();
+        LikeCounterBuffer restarted = new LikeCounterBuffer(jdbcTemplate, transactionManager, taskScheduler);
+        ReflectionTestUtils.setField(restarted, "spillFile", tempDir.resolve("like-deltas.pending"));
+        restarted.restoreSpilled();
+
+        // Then
+        assertThat(restarted.pending(1L)).isEqualTo(3);
+        assertThat(restarted.pending(2L)).isEqualTo(-1);
+        assertThat(Files.exists(tempDir.resolve("like-deltas.pending"))).isFalse();
+    }
+
+    @Test
+    void restoreSpilled_shouldDoNothingWithoutSpillFile() throws IOException {
+        underTest.restoreSpilled();
+
+        assertThat(underTest.pending(1L)).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private long flushedTotal() {
+        ArgumentCaptor<List<Object[]>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeast(0)).batchUpdate(anyString(), batchCaptor.capture());
+        return batchCaptor.getAllValues().stream()
+                .flatMap(List::stream)
+                .mapToLong(row -> (Long) row[0])
+                .sum();
+    }
+}
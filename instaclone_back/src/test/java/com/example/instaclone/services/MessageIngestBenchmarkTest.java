@@ -0,0 +1,89 @@
+package com.example.instaclone.services;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Messages per second through {@link MessageIngestQueue} at 1, 8 and 64 concurrent senders, each waiting for
+ * its ack before sending the next message, with one message per commit (the previous behaviour) and with
+ * group commit. Every commit costs {@link #COMMIT_MILLIS}, standing in for the log flush.
+ */
+@Tag("benchmark")
+class MessageIngestBenchmarkTest {
+
+    private static final long COMMIT_MILLIS = 1;
+    private static final int MESSAGES = 1_000;
+    private static final int[] SENDERS = {1, 8, 64};
+
+    @Test
+    void groupCommitScalesWithSenders() throws Exception {
+        double[] perMessage = new double[SENDERS.length];
+        double[] grouped = new double[SENDERS.length];
+        for (int i = 0; i < SENDERS.length; i++) {
+            perMessage[i] = run(1, 0, SENDERS[i]);
+            grouped[i] = run(256, 2, SENDERS[i]);
+            System.out.printf("Message ingest, %d sender(s): one commit per message = %.0f msg/s, group commit = %.0f msg/s%n",
+                    SENDERS[i], perMessage[i], grouped[i]);
+        }
+        assertThat(grouped[2]).isGreaterThan(perMessage[2] * 4);
+    }
+
+    private double run(int maxBatch, long lingerMillis, int senders) throws Exception {
+        AtomicLong ids = new AtomicLong(1);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> {
+                    BatchPreparedStatementSetter setter = invocation.getArgument(1);
+                    return MessageIngestQueueTest.insert(setter, invocation.getArgument(2),
+                            ids.getAndAdd(setter.getBatchSize()));
+                });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        doAnswer(invocation -> {
+            Thread.sleep(COMMIT_MILLIS);
+            return null;
+        }).when(transactionManager).commit(any());
+
+        MessageIngestQueue queue = new MessageIngestQueue(jdbcTemplate, transactionManager, mock(RecentMessageBuffer.class), 10_000, maxBatch, lingerMillis);
+        queue.start();
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+        try {
+            int perSender = MESSAGES / senders;
+            long start = System.nanoTime();
+            List<Future<?>> done = new ArrayList<>();
+            for (int s = 0; s < senders; s++) {
+                done.add(executor.submit(() -> {
+                    for (int m = 0; m < perSender; m++) {
+                        queue.submit(MessageIngestQueueTest.message("message " + m)).join();
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+            return perSender * senders / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            executor.shutdown();
+            queue.close();
+        }
+    }
+}
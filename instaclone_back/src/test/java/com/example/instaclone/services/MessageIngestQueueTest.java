@@ -0,0 +1,202 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.Chat;
+import com.example.instaclone.entity.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageIngestQueueTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private RecentMessageBuffer recentMessageBuffer;
+
+    private MessageIngestQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.close();
+    }
+
+    @Test
+    void submit_shouldWriteMessagesArrivingTogetherInOneBatchAndAssignIds() throws Exception {
+        // Given
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> insert(invocation.getArgument(1), invocation.getArgument(2), 100L));
+        queue = new MessageIngestQueue(jdbcTemplate, transactionManager, recentMessageBuffer, 100, 256, 50);
+        queue.start();
+
+        // When
+        List<CompletableFuture<Message>> acks = IntStream.range(0, 5)
+                .mapToObj(i -> queue.submit(message("hello " + i)))
+                .toList();
+
+        // Then
+        List<Long> ids = acks.stream().map(CompletableFuture::join).map(Message::getMs_id).toList();
+        assertThat(ids).containsExactly(100L, 101L, 102L, 103L, 104L);
+        acks.forEach(ack -> verify(recentMessageBuffer).append(ack.join()));
+        verify(jdbcTemplate, times(1)).batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void submit_shouldSplitBatchesAtMaxBatch() {
+        // Given
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> insert(invocation.getArgument(1), invocation.getArgument(2), 1L));
+        queue = new MessageIngestQueue(jdbcTemplate, transactionManager, recentMessageBuffer, 100, 2, 50);
+        queue.start();
+
+        // When
+        List<CompletableFuture<Message>> acks = IntStream.range(0, 5)
+                .mapToObj(i -> queue.submit(message("hello " + i)))
+                .toList();
+
+        // Then
+        acks.forEach(CompletableFuture::join);
+        verify(jdbcTemplate, atLeast(3)).batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+    }
+
+    @Test
+    void submit_shouldKeepWritingWhileAckCallbacksRun() {
+        // Given
+        CountDownLatch subscribed = new CountDownLatch(1);
+        CountDownLatch broadcastStarted = new CountDownLatch(1);
+        CountDownLatch broadcasting = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> {
+                    // Holds the first batch until its ack has a callback, so the callback cannot run on this thread.
+                    awaitQuietly(subscribed);
+                    return insert(invocation.getArgument(1), invocation.getArgument(2), 1L);
+                });
+        queue = new MessageIngestQueue(jdbcTemplate, transactionManager, recentMessageBuffer, 100, 256, 1);
+        queue.start();
+        CompletableFuture<Message> first = queue.submit(message("hello"));
+        CompletableFuture<Void> broadcast = first.thenRun(() -> {
+            broadcastStarted.countDown();
+            awaitQuietly(broadcasting);
+        });
+        subscribed.countDown();
+
+        // When
+        // Not first.join(), which may run the callback on this thread.
+        awaitQuietly(broadcastStarted);
+        CompletableFuture<Message> second = queue.submit(message("hello again"));
+
+        // Then
+        verify(jdbcTemplate, timeout(5000).times(2)).batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+        assertThat(broadcast).isNotDone();
+        broadcasting.countDown();
+        assertThat(second.join().getMs_id()).isEqualTo(1L);
+    }
+
+    @Test
+    void submit_shouldFailAckWhenBatchFails() {
+        // Given
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+        queue = new MessageIngestQueue(jdbcTemplate, transactionManager, recentMessageBuffer, 100, 256, 1);
+        queue.start();
+
+        // When
+        CompletableFuture<Message> ack = queue.submit(message("hello"));
+
+        // Then
+        assertThatThrownBy(ack::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(DataAccessResourceFailureException.class);
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void close_shouldWriteMessagesStillQueued() throws InterruptedException {
+        // Given
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> insert(invocation.getArgument(1), invocation.getArgument(2), 1L));
+        queue = new MessageIngestQueue(jdbcTemplate, transactionManager, recentMessageBuffer, 100, 256, 1);
+        CompletableFuture<Message> ack = queue.submit(message("hello"));
+
+        // When
+        queue.close();
+
+        // Then
+        assertThat(ack).isCompleted();
+        assertThat(ack.join().getMs_id()).isEqualTo(1L);
+    }
+
+    @Test
+    void submit_shouldBufferMessageBeforeReturningCompletedAckOnceClosed() throws InterruptedException {
+        // Given
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> insert(invocation.getArgument(1), invocation.getArgument(2), 7L));
+        queue = new MessageIngestQueue(jdbcTemplate, transactionManager, recentMessageBuffer, 100, 256, 1);
+        queue.close();
+
+        // When
+        CompletableFuture<Message> ack = queue.submit(message("late"));
+
+        // Then
+        assertThat(ack).isCompleted();
+        verify(recentMessageBuffer).append(ack.join());
+        assertThat(ack.join().getMs_id()).isEqualTo(7L);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Plays the database's part in a batch insert: one generated key per row, counting up from {@code firstId}.
+     */
+    static int[] insert(BatchPreparedStatementSetter setter, KeyHolder keyHolder, long firstId) {
+        int size = setter.getBatchSize();
+        for (int i = 0; i < size; i++) {
+            keyHolder.getKeyList().add(Map.of("GENERATED_KEY", firstId + i));
+        }
+        return new int[size];
+    }
+
+    static Message message(String content) {
+        Chat chat = new Chat("alice&bob");
+        chat.setChatId(1L);
+        return new Message("alice", "2024/10/11-10:00", content, chat);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.instaclone.services;
 
 import com.example.instaclone.entity.Chat;
 import com.example.instaclone.entity.Message;
+import com.example.instaclone.exceptions.InvalidCursorException;
 import com.example.instaclone.repository.MessageRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,11 +11,19 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,6 +35,12 @@ class MessageServiceTest {
     @Mock
     private MessageRepository messageRepository;
 
+    @Mock
+    private MessageIngestQueue messageIngestQueue;
+
+    @Mock
+    private RecentMessageBuffer recentMessageBuffer;
+
     @Captor
     private ArgumentCaptor<Message> messageArgumentCaptor;
 
@@ -52,25 +67,93 @@ class MessageServiceTest {
     }
 
     @Test
-    void findAllByChat_shouldReturnMessagesForChat() {
+    void submit_shouldReturnIngestQueueAckEvenWhenAlreadyComplete() {
         // Given
-        Chat chat = new Chat();
-        Message message1 = new Message();
-        message1.setContent("Message 1");
-        Message message2 = new Message();
-        message2.setContent("Message 2");
+        Message message = new Message();
+        CompletableFuture<Message> ack = CompletableFuture.completedFuture(message);
+        when(messageIngestQueue.submit(message)).thenReturn(ack);
 
-        List<Message> messages = List.of(message1, message2);
-        when(messageRepository.findAllByChat(chat)).thenReturn(messages);
+        // When
+        CompletableFuture<Message> result = messageService.submit(message);
+
+        // Then
+        assertThat(result).isSameAs(ack);
+        // The queue adds stored messages to the recent ones itself, before it acks them.
+        verifyNoInteractions(recentMessageBuffer);
+    }
+
+    @Test
+    void findPage_shouldServeNewestPageFromRecentMessages() {
+        // Given
+        Chat chat = new Chat("a&b");
+        List<Message> recent = List.of(message(2L), message(3L));
+        when(recentMessageBuffer.findLatest(chat, 50)).thenReturn(Optional.of(recent));
+
+        // When
+        List<Message> result = messageService.findPage(chat, null, null, null);
+
+        // Then
+        assertThat(result).isEqualTo(recent);
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void findPage_shouldReturnNewestPageOldestFirst() {
+        // Given
+        Chat chat = new Chat("a&b");
+        Message newest = message(3L);
+        Message older = message(2L);
+        when(messageRepository.findLatest(eq(chat), any(Pageable.class))).thenReturn(List.of(newest, older));
 
         // When
-        List<Message> result = messageService.findAllByChat(chat);
+        List<Message> result = messageService.findPage(chat, null, null, 2);
 
         // Then
-        verify(messageRepository).findAllByChat(chatArgumentCaptor.capture());
-        Chat capturedChat = chatArgumentCaptor.getValue();
+        verify(messageRepository).findLatest(chatArgumentCaptor.capture(), eq(PageRequest.ofSize(2)));
+        assertThat(chatArgumentCaptor.getValue()).isEqualTo(chat);
+        assertThat(result).containsExactly(older, newest);
+    }
 
-        assertThat(capturedChat).isEqualTo(chat);
-        assertThat(result).hasSize(2).containsExactly(message1, message2);
+    @Test
+    void findPage_shouldScrollBackFromCursorWithCappedSize() {
+        // Given
+        Chat chat = new Chat("a&b");
+        Message before = message(9L);
+        when(messageRepository.findBefore(eq(chat), eq(10L), any(Pageable.class))).thenReturn(List.of(before));
+
+        // When
+        List<Message> result = messageService.findPage(chat, 10L, null, 10_000);
+
+        // Then
+        verify(messageRepository).findBefore(chat, 10L, PageRequest.ofSize(200));
+        assertThat(result).containsExactly(before);
+    }
+
+    @Test
+    void findPage_shouldCatchUpAfterCursor() {
+        // Given
+        Chat chat = new Chat("a&b");
+        List<Message> newer = List.of(message(11L), message(12L));
+        when(messageRepository.findAfter(eq(chat), eq(10L), any(Pageable.class))).thenReturn(newer);
+
+        // When
+        List<Message> result = messageService.findPage(chat, null, 10L, null);
+
+        // Then
+        verify(messageRepository).findAfter(chat, 10L, PageRequest.ofSize(50));
+        assertThat(result).isEqualTo(newer);
+    }
+
+    @Test
+    void findPage_shouldRejectBothCursors() {
+        assertThatThrownBy(() -> messageService.findPage(new Chat("a&b"), 10L, 5L, null))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    private static Message message(Long id) {
+        Message message = new Message();
+        message.setMs_id(id);
+        message.setContent("Message " + id);
+        return message;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,377 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.s3.ObjectCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjectCacheTest {
+
+    private static final String BUCKET = "images";
+
+    @TempDir
+    Path origin;
+
+    @TempDir
+    Path cacheDir;
+
+    private FileSystemObjectStore store;
+    private MeterRegistry meterRegistry;
+    private ObjectCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new FileSystemObjectStore(origin);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = cache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(1), DataSize.ofKilobytes(16), DataSize.ofKilobytes(8));
+    }
+
+    @Test
+    void smallObjectIsServedFromMemoryAfterFirstRead() throws IOException {
+        // Given
+        store.write("avatar.jpg", bytes(512, 'a'));
+
+        // When
+        byte[] first = read("avatar.jpg");
+        byte[] second = read("avatar.jpg");
+
+        // Then
+        assertThat(first).isEqualTo(bytes(512, 'a'));
+        assertThat(second).isEqualTo(first);
+        assertThat(store.reads("avatar.jpg")).isEqualTo(1);
+        assertThat(hitRatio("memory")).isEqualTo(0.5);
+    }
+
+    @Test
+    void largerObjectIsServedFromMappedDiskFile() throws IOException {
+        // Given
+        store.write("post.jpg", bytes(4096, 'p'));
+
+        // When
+        read("post.jpg");
+        ResponseInputStream<GetObjectResponse> cached = open("post.jpg");
+
+        // Then
+        assertThat(cached.response().contentLength()).isEqualTo(4096);
+        assertThat(cached.response().contentType()).isEqualTo("image/jpeg");
+        assertThat(cached.readAllBytes()).isEqualTo(bytes(4096, 'p'));
+        assertThat(store.reads("post.jpg")).isEqualTo(1);
+        assertThat(hitRatio("disk")).isEqualTo(0.5);
+    }
+
+    @Test
+    void objectAboveDiskLimitPassesThrough() throws IOException {
+        // Given
+        store.write("huge.jpg", bytes(10_000, 'h'));
+
+        // When
+        read("huge.jpg");
+        read("huge.jpg");
+
+        // Then
+        assertThat(store.reads("huge.jpg")).isEqualTo(2);
+        assertThat(cacheFiles()).isEmpty();
+    }
+
+    @Test
+    void invalidateDropsBothTiers() throws IOException {
+        // Given
+        store.write("avatar.jpg", bytes(512, 'a'));
+        read("avatar.jpg");
+        store.write("avatar.jpg", bytes(512, 'b'));
+
+        // When
+        cache.invalidate(BUCKET, "avatar.jpg");
+
+        // Then
+        assertThat(read("avatar.jpg")).isEqualTo(bytes(512, 'b'));
+        assertThat(store.reads("avatar.jpg")).isEqualTo(2);
+    }
+
+    @Test
+    void loadRacingAnInvalidationIsNotCached() throws IOException {
+        // Given
+        store.write("avatar.jpg", bytes(512, 'a'));
+
+        // When
+        byte[] stale = cache.open(BUCKET, "avatar.jpg", () -> {
+            ResponseInputStream<GetObjectResponse> object = store.open("avatar.jpg");
+            cache.invalidate(BUCKET, "avatar.jpg");
+            return object;
+        }).readAllBytes();
+        read("avatar.jpg");
+
+        // Then
+        assertThat(stale).isEqualTo(bytes(512, 'a'));
+        assertThat(store.reads("avatar.jpg")).isEqualTo(2);
+        assertThat(cacheFiles()).hasSize(1);
+    }
+
+    @Test
+    void invalidatingAnotherKeyDoesNotDropLoad() throws IOException {
+        // Given
+        store.write("avatar.jpg", bytes(512, 'a'));
+
+        // When
+        cache.open(BUCKET, "avatar.jpg", () -> {
+            ResponseInputStream<GetObjectResponse> object = store.open("avatar.jpg");
+            cache.invalidate(BUCKET, "other.jpg");
+            return object;
+        }).close();
+        read("avatar.jpg");
+
+        // Then
+        assertThat(store.reads("avatar.jpg")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentMissesShareOneDownload() throws Exception {
+        // Given
+        store.write("post.jpg", bytes(4096, 'p'));
+        CountDownLatch downloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // When
+            Future<byte[]> first = executor.submit(() -> {
+                try (ResponseInputStream<GetObjectResponse> object = cache.open(BUCKET, "post.jpg", () -> {
+                    downloading.countDown();
+                    awaitQuietly(release);
+                    return store.open("post.jpg");
+                })) {
+                    return object.readAllBytes();
+                }
+            });
+            downloading.await();
+            Future<byte[]> second = executor.submit(() -> read("post.jpg"));
+            Thread.sleep(100);
+            release.countDown();
+
+            // Then
+            assertThat(first.get()).isEqualTo(bytes(4096, 'p'));
+            assertThat(second.get()).isEqualTo(bytes(4096, 'p'));
+            assertThat(store.reads("post.jpg")).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentAsyncMissesShareOneDownload() throws IOException {
+        // Given
+        store.write("post.jpg", bytes(4096, 'p'));
+        CompletableFuture<Path> target = new CompletableFuture<>();
+        CompletableFuture<GetObjectResponse> pending = new CompletableFuture<>();
+        AtomicInteger downloads = new AtomicInteger();
+
+        // When
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> first = cache.openAsync(BUCKET, "post.jpg", file -> {
+            downloads.incrementAndGet();
+            target.complete(file);
+            return pending;
+        });
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> second = cache.openAsync(BUCKET, "post.jpg", file -> {
+            downloads.incrementAndGet();
+            return store.download("post.jpg", file);
+        });
+        store.download("post.jpg", target.join()).thenAccept(pending::complete);
+
+        // Then
+        assertThat(first.join().readAllBytes()).isEqualTo(bytes(4096, 'p'));
+        assertThat(second.join().readAllBytes()).isEqualTo(bytes(4096, 'p'));
+        assertThat(downloads).hasValue(1);
+        assertThat(cacheFiles()).hasSize(1);
+    }
+
+    @Test
+    void diskTierStaysWithinByteBudget() throws IOException {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            store.write("post-" + i + ".jpg", bytes(4096, 'p'));
+        }
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            read("post-" + i + ".jpg");
+        }
+
+        // Then
+        assertThat(cacheFiles().mapToLong(ObjectCacheTest::size).sum())
+                .isLessThanOrEqualTo(DataSize.ofKilobytes(16).toBytes());
+    }
+
+    @Test
+    void startupRemovesFilesFromPreviousRun() throws IOException {
+        // Given
+        store.write("post.jpg", bytes(4096, 'p'));
+        read("post.jpg");
+        assertThat(cacheFiles()).hasSize(1);
+
+        // When
+        cache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(1), DataSize.ofKilobytes(16), DataSize.ofKilobytes(8));
+
+        // Then
+        assertThat(cacheFiles()).isEmpty();
+    }
+
+    @Test
+    void asyncMissIsDownloadedIntoDiskTier() throws IOException {
+        // Given
+        store.write("post.jpg", bytes(4096, 'p'));
+
+        // When
+        byte[] first = cache.openAsync(BUCKET, "post.jpg", file -> store.download("post.jpg", file)).join().readAllBytes();
+        byte[] second = read("post.jpg");
+
+        // Then
+        assertThat(first).isEqualTo(bytes(4096, 'p'));
+        assertThat(second).isEqualTo(first);
+        assertThat(store.reads("post.jpg")).isEqualTo(1);
+        assertThat(cacheFiles()).hasSize(1);
+    }
+
+    @Test
+    void asyncObjectAboveDiskLimitIsServedOnceAndNotKept() throws IOException {
+        // Given
+        store.write("huge.jpg", bytes(10_000, 'h'));
+
+        // When
+        ResponseInputStream<GetObjectResponse> served =
+                cache.openAsync(BUCKET, "huge.jpg", file -> store.download("huge.jpg", file)).join();
+
+        // Then
+        assertThat(served.response().contentLength()).isEqualTo(10_000);
+        assertThat(served.readAllBytes()).isEqualTo(bytes(10_000, 'h'));
+        assertThat(cacheFiles()).isEmpty();
+    }
+
+    @Test
+    void failedAsyncDownloadLeavesNoFile() throws IOException {
+        // When
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> failed = cache.openAsync(BUCKET, "post.jpg", file -> {
+            try {
+                Files.write(file, bytes(100, 'x'));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return CompletableFuture.failedFuture(new IOException("connection reset"));
+        });
+
+        // Then
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(cacheFiles()).isEmpty();
+    }
+
+    private ObjectCache cache(DataSize memorySize, DataSize memoryMaxObject, DataSize diskSize, DataSize diskMaxObject)
+            throws IOException {
+        return new ObjectCache(meterRegistry, cacheDir, memorySize, memoryMaxObject, diskSize, diskMaxObject);
+    }
+
+    private ResponseInputStream<GetObjectResponse> open(String key) {
+        return cache.open(BUCKET, key, () -> store.open(key));
+    }
+
+    private byte[] read(String key) throws IOException {
+        try (ResponseInputStream<GetObjectResponse> object = open(key)) {
+            return object.readAllBytes();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double hitRatio(String tier) {
+        return meterRegistry.get("s3.cache.hit.ratio").tag("tier", tier).gauge().value();
+    }
+
+    private Stream<Path> cacheFiles() throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.toList().stream();
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] bytes(int length, char fill) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) fill);
+        return bytes;
+    }
+
+    /**
+     * Stand-in for S3 that serves objects from a directory and counts reads per key.
+     */
+    private static final class FileSystemObjectStore {
+
+        private final Path root;
+        private final Map<String, AtomicInteger> reads = new ConcurrentHashMap<>();
+
+        FileSystemObjectStore(Path root) {
+            this.root = root;
+        }
+
+        void write(String key, byte[] content) throws IOException {
+            Files.write(root.resolve(key), content);
+        }
+
+        ResponseInputStream<GetObjectResponse> open(String key) {
+            reads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            Path file = root.resolve(key);
+            try {
+                return new ResponseInputStream<>(
+                        GetObjectResponse.builder().contentType("image/jpeg").contentLength(Files.size(file)).build(),
+                        Files.newInputStream(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        CompletableFuture<GetObjectResponse> download(String key, Path file) {
+            reads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            try {
+                Files.copy(root.resolve(key), file);
+                return CompletableFuture.completedFuture(GetObjectResponse.builder().contentType("image/jpeg").build());
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        int reads(String key) {
+            return reads.getOrDefault(key, new AtomicInteger()).get();
+        }
+    }
+}
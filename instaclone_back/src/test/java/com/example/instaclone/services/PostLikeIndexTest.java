@@ -0,0 +1,82 @@
+package com.example.instaclone.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostLikeIndexTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ResultSet resultSet;
+
+    private PostLikeIndex underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new PostLikeIndex(jdbcTemplate, new SimpleMeterRegistry(), 2, 60);
+    }
+
+    @Test
+    void isLikedBy_shouldLoadBitmapOnceAndAnswerFromMemory() throws Exception {
+        // Given
+        givenLikers(1L, 7L, 42L);
+
+        // When
+        boolean liked = underTest.isLikedBy(1L, 42L);
+        boolean notLiked = underTest.isLikedBy(1L, 8L);
+
+        // Then
+        assertThat(liked).isTrue();
+        assertThat(notLiked).isFalse();
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(1L));
+    }
+
+    @Test
+    void addedAndRemoved_shouldUpdateLoadedBitmap() throws Exception {
+        // Given
+        givenLikers(1L, 7L);
+        underTest.isLikedBy(1L, 7L);
+
+        // When
+        underTest.added(1L, 9L);
+        underTest.removed(1L, 7L);
+
+        // Then
+        assertThat(underTest.isLikedBy(1L, 9L)).isTrue();
+        assertThat(underTest.isLikedBy(1L, 7L)).isFalse();
+    }
+
+    @Test
+    void isLikedBy_shouldBeFalseForAnonymousViewer() {
+        assertThat(underTest.isLikedBy(1L, null)).isFalse();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private void givenLikers(Long postId, long... userIds) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long userId : userIds) {
+                when(resultSet.getLong(1)).thenReturn(userId);
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(postId));
+    }
+}
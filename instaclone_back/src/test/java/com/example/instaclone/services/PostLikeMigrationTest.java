@@ -0,0 +1,52 @@
+package com.example.instaclone.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostLikeMigrationTest {
+
+    @InjectMocks
+    private PostLikeMigration migration;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migrate_shouldCopyLegacyLikesThenRetireTheTable() {
+        // Given
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(PostLikeMigration.LEGACY_TABLE))).thenReturn(1);
+        when(jdbcTemplate.update(contains("insert ignore into post_like"))).thenReturn(3);
+
+        // When
+        migration.migrate();
+
+        // Then
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).update(contains("join `user` u on u.username = l.liked_users"));
+        inOrder.verify(jdbcTemplate).execute("rename table post_liked_users to post_liked_users_migrated");
+    }
+
+    @Test
+    void migrate_shouldDoNothingWithoutLegacyTable() {
+        // Given
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(PostLikeMigration.LEGACY_TABLE))).thenReturn(0);
+
+        // When
+        migration.migrate();
+
+        // Then
+        verify(jdbcTemplate, never()).update(anyString());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+}
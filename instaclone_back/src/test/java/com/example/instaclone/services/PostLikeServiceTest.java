@@ -0,0 +1,158 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.exceptions.PostNotFoundException;
+import com.example.instaclone.repository.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostLikeServiceTest {
+
+    @InjectMocks
+    private PostLikeService postLikeService;
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private LikeCounterBuffer likeCounterBuffer;
+
+    @Mock
+    private PostLikeIndex postLikeIndex;
+
+    @Test
+    void like_shouldIncrementCounterWhenRowInserted() {
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(postRepository.insertLike(1L, 2L)).thenReturn(1);
+
+        assertThat(postLikeService.like(1L, 2L)).isTrue();
+        verify(likeCounterBuffer).add(1L, 1);
+        verify(postLikeIndex).added(1L, 2L);
+    }
+
+    @Test
+    void like_shouldCountAndIndexOnlyAfterCommit() {
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(postRepository.insertLike(1L, 2L)).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            postLikeService.like(1L, 2L);
+            verifyNoInteractions(likeCounterBuffer, postLikeIndex);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(likeCounterBuffer).add(1L, 1);
+        verify(postLikeIndex).added(1L, 2L);
+    }
+
+    @Test
+    void likeAndUnlike_shouldReachLoadedBitmapOnceCommitted() {
+        PostLikeIndex index = new PostLikeIndex(mock(JdbcTemplate.class), new SimpleMeterRegistry(), 10, 60);
+        PostLikeService service = new PostLikeService(postRepository, likeCounterBuffer, index);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(postRepository.insertLike(1L, 2L)).thenReturn(1);
+        when(postRepository.deleteLike(1L, 2L)).thenReturn(1);
+        assertThat(index.isLikedBy(1L, 2L)).isFalse();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            service.like(1L, 2L);
+            assertThat(index.isLikedBy(1L, 2L)).isFalse();
+        });
+        assertThat(index.isLikedBy(1L, 2L)).isTrue();
+
+        transactionTemplate.executeWithoutResult(status -> service.unlike(1L, 2L));
+        assertThat(index.isLikedBy(1L, 2L)).isFalse();
+    }
+
+    @Test
+    void like_shouldBeIdempotent() {
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(postRepository.insertLike(1L, 2L)).thenReturn(0);
+
+        assertThat(postLikeService.like(1L, 2L)).isFalse();
+        verifyNoInteractions(likeCounterBuffer, postLikeIndex);
+    }
+
+    @Test
+    void unlike_shouldDecrementCounterOnlyWhenRowDeleted() {
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(postRepository.deleteLike(1L, 2L)).thenReturn(1, 0);
+
+        assertThat(postLikeService.unlike(1L, 2L)).isTrue();
+        assertThat(postLikeService.unlike(1L, 2L)).isFalse();
+        verify(likeCounterBuffer, times(1)).add(1L, -1);
+        verify(postLikeIndex, times(1)).removed(1L, 2L);
+    }
+
+    @Test
+    void toggle_shouldUnlikeWhenAlreadyLiked() {
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(postRepository.deleteLike(1L, 2L)).thenReturn(1);
+
+        assertThat(postLikeService.toggle(1L, 2L)).isFalse();
+        verify(likeCounterBuffer).add(1L, -1);
+        verify(postRepository, never()).insertLike(anyLong(), anyLong());
+    }
+
+    @Test
+    void toggle_shouldLikeWhenNotLiked() {
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(postRepository.deleteLike(1L, 2L)).thenReturn(0);
+        when(postRepository.insertLike(1L, 2L)).thenReturn(1);
+
+        assertThat(postLikeService.toggle(1L, 2L)).isTrue();
+        verify(likeCounterBuffer).add(1L, 1);
+    }
+
+    @Test
+    void like_shouldThrowWhenPostMissing() {
+        when(postRepository.existsById(1L)).thenReturn(false);
+
+        assertThatThrownBy(() -> postLikeService.like(1L, 2L))
+                .isInstanceOf(PostNotFoundException.class);
+        verify(postRepository, never()).insertLike(anyLong(), anyLong());
+    }
+
+    /**
+     * Runs transaction synchronization like a real transaction manager, without a resource behind it.
+     */
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
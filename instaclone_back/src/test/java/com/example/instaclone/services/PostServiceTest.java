@@ -1,15 +1,20 @@
 package com.example.instaclone.services;
 
 import com.example.instaclone.dto.PostDTO;
+import com.example.instaclone.dto.PostFeedRow;
 import com.example.instaclone.entity.ImageModel;
 import com.example.instaclone.entity.Post;
 import com.example.instaclone.entity.User;
+import com.example.instaclone.events.PostCreatedEvent;
+import com.example.instaclone.events.PostDeletedEvent;
+import com.example.instaclone.exceptions.InvalidCursorException;
 import com.example.instaclone.exceptions.PostNotFoundException;
+import com.example.instaclone.pagination.FeedCursor;
+import com.example.instaclone.payload.response.PageResponse;
 import com.example.instaclone.repository.ImageRepository;
 import com.example.instaclone.repository.PostRepository;
+import com.example.instaclone.repository.TimelineRepository;
 import com.example.instaclone.repository.UserRepository;
-import com.example.instaclone.s3.S3Buckets;
-import com.example.instaclone.s3.S3Service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,16 +23,19 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
 import java.security.Principal;
-import java.util.HashSet;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,16 +54,35 @@ class PostServiceTest {
     private ImageRepository imageRepository;
 
     @Mock
-    private S3Service s3Service;
+    private ImageStore imageStore;
 
     @Mock
-    private S3Buckets s3Buckets;
+    private TimelineRepository timelineRepository;
+
+    @Mock
+    private TimelineFanoutService timelineFanoutService;
+
+    @Mock
+    private HomeTimelineService homeTimelineService;
+
+    @Mock
+    private PostLikeService postLikeService;
+
+    @Mock
+    private UserPostsCache userPostsCache;
+
+    @Mock
+    private GlobalFeedCache globalFeedCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @Captor
     private ArgumentCaptor<Post> postArgumentCaptor;
 
     private User user;
     private Post post;
+    private PostFeedRow row;
 
     @BeforeEach
     void setUp() {
@@ -70,12 +97,14 @@ class PostServiceTest {
         post.setLocation("Test Location");
         post.setTitle("Test Title");
         post.setLikes(0);
+
+        row = new PostFeedRow(1L, "Test Title", "Test Caption", "Test Location", 0, null, "john_doe", 0L, null, null);
     }
 
     @Test
     void createPost_shouldCreateNewPost() {
         // Given
-        PostDTO postDTO = new PostDTO(null, "Test Title", "Test Caption", "Test Location", "john_doe", null, 0, new HashSet<>());
+        PostDTO postDTO = new PostDTO(null, "Test Title", "Test Caption", "Test Location", "john_doe", null, 0, false, 0L, null);
         Principal principal = mock(Principal.class);
         when(principal.getName()).thenReturn(user.getUsername());
         when(userRepository.findUserByUsername(user.getUsername())).thenReturn(Optional.of(user));
@@ -93,20 +122,78 @@ class PostServiceTest {
         assertThat(capturedPost.getLocation()).isEqualTo(postDTO.getLocation());
         assertThat(capturedPost.getUser()).isEqualTo(user);
         assertThat(result).isEqualTo(post);
+        verify(timelineFanoutService).fanOutPost(post.getId(), user.getId(), post.getCreatedAt());
+        verify(eventPublisher).publishEvent(new PostCreatedEvent(post.getId(), user.getId()));
+    }
+
+    @Test
+    void createPost_shouldSkipFollowerFanOutForHighFollowerAccount() {
+        // Given
+        PostDTO postDTO = new PostDTO(null, "Test Title", "Test Caption", "Test Location", "john_doe", null, 0, false, 0L, null);
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn(user.getUsername());
+        when(userRepository.findUserByUsername(user.getUsername())).thenReturn(Optional.of(user));
+        when(postRepository.save(any(Post.class))).thenReturn(post);
+        when(homeTimelineService.isHighFollowerAccount(user)).thenReturn(true);
+
+        // When
+        postService.createPost(postDTO, principal);
+
+        // Then
+        verify(timelineFanoutService).addToAuthorTimeline(post.getId(), user.getId(), post.getCreatedAt());
+        verify(timelineFanoutService, never()).fanOutPost(any(), any(), any());
+    }
+
+    @Test
+    void getAllPosts_shouldReadFirstPageFromSharedCache() {
+        // Given
+        PageResponse<PostFeedRow> page = new PageResponse<>(List.of(row), null);
+        when(globalFeedCache.getPage(null, 20)).thenReturn(page);
+
+        // When
+        PageResponse<PostFeedRow> result = postService.getAllPosts(null, null);
+
+        // Then
+        assertThat(result).isSameAs(page);
+    }
+
+    @Test
+    void getAllPosts_shouldDecodeCursorAndCapPageSize() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 0);
+        FeedCursor after = new FeedCursor(createdAt, 7L);
+        PageResponse<PostFeedRow> page = new PageResponse<>(List.of(row), null);
+        when(globalFeedCache.getPage(after, 100)).thenReturn(page);
+
+        // When
+        PageResponse<PostFeedRow> result = postService.getAllPosts(after.encode(), 10_000);
+
+        // Then
+        verify(globalFeedCache).getPage(after, 100);
+        assertThat(result.getItems()).containsExactly(row);
     }
 
     @Test
-    void getAllPosts_shouldReturnAllPosts() {
+    void getAllPosts_shouldRejectMalformedCursor() {
+        assertThatThrownBy(() -> postService.getAllPosts("not-a-cursor", null))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void getHomeFeed_shouldReadTimelineOfCurrentUser() {
         // Given
-        List<Post> posts = List.of(post);
-        when(postRepository.findAllByOrderByCreatedAtDesc()).thenReturn(posts);
+        user.setId(5L);
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn(user.getUsername());
+        when(userRepository.findUserByUsername(user.getUsername())).thenReturn(Optional.of(user));
+        PageResponse<PostFeedRow> page = new PageResponse<>(List.of(row), null);
+        when(homeTimelineService.getHomeFeed(5L, "cursor", 100)).thenReturn(page);
 
         // When
-        List<Post> result = postService.getAllPosts();
+        PageResponse<PostFeedRow> result = postService.getHomeFeed(principal, "cursor", 500);
 
         // Then
-        verify(postRepository).findAllByOrderByCreatedAtDesc();
-        assertThat(result).hasSize(1).contains(post);
+        assertThat(result).isSameAs(page);
     }
 
     @Test
@@ -142,67 +229,76 @@ class PostServiceTest {
     }
 
     @Test
-    void getAllPostsForUser_shouldReturnPostsForUser() {
+    void getAllPostsForUser_shouldReadThroughProfileCache() {
         // Given
-        List<Post> posts = List.of(post);
+        user.setId(5L);
         Principal principal = mock(Principal.class);
         when(principal.getName()).thenReturn(user.getUsername());
         when(userRepository.findUserByUsername(user.getUsername())).thenReturn(Optional.of(user));
-        when(postRepository.findAllByUserOrderByCreatedAtDesc(user)).thenReturn(posts);
+        PageResponse<PostFeedRow> page = new PageResponse<>(List.of(row), null);
+        when(userPostsCache.getPage(5L, null, 20)).thenReturn(page);
 
         // When
-        List<Post> result = postService.getAllPostForUser(principal);
+        PageResponse<PostFeedRow> result = postService.getAllPostForUser(principal, null, null);
 
         // Then
-        verify(postRepository).findAllByUserOrderByCreatedAtDesc(user);
-        assertThat(result).hasSize(1).contains(post);
+        verify(userPostsCache).getPage(5L, null, 20);
+        assertThat(result).isSameAs(page);
     }
 
     @Test
-    void likePost_shouldAddLikeIfNotLiked() {
+    void likePost_shouldToggleLikeForUserAndReturnFreshPost() {
         // Given
-        String username = "john_doe";
+        user.setId(3L);
         Long postId = 1L;
-        post.setLikedUsers(new HashSet<>());
+        when(userRepository.findUserByUsername("john_doe")).thenReturn(Optional.of(user));
         when(postRepository.findById(postId)).thenReturn(Optional.of(post));
-        when(postRepository.save(any(Post.class))).thenReturn(post);
 
         // When
-        Post result = postService.likePost(postId, username);
+        Post result = postService.likePost(postId, "john_doe");
 
         // Then
-        assertThat(result).isNotNull();
-        assertThat(result.getLikes()).isEqualTo(1);
-        assertThat(result.getLikedUsers()).contains(username);
+        verify(postLikeService).toggle(postId, 3L);
+        verify(postRepository, never()).save(any(Post.class));
+        assertThat(result).isEqualTo(post);
     }
 
     @Test
-    void likePost_shouldRemoveLikeIfAlreadyLiked() {
+    void like_shouldRecordLikeForPrincipal() {
         // Given
-        String username = "john_doe";
-        Long postId = 1L;
-        post.setLikedUsers(new HashSet<>(Set.of(username)));
-        post.setLikes(1);
-        when(postRepository.findById(postId)).thenReturn(Optional.of(post));
-        when(postRepository.save(any(Post.class))).thenReturn(post);
+        user.setId(3L);
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn(user.getUsername());
+        when(userRepository.findUserByUsername(user.getUsername())).thenReturn(Optional.of(user));
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
 
         // When
-        Post result = postService.likePost(postId, username);
+        Post result = postService.like(1L, principal);
 
         // Then
-        assertThat(result).isNotNull();
-        assertThat(result.getLikes()).isEqualTo(0);
-        assertThat(result.getLikedUsers()).doesNotContain(username);
+        verify(postLikeService).like(1L, 3L);
+        assertThat(result).isEqualTo(post);
+    }
 
+    @Test
+    void unlike_shouldRemoveLikeForPrincipal() {
+        // Given
+        user.setId(3L);
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn(user.getUsername());
+        when(userRepository.findUserByUsername(user.getUsername())).thenReturn(Optional.of(user));
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
 
-        verify(postRepository).save(postArgumentCaptor.capture());
-        Post capturedPost = postArgumentCaptor.getValue();
-        assertThat(capturedPost.getLikes()).isEqualTo(0);
-        assertThat(capturedPost.getLikedUsers()).doesNotContain(username);
+        // When
+        Post result = postService.unlike(1L, principal);
+
+        // Then
+        verify(postLikeService).unlike(1L, 3L);
+        assertThat(result).isEqualTo(post);
     }
 
     @Test
-    void deletePost_shouldDeletePostAndImageFromS3() {
+    void deletePost_shouldDeletePostAndReleaseItsImage() {
         // Given
         Long postId = 1L;
         Principal principal = mock(Principal.class);
@@ -218,7 +314,8 @@ class PostServiceTest {
 
         // Then
         verify(postRepository).delete(post);
-        verify(imageRepository).delete(imageModel);
-        verify(s3Service).deleteObject(s3Buckets.getImgBucket(), imageModel.getS3Key());
+        verify(timelineRepository).deleteByPostId(post.getId());
+        verify(imageStore).release(imageModel);
+        verify(eventPublisher).publishEvent(new PostDeletedEvent(post.getId(), user.getId()));
     }
 }
@@ -0,0 +1,144 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.entity.Chat;
+import com.example.instaclone.entity.Message;
+import com.example.instaclone.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecentMessageBufferTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    private RecentMessageBuffer underTest;
+
+    private Chat chat;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new RecentMessageBuffer(messageRepository, new SimpleMeterRegistry(), 3, 6, 60);
+        chat = new Chat("alice&bob");
+        chat.setChatId(1L);
+    }
+
+    @Test
+    void findLatest_shouldSeedOnceThenServeAppendedMessagesFromMemory() {
+        // Given
+        when(messageRepository.findLatest(chat, PageRequest.ofSize(3))).thenReturn(List.of(message(2L), message(1L)));
+        underTest.findLatest(chat, 3);
+
+        // When
+        underTest.append(message(3L));
+        underTest.append(message(4L));
+        Optional<List<Message>> latest = underTest.findLatest(chat, 3);
+
+        // Then
+        assertThat(ids(latest)).containsExactly(2L, 3L, 4L);
+        verify(messageRepository, times(1)).findLatest(any(), any());
+    }
+
+    @Test
+    void findLatest_shouldKeepMessagesAppendedWhileSeeding() {
+        // Given
+        when(messageRepository.findLatest(chat, PageRequest.ofSize(3))).thenAnswer(invocation -> {
+            // Committed after the ring was created, and also seen by the seeding query.
+            underTest.append(message(5L));
+            underTest.append(message(6L));
+            return List.of(message(5L), message(4L), message(3L));
+        });
+
+        // When
+        Optional<List<Message>> latest = underTest.findLatest(chat, 3);
+
+        // Then
+        assertThat(ids(latest)).containsExactly(4L, 5L, 6L);
+    }
+
+    @Test
+    void append_shouldInsertMessagesArrivingOutOfOrderById() {
+        // Given
+        when(messageRepository.findLatest(chat, PageRequest.ofSize(3))).thenReturn(List.of(message(2L), message(1L)));
+        underTest.findLatest(chat, 3);
+
+        // When
+        underTest.append(message(5L));
+        underTest.append(message(4L));
+        underTest.append(message(4L));
+        underTest.append(message(1L));
+
+        // Then
+        assertThat(ids(underTest.findLatest(chat, 3))).containsExactly(2L, 4L, 5L);
+        assertThat(ids(underTest.findAfter(chat, 2L, 50))).containsExactly(4L, 5L);
+        // 1 fell out of the ring, so older cursors go to the database.
+        assertThat(underTest.findAfter(chat, 0L, 50)).isEmpty();
+    }
+
+    @Test
+    void findLatest_shouldLeaveLargerPagesToDatabase() {
+        assertThat(underTest.findLatest(chat, 4)).isEmpty();
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void findAfter_shouldServeOnlyCursorsTheRingCovers() {
+        // Given
+        when(messageRepository.findLatest(chat, PageRequest.ofSize(3))).thenReturn(List.of(message(12L), message(11L), message(10L)));
+        underTest.findLatest(chat, 3);
+
+        // When
+        Optional<List<Message>> covered = underTest.findAfter(chat, 10L, 50);
+        Optional<List<Message>> tooOld = underTest.findAfter(chat, 9L, 50);
+
+        // Then
+        assertThat(ids(covered)).containsExactly(11L, 12L);
+        assertThat(tooOld).isEmpty();
+    }
+
+    @Test
+    void findAfter_shouldServeAnyCursorWhenRingHoldsWholeHistory() {
+        // Given
+        when(messageRepository.findLatest(chat, PageRequest.ofSize(3))).thenReturn(List.of(message(7L)));
+        underTest.findLatest(chat, 3);
+
+        // When
+        Optional<List<Message>> all = underTest.findAfter(chat, 0L, 50);
+
+        // Then
+        assertThat(ids(all)).containsExactly(7L);
+    }
+
+    @Test
+    void append_shouldIgnoreChatsWithoutRing() {
+        // When
+        underTest.append(message(1L));
+
+        // Then
+        assertThat(underTest.findAfter(chat, 0L, 50)).isEmpty();
+    }
+
+    private static List<Long> ids(Optional<List<Message>> messages) {
+        return messages.orElseThrow().stream().map(Message::getMs_id).toList();
+    }
+
+    private static Message message(Long id) {
+        Chat chat = new Chat("alice&bob");
+        chat.setChatId(1L);
+        Message message = new Message("alice", "2024/10/11-10:00", "Message " + id, chat);
+        message.setMs_id(id);
+        return message;
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.instaclone.services;
 
+import com.example.instaclone.s3.ObjectCache;
 import com.example.instaclone.s3.S3Service;
+import com.example.instaclone.s3.UploadBufferPool;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -14,8 +17,12 @@ import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,11 +31,14 @@ class S3ServiceTest {
     @Mock
     private S3Client s3Client;
 
+    @Mock
+    private ObjectCache objectCache;
+
     private S3Service underTest;
 
     @BeforeEach
     void setUp() {
-        underTest = new S3Service(s3Client);
+        underTest = new S3Service(s3Client, new UploadBufferPool(DataSize.ofMegabytes(8), 1), objectCache);
     }
 
     @Test
@@ -59,6 +69,102 @@ class S3ServiceTest {
         assertThat(putObjectRequest.key()).isEqualTo(key);
         assertThat(requestBody.contentStreamProvider().newStream().readAllBytes())
                 .isEqualTo(RequestBody.fromBytes(data).contentStreamProvider().newStream().readAllBytes());
+        verify(objectCache).invalidate(bucket, key);
+    }
+
+    @Test
+    void canStreamSmallObjectInSinglePut() throws IOException {
+        // Given
+        byte[] data = "Hello World".getBytes();
+
+        // When
+        underTest.putObject("customer", "foo", new ByteArrayInputStream(data), data.length, "text/plain");
+
+        // Then
+        ArgumentCaptor<PutObjectRequest> putObjectRequestArgumentCaptor =
+                ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<RequestBody> requestBodyArgumentCaptor =
+                ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(putObjectRequestArgumentCaptor.capture(), requestBodyArgumentCaptor.capture());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+
+        assertThat(putObjectRequestArgumentCaptor.getValue().contentLength()).isEqualTo(data.length);
+        assertThat(requestBodyArgumentCaptor.getValue().contentStreamProvider().newStream().readAllBytes())
+                .isEqualTo(data);
+    }
+
+    @Test
+    void canStreamLargeObjectAsMultipartUpload() throws IOException {
+        // Given
+        S3Service multipart = new S3Service(s3Client, new UploadBufferPool(DataSize.ofBytes(4), 1), objectCache);
+        byte[] data = "0123456789".getBytes();
+        List<byte[]> uploadedParts = new ArrayList<>();
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            RequestBody body = invocation.getArgument(1);
+            uploadedParts.add(body.contentStreamProvider().newStream().readAllBytes());
+            return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+        });
+
+        // When
+        multipart.putObject("customer", "foo", new ByteArrayInputStream(data), data.length, "image/jpeg");
+
+        // Then
+        assertThat(uploadedParts).extracting(String::new).containsExactly("0123", "4567", "89");
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(completeCaptor.capture());
+        assertThat(completeCaptor.getValue().uploadId()).isEqualTo("upload-1");
+        assertThat(completeCaptor.getValue().multipartUpload().parts())
+                .extracting(CompletedPart::eTag)
+                .containsExactly("etag-1", "etag-2", "etag-3");
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(objectCache).invalidate("customer", "foo");
+    }
+
+    @Test
+    void putsStreamOfUnknownSizeThatFitsOneBufferInOneRequest() throws IOException {
+        // Given
+        S3Service multipart = new S3Service(s3Client, new UploadBufferPool(DataSize.ofBytes(4), 1), objectCache);
+
+        // When
+        multipart.putObject("customer", "empty", new ByteArrayInputStream(new byte[0]), -1, "image/jpeg");
+        multipart.putObject("customer", "short", new ByteArrayInputStream("012".getBytes()), -1, "image/jpeg");
+
+        // Then
+        ArgumentCaptor<PutObjectRequest> requests = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<RequestBody> bodies = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client, times(2)).putObject(requests.capture(), bodies.capture());
+        assertThat(requests.getAllValues()).extracting(PutObjectRequest::contentLength).containsExactly(0L, 3L);
+        assertThat(bodies.getAllValues().get(1).contentStreamProvider().newStream().readAllBytes())
+                .isEqualTo("012".getBytes());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void rejectsPartSizeBelowS3Minimum() {
+        S3Service tooSmall = new S3Service(s3Client, new UploadBufferPool(DataSize.ofMegabytes(4), 1), objectCache);
+
+        assertThatThrownBy(tooSmall::checkPartSize).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void abortsMultipartUploadWhenPartFails() {
+        // Given
+        S3Service multipart = new S3Service(s3Client, new UploadBufferPool(DataSize.ofBytes(4), 1), objectCache);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("boom").build());
+
+        // When & Then
+        assertThatThrownBy(() -> multipart.putObject("customer", "foo",
+                new ByteArrayInputStream("0123456789".getBytes()), -1, "image/jpeg"))
+                .isInstanceOf(S3Exception.class);
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
     }
 
     @Test
@@ -79,6 +185,8 @@ class S3ServiceTest {
         );
 
         when(s3Client.getObject(getObjectRequest)).thenReturn(responseStream);
+        when(objectCache.open(eq(bucket), eq(key), any())).thenAnswer(invocation ->
+                invocation.<Supplier<ResponseInputStream<GetObjectResponse>>>getArgument(2).get());
 
         // When
         byte[] result = underTest.getObject(bucket, key);
@@ -106,6 +214,7 @@ class S3ServiceTest {
         DeleteObjectRequest deleteObjectRequest = deleteObjectRequestArgumentCaptor.getValue();
         assertThat(deleteObjectRequest.bucket()).isEqualTo(bucket);
         assertThat(deleteObjectRequest.key()).isEqualTo(key);
+        verify(objectCache).invalidate(bucket, key);
     }
 }
 
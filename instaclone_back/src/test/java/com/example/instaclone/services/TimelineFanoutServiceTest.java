@@ -0,0 +1,68 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.repository.FollowRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TimelineFanoutServiceTest {
+
+    @Mock
+    private FollowRepository followRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private TimelineFanoutService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new TimelineFanoutService(followRepository, jdbcTemplate);
+        ReflectionTestUtils.setField(underTest, "batchSize", 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fanOutPost_shouldWriteAuthorAndFollowersInBatches() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.now();
+        when(followRepository.findFollowerIdsAfter(7L, 0L, PageRequest.ofSize(2))).thenReturn(List.of(10L, 11L));
+        when(followRepository.findFollowerIdsAfter(7L, 11L, PageRequest.ofSize(2))).thenReturn(List.of(12L));
+
+        // When
+        underTest.fanOutPost(100L, 7L, createdAt);
+
+        // Then
+        ArgumentCaptor<Collection<Long>> batchCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), batchCaptor.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertThat(batchCaptor.getAllValues()).containsExactly(List.of(7L), List.of(10L, 11L), List.of(12L));
+    }
+
+    @Test
+    void backfill_shouldCopyRecentPostsOfFolloweeWithOneStatement() {
+        // When
+        underTest.backfill(1L, 2L);
+
+        // Then
+        verify(jdbcTemplate).update(anyString(), eq(1L), eq(2L), eq(20));
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.instaclone.services;
+
+import com.example.instaclone.dto.PostFeedRow;
+import com.example.instaclone.events.PostCreatedEvent;
+import com.example.instaclone.events.PostDeletedEvent;
+import com.example.instaclone.pagination.FeedCursor;
+import com.example.instaclone.payload.response.PageResponse;
+import com.example.instaclone.repository.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserPostsCacheTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 10, 11, 10, 0);
+
+    @Mock
+    private PostRepository postRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private UserPostsCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new UserPostsCache(postRepository, meterRegistry, 1_000, 30);
+        ReflectionTestUtils.setField(underTest, "postsPerUser", 2);
+    }
+
+    @Test
+    void getPage_shouldServeRepeatedViewsFromMemory() {
+        // Given
+        List<PostFeedRow> rows = List.of(row(2L), row(1L));
+        when(postRepository.findAuthorFirstPage(5L, PageRequest.ofSize(3))).thenReturn(rows);
+
+        // When
+        PageResponse<PostFeedRow> first = underTest.getPage(5L, null, 20);
+        PageResponse<PostFeedRow> second = underTest.getPage(5L, null, 20);
+
+        // Then
+        assertThat(first.getItems()).isEqualTo(rows);
+        assertThat(first.getNext()).isNull();
+        assertThat(second.getItems()).isEqualTo(rows);
+        verify(postRepository, times(1)).findAuthorFirstPage(5L, PageRequest.ofSize(3));
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "userPosts").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "userPosts").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getPage_shouldCacheNewestPostsOfLargeProfiles() {
+        // Given
+        when(postRepository.findAuthorFirstPage(5L, PageRequest.ofSize(3))).thenReturn(List.of(row(3L), row(2L), row(1L)));
+
+        // When
+        PageResponse<PostFeedRow> first = underTest.getPage(5L, null, 1);
+        PageResponse<PostFeedRow> second = underTest.getPage(5L, FeedCursor.decode(first.getNext()), 1);
+
+        // Then
+        assertThat(first.getItems()).extracting(PostFeedRow::getId).containsExactly(3L);
+        assertThat(second.getItems()).extracting(PostFeedRow::getId).containsExactly(2L);
+        assertThat(second.getNext()).isNotNull();
+        verify(postRepository, times(1)).findAuthorFirstPage(5L, PageRequest.ofSize(3));
+        verifyNoMoreInteractions(postRepository);
+    }
+
+    @Test
+    void getPage_shouldReadPagesPastCachedPostsFromDatabase() {
+        // Given
+        when(postRepository.findAuthorFirstPage(5L, PageRequest.ofSize(3))).thenReturn(List.of(row(3L), row(2L), row(1L)));
+        FeedCursor afterSecond = new FeedCursor(CREATED_AT.plusSeconds(2), 2L);
+        when(postRepository.findAuthorPageBefore(5L, afterSecond.createdAt(), 2L, PageRequest.ofSize(3)))
+                .thenReturn(List.of(row(1L)));
+
+        // When
+        PageResponse<PostFeedRow> page = underTest.getPage(5L, afterSecond, 2);
+
+        // Then
+        assertThat(page.getItems()).extracting(PostFeedRow::getId).containsExactly(1L);
+        assertThat(page.getNext()).isNull();
+    }
+
+    @Test
+    void postEvents_shouldInvalidateAuthorEntry() {
+        // Given
+        when(postRepository.findAuthorFirstPage(5L, PageRequest.ofSize(3))).thenReturn(List.of(row(1L)));
+        underTest.getPage(5L, null, 20);
+
+        // When
+        underTest.onPostCreated(new PostCreatedEvent(2L, 5L));
+        underTest.getPage(5L, null, 20);
+        underTest.onPostDeleted(new PostDeletedEvent(2L, 5L));
+        underTest.getPage(5L, null, 20);
+
+        // Then
+        verify(postRepository, times(3)).findAuthorFirstPage(5L, PageRequest.ofSize(3));
+    }
+
+    private static PostFeedRow row(Long id) {
+        PostFeedRow row = new PostFeedRow();
+        row.setId(id);
+        row.setCreatedAt(CREATED_AT.plusSeconds(id));
+        return row;
+    }
+}
@@ -90,7 +90,7 @@ class UserServiceTest {
     @Test
     void updateUser_shouldUpdateUserDetails() {
         //Given
-        UserDTO userDTO = new UserDTO(1L,"NewFirstName", "NewLastName", "NewUsername", "NewBio");
+        UserDTO userDTO = new UserDTO(1L,"NewFirstName", "NewLastName", "NewUsername", "NewBio", null);
         User existingUser = new User(1L, "John", "Doe", "johndoe", "john@example.com", "password");
 
         Principal principal = mock(Principal.class);
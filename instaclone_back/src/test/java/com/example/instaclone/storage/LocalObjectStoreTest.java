@@ -0,0 +1,171 @@
+package com.example.instaclone.storage;
+
+import com.example.instaclone.exceptions.ObjectNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalObjectStoreTest {
+
+    private static final String KEY = "images/sha256/abc";
+
+    @TempDir
+    Path root;
+
+    private LocalObjectStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new LocalObjectStore(root, "http://localhost:8080", Duration.ofMinutes(10), "secret");
+    }
+
+    @Test
+    void putThenOpenReturnsContentAndMetadata() throws IOException {
+        // Given
+        store.put(KEY, new ByteArrayInputStream("image content".getBytes()), 13, "image/jpeg");
+
+        // When
+        try (StoredObject object = store.open(KEY)) {
+
+            // Then
+            assertThat(object.size()).isEqualTo(13);
+            assertThat(object.contentType()).isEqualTo("image/jpeg");
+            assertThat(object.content().readAllBytes()).isEqualTo("image content".getBytes());
+        }
+    }
+
+    @Test
+    void transferToCopiesWholeObject() throws IOException {
+        // Given
+        byte[] content = new byte[100_000];
+        new Random(7).nextBytes(content);
+        store.put(KEY, new ByteArrayInputStream(content), content.length, "image/png");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long transferred;
+        try (StoredObject object = store.open(KEY)) {
+            transferred = object.content().transferTo(out);
+        }
+
+        // Then
+        assertThat(transferred).isEqualTo(content.length);
+        assertThat(out.toByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void failedWriteKeepsPreviousObjectAndLeavesNoTemporaryFile() throws IOException {
+        // Given
+        store.put(KEY, new ByteArrayInputStream("old".getBytes()), 3, "image/jpeg");
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("client went away");
+            }
+        };
+
+        // When
+        assertThatThrownBy(() -> store.put(KEY, failing, -1, "image/png")).isInstanceOf(IOException.class);
+
+        // Then
+        try (StoredObject object = store.open(KEY)) {
+            assertThat(object.content().readAllBytes()).isEqualTo("old".getBytes());
+            assertThat(object.contentType()).isEqualTo("image/jpeg");
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            assertThat(files.map(Path::getFileName).map(Path::toString)).noneMatch(name -> name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    void deleteRemovesObject() throws IOException {
+        // Given
+        store.put(KEY, new ByteArrayInputStream("image content".getBytes()), 13, "image/jpeg");
+
+        // When
+        store.delete(KEY);
+
+        // Then
+        assertThatThrownBy(() -> store.open(KEY)).isInstanceOf(ObjectNotFoundException.class);
+    }
+
+    @Test
+    void listPagesThroughKeysInOrderSkippingMetadataFiles() throws IOException {
+        // Given
+        for (String key : List.of("images/sha256/c", "images/sha256/a", "renditions/640/images/sha256/a", "images/sha256/b")) {
+            store.put(key, new ByteArrayInputStream("x".getBytes()), 1, "image/jpeg");
+        }
+
+        // When
+        ObjectPage first = store.list("images/", null, 2);
+        ObjectPage second = store.list("images/", first.next(), 2);
+
+        // Then
+        assertThat(first.objects()).extracting(ObjectPage.Entry::key).containsExactly("images/sha256/a", "images/sha256/b");
+        assertThat(second.objects()).extracting(ObjectPage.Entry::key).containsExactly("images/sha256/c");
+        assertThat(second.next()).isNull();
+    }
+
+    @Test
+    void deleteAllCountsOnlyExistingObjects() throws IOException {
+        // Given
+        store.put(KEY, new ByteArrayInputStream("image content".getBytes()), 13, "image/jpeg");
+
+        // When
+        int deleted = store.deleteAll(List.of(KEY, "images/sha256/missing"));
+
+        // Then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(store.exists(KEY)).isFalse();
+    }
+
+    @Test
+    void keyOutsideRootIsRejected() {
+        assertThatThrownBy(() -> store.open("../outside")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void signedUrlVerifiesOnlyUntampered() {
+        // Given
+        UriComponents url = UriComponentsBuilder.fromHttpUrl(store.signedUrl(KEY).url()).build();
+        String key = URLDecoder.decode(url.getQueryParams().getFirst("key"), StandardCharsets.UTF_8);
+        long expires = Long.parseLong(url.getQueryParams().getFirst("expires"));
+        String signature = url.getQueryParams().getFirst("signature");
+
+        // Then
+        assertThat(url.getPath()).isEqualTo("/api/objects");
+        assertThat(store.verify(key, expires, signature)).isTrue();
+        assertThat(store.verify("images/sha256/other", expires, signature)).isFalse();
+        assertThat(store.verify(key, expires + 3600, signature)).isFalse();
+    }
+
+    @Test
+    void expiredSignedUrlIsRejected() throws IOException {
+        // Given
+        LocalObjectStore expiring = new LocalObjectStore(root, "http://localhost:8080", Duration.ofMinutes(-1), "secret");
+        SignedUrl signed = expiring.signedUrl(KEY);
+        UriComponents url = UriComponentsBuilder.fromHttpUrl(signed.url()).build();
+
+        // Then
+        assertThat(expiring.verify(KEY, signed.expiresAt().getEpochSecond(), url.getQueryParams().getFirst("signature")))
+                .isFalse();
+    }
+}
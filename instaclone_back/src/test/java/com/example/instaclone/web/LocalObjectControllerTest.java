@@ -0,0 +1,79 @@
+package com.example.instaclone.web;
+
+import com.example.instaclone.storage.LocalObjectStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalObjectControllerTest {
+
+    private static final String KEY = "images/sha256/abc";
+
+    @TempDir
+    Path root;
+
+    private LocalObjectStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new LocalObjectStore(root, "http://localhost:8080", Duration.ofMinutes(10), "secret");
+        store.put(KEY, new ByteArrayInputStream("image content".getBytes()), 13, "image/jpeg");
+    }
+
+    @Test
+    void signedUrlIsHandedToTomcatSendfileWhenSupported() throws IOException {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+
+        // When
+        ResponseEntity<InputStreamResource> response = getSigned(request);
+
+        // Then
+        assertThat(response.getBody()).isNull();
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(13);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename"))
+                .isEqualTo(root.resolve(KEY).toRealPath().toString());
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(0L);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(13L);
+    }
+
+    @Test
+    void signedUrlIsStreamedWithoutSendfile() throws IOException {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        // When
+        ResponseEntity<InputStreamResource> response = getSigned(request);
+
+        // Then
+        try (InputStream body = response.getBody().getInputStream()) {
+            assertThat(body.readAllBytes()).isEqualTo("image content".getBytes());
+        }
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename")).isNull();
+    }
+
+    private ResponseEntity<InputStreamResource> getSigned(MockHttpServletRequest request) throws IOException {
+        UriComponents url = UriComponentsBuilder.fromHttpUrl(store.signedUrl(KEY).url()).build();
+        return new LocalObjectController(store).getObject(
+                URLDecoder.decode(url.getQueryParams().getFirst("key"), StandardCharsets.UTF_8),
+                Long.parseLong(url.getQueryParams().getFirst("expires")),
+                url.getQueryParams().getFirst("signature"),
+                request);
+    }
+}
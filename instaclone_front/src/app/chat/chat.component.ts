@@ -8,7 +8,7 @@ import {Observable, of} from 'rxjs';
 import {User} from "../models/User";
 import {Message} from "../models/message";
 import {UserService} from "../service/user.service";
-import {ImageUploadService} from "../service/image-upload.service";
+import {AVATAR_WIDTH, ImageUploadService} from "../service/image-upload.service";
 import {ChatService} from "../service/chat.service";
 
 @Component({
@@ -21,14 +21,17 @@ export class ChatComponent implements OnInit, AfterViewInit {
   otherUser?: User;
   thisUser!: User;
   channelName?: string;
-  userProfileImage!: File;
+  userProfileImage!: string;
   thisUserLoaded: boolean = false;
   otherUserLoaded: boolean = false;
   myProfileImageLoaded: boolean = false;
-  myProfileImage!: File;
+  myProfileImage!: string;
   stompClient?: Stomp.Client;
   newMessage = new FormControl('');
   messages?: Observable<Array<Message>>;
+  loadedMessages: Array<Message> = [];
+  hasOlderMessages = true;
+  loadingOlderMessages = false;
   connectedToChat = false;
   @ViewChild('chat') chatContainer!: ElementRef<HTMLDivElement>; // ViewChild to access chat element
 
@@ -48,9 +51,9 @@ export class ChatComponent implements OnInit, AfterViewInit {
       this.thisUserLoaded = true;
     });
 
-    this.imageService.getProfileImage()
+    this.imageService.getProfileImage(AVATAR_WIDTH)
       .subscribe(image => {
-        this.myProfileImage = image.imageBytes;
+        this.myProfileImage = image.url;
         this.myProfileImageLoaded = true;
       })
 
@@ -60,8 +63,8 @@ export class ChatComponent implements OnInit, AfterViewInit {
           this.otherUser = data;
           this.otherUserLoaded = true;
           if (this.otherUser?.id) {
-            this.imageService.getProfileImageByUserId(this.otherUser.id).subscribe((image) => {
-              this.userProfileImage = image?.imageBytes;
+            this.imageService.getProfileImageByUserId(this.otherUser.id, AVATAR_WIDTH).subscribe((image) => {
+              this.userProfileImage = image?.url;
               this.connectToChat();
               this.connectedToChat = true;
               this.el.nativeElement.querySelector('#chat').scrollIntoView();
@@ -110,7 +113,7 @@ export class ChatComponent implements OnInit, AfterViewInit {
     this.stompClient.connect(headers, (frame) => {
       console.log('connected to: ' + frame);
       this.stompClient!.subscribe('/topic/messages/' + this.channelName, () => {
-        this.loadChat();
+        this.loadNewMessages();
         // After loading messages, scroll down
         setTimeout(() => {
           this.scrollDown();
@@ -136,11 +139,41 @@ export class ChatComponent implements OnInit, AfterViewInit {
 
   loadChat() {
     this.chatService.getMessages(this.channelName!).subscribe((data) => {
-      const msgs: Array<Message> = data;
-      msgs.sort((a, b) => (a.ms_id! > b.ms_id! ? 1 : -1));
-      this.messages = of(msgs);
+      this.loadedMessages = data;
+      this.hasOlderMessages = data.length > 0;
+      this.messages = of(this.loadedMessages);
+      setTimeout(() => this.scrollDown(), 0);
+    });
+  }
+
+  loadNewMessages() {
+    const newest = this.loadedMessages[this.loadedMessages.length - 1]?.ms_id;
+    if (newest === undefined) {
+      this.loadChat();
+      return;
+    }
+    this.chatService.getMessages(this.channelName!, undefined, newest).subscribe((data) => {
+      this.loadedMessages = [...this.loadedMessages, ...data];
+      this.messages = of(this.loadedMessages);
+    });
+  }
+
+  onChatScroll() {
+    const container = this.chatContainer.nativeElement;
+    const oldest = this.loadedMessages[0]?.ms_id;
+    if (container.scrollTop > 0 || oldest === undefined || !this.hasOlderMessages || this.loadingOlderMessages) {
+      return;
+    }
+    this.loadingOlderMessages = true;
+    this.chatService.getMessages(this.channelName!, oldest).subscribe((data) => {
+      const previousHeight = container.scrollHeight;
+      this.loadedMessages = [...data, ...this.loadedMessages];
+      this.hasOlderMessages = data.length > 0;
+      this.messages = of(this.loadedMessages);
+      this.loadingOlderMessages = false;
+      // Keep the message that was at the top in place once the older ones are rendered above it.
+      setTimeout(() => container.scrollTop = container.scrollHeight - previousHeight, 0);
     });
-    console.log(this.messages);
   }
 
   whenWasItPublished(myTimeStamp: string) {
@@ -152,6 +185,6 @@ export class ChatComponent implements OnInit, AfterViewInit {
     if (img == null) {
       return null;
     }
-    return 'data:image/jpeg;base64,' + img;
+    return img;
   }
 }
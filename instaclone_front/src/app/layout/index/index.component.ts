@@ -5,8 +5,8 @@ import {UserService} from "../../service/user.service";
 import {PostService} from "../../service/post.service";
 import {CommentService} from "../../service/comment.service";
 import {NotificationService} from "../../service/notification.service";
-import {ImageUploadService} from "../../service/image-upload.service";
-import {catchError, forkJoin, of} from "rxjs";
+import {AVATAR_WIDTH, FEED_WIDTH, ImageUploadService} from "../../service/image-upload.service";
+import {forkJoin} from "rxjs";
 
 @Component({
   selector: 'app-index',
@@ -36,10 +36,10 @@ export class IndexComponent implements OnInit {
     forkJoin([
       this.postService.getAllPosts(),
       this.userService.getCurrentUser()
-    ]).subscribe(([posts, user]) => {
-      this.posts = posts;
+    ]).subscribe(([page, user]) => {
+      this.posts = page.items;
       this.user = user;
-      this.getImagesToPosts(this.posts); // Now calls getImagesToPosts with forkJoin
+      this.getImagesToPosts(this.posts);
       this.getCommentsToPosts(this.posts);
       this.isPostsLoaded = true;
       this.isUserDataLoaded = true;
@@ -47,34 +47,24 @@ export class IndexComponent implements OnInit {
   }
 
   getImagesToPosts(posts: Post[]): void {
-    const profileImageObservables = posts
-      .filter(post => post.userId !== undefined)
-      .map(post => this.imageService.getProfileImageByUserId(post.userId!)
-        .pipe(catchError(error => {
-          console.error(`Error fetching profile image for post ${post.id}:`, error);
-          return of(null);
-        }))
-      );
-
-    forkJoin(profileImageObservables).subscribe(imageDataArray => {
-      imageDataArray.forEach((imageData, index) => {
-        const post = this.posts[index];
-        if (post && post.userId && imageData) {
-          this.postProfileImages.set(post.userId, 'data:image/jpeg;base64,' + imageData.imageBytes);
-        }
-      });
-
-      // Fetch post images (retained original logic)
-      posts.forEach(post => {
-        if (post.id) {
-          this.imageService.getImageToPost(post.id)
-            .subscribe(data => {
-              post.image = data.imageBytes;
-              this.cdRef.detectChanges();  // Trigger change detection
-            });
-        }
+    const postIds = posts.filter(post => post.id !== undefined).map(post => post.id!);
+    const userIds = [...new Set(posts.filter(post => post.userId !== undefined).map(post => post.userId!))];
+
+    this.imageService.getImagesBatch(postIds, userIds, FEED_WIDTH, AVATAR_WIDTH)
+      .subscribe({
+        next: images => {
+          posts.forEach(post => {
+            if (post.id && images.posts[post.id]) {
+              post.image = images.posts[post.id].url;
+            }
+            if (post.userId && images.profiles[post.userId]) {
+              this.postProfileImages.set(post.userId, images.profiles[post.userId].url);
+            }
+          });
+          this.cdRef.detectChanges();  // Trigger change detection
+        },
+        error: error => console.error('Error fetching images for posts:', error)
       });
-    });
   }
 
   getCommentsToPosts(posts: Post[]): void {
@@ -90,40 +80,20 @@ export class IndexComponent implements OnInit {
 
   likePost(postId: number, postIndex: number): void {
     const post = this.posts[postIndex];
-    console.log(post);
-
-    if (post.usersLiked === undefined) {
-      post.usersLiked = [];  // Ensure `userLiked` is initialized
-    }
-
-    if (!post.usersLiked.includes(this.user.username)) {
-      this.postService.likePost(postId, this.user.username)
-        .subscribe({
-          next: () => {
-            post.usersLiked?.push(this.user.username);
-            this.notificationService.showSnackBar('Liked!');
-          },
-          error: (err) => {
-            console.error('Error liking post:', err);
-            this.notificationService.showSnackBar('Error liking post.');
-          }
-        });
-    } else {
-      this.postService.likePost(postId, this.user.username)
-        .subscribe({
-          next: () => {
-            const index = post.usersLiked?.indexOf(this.user.username);
-            if (index !== undefined && index > -1) {
-              post.usersLiked?.splice(index, 1);
-            }
-            this.notificationService.showSnackBar('Unliked!');
-          },
-          error: (err) => {
-            console.error('Error unliking post:', err);
-            this.notificationService.showSnackBar('Error unliking post.');
-          }
-        });
-    }
+    const wasLiked = post.likedByMe === true;
+
+    this.postService.likePost(postId, this.user.username)
+      .subscribe({
+        next: (updated: Post) => {
+          post.likes = updated.likes;
+          post.likedByMe = updated.likedByMe;
+          this.notificationService.showSnackBar(wasLiked ? 'Unliked!' : 'Liked!');
+        },
+        error: (err) => {
+          console.error(wasLiked ? 'Error unliking post:' : 'Error liking post:', err);
+          this.notificationService.showSnackBar(wasLiked ? 'Error unliking post.' : 'Error liking post.');
+        }
+      });
   }
 
   postComment(message: string, postId: number, postIndex: number): void {
@@ -140,6 +110,6 @@ export class IndexComponent implements OnInit {
     if (img == null) {
       return null;
     }
-    return 'data:image/jpeg;base64,' + img;
+    return img;
   }
 }
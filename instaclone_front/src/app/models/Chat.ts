@@ -1,5 +1,8 @@
 export interface Chat {
   chatId: number;
   name: string;
-  participant: string;
+  lastMessageId?: number;
+  lastSender?: string;
+  lastMessage?: string;
+  lastActivity?: string;
 }
@@ -6,9 +6,11 @@ export interface Post {
   title: string;
   caption: string;
   location: string;
-  image?: File;
+  image?: string;
+  imagePlaceholder?: string;
   likes?: number;
-  usersLiked?: string[];
+  likedByMe?: boolean;
+  commentCount?: number;
   comments?: Comment[];
   username?: string;
 }
@@ -1,5 +1,5 @@
 import {Injectable} from '@angular/core';
-import {HttpClient} from "@angular/common/http";
+import {HttpClient, HttpParams} from "@angular/common/http";
 import {Observable} from "rxjs";
 
 @Injectable({
@@ -12,7 +12,18 @@ export class ChatService {
   constructor(private http: HttpClient) {
   }
 
-  getMessages(channelName: string): Observable<any> {
-    return this.http.post(this.baseUrl + 'getMessages', {chat: channelName});
+  /**
+   * One page of the chat, oldest first: the newest page, the page before message id `before`,
+   * or the messages after id `after`.
+   */
+  getMessages(channelName: string, before?: number, after?: number): Observable<any> {
+    let params = new HttpParams();
+    if (before !== undefined) {
+      params = params.set('before', before);
+    }
+    if (after !== undefined) {
+      params = params.set('after', after);
+    }
+    return this.http.post(this.baseUrl + 'getMessages', {chat: channelName}, {params});
   }
 }
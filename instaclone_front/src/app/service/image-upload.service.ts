@@ -4,6 +4,10 @@ import {Observable} from "rxjs";
 
 const IMAGE_API = 'http://localhost:8080/api/image/';
 
+// Display widths; the server answers with the smallest rendition at least this wide.
+export const AVATAR_WIDTH = 150;
+export const FEED_WIDTH = 640;
+
 @Injectable({
   providedIn: 'root'
 })
@@ -23,19 +27,35 @@ export class ImageUploadService {
     return this.http.post(IMAGE_API + postId + '/upload', uploadData);
   }
 
-  getProfileImage(): Observable<any> {
-    return this.http.get(IMAGE_API + 'profileImage');
+  getProfileImage(width?: number): Observable<any> {
+    return this.http.get(IMAGE_API + 'profileImage/url' + widthParam(width));
+  }
+
+  getProfileImageByUserId(userId: number, width?: number): Observable<any> {
+    return this.http.get(IMAGE_API + 'profileImage/' + userId + '/url' + widthParam(width));
   }
 
-  getProfileImageByUserId(userId: number): Observable<any> {
-    return this.http.get(IMAGE_API + 'profileImage/' + userId);
+  getImageToPost(postId: number, width?: number): Observable<any>  {
+    return this.http.get(IMAGE_API + postId + '/image/url' + widthParam(width));
   }
 
-  getImageToPost(postId: number): Observable<any>  {
-    return this.http.get(IMAGE_API + postId + '/image');
+  // One request for all post and profile images of a page; ids without an image are left out of the maps.
+  getImagesBatch(postIds: number[], userIds: number[], postWidth?: number, avatarWidth?: number): Observable<any> {
+    const params: any = {postIds: postIds.join(','), userIds: userIds.join(',')};
+    if (postWidth) {
+      params.postWidth = postWidth;
+    }
+    if (avatarWidth) {
+      params.avatarWidth = avatarWidth;
+    }
+    return this.http.get(IMAGE_API + 'batch', {params});
   }
 
   deleteProfileImage(): Observable<any> {
     return this.http.post(IMAGE_API + 'profileImage/delete', null);
   }
 }
+
+function widthParam(width?: number): string {
+  return width ? '?w=' + width : '';
+}
@@ -16,12 +16,26 @@ export class PostService {
     return this.http.post(POST_API + 'create', post);
   }
 
-  getAllPosts(): Observable<any> {
-    return this.http.get(POST_API + 'all');
+  getAllPosts(cursor?: string, size?: number): Observable<any> {
+    const params: any = {};
+    if (cursor) {
+      params.cursor = cursor;
+    }
+    if (size) {
+      params.size = size;
+    }
+    return this.http.get(POST_API + 'all', {params});
   }
 
-  getPostForCurrentUser(): Observable<any> {
-    return this.http.get(POST_API + 'user/posts');
+  getPostForCurrentUser(cursor?: string, size?: number): Observable<any> {
+    const params: any = {};
+    if (cursor) {
+      params.cursor = cursor;
+    }
+    if (size) {
+      params.size = size;
+    }
+    return this.http.get(POST_API + 'user/posts', {params});
   }
 
   delete(id: number): Observable<any> {
@@ -21,7 +21,7 @@ export class ProfileComponent implements OnInit {
   user!: User;
   userId!: number;
   selectedFile: File | null = null;
-  userProfileImage: File | null = null;
+  userProfileImage: string | null = null;
   previewImgURL: any;
   isProfileOwner: boolean = false;
   hasProfileImage!: boolean;
@@ -51,7 +51,7 @@ export class ProfileComponent implements OnInit {
         });
       this.imageService.getProfileImageByUserId(this.userId)
         .subscribe(data => {
-          this.userProfileImage = data.imageBytes;
+          this.userProfileImage = data.url;
           this.hasProfileImage = !!this.userProfileImage;
         });
     });
@@ -109,6 +109,6 @@ export class ProfileComponent implements OnInit {
     if (img == null) {
       return null;
     }
-    return 'data:image/jpeg;base64,' + img;
+    return img;
   }
 }
@@ -1,7 +1,7 @@
 import {Component, OnInit} from '@angular/core';
 import {PostService} from "../../service/post.service";
 import {Post} from "../../models/Post";
-import {ImageUploadService} from "../../service/image-upload.service";
+import {AVATAR_WIDTH, FEED_WIDTH, ImageUploadService} from "../../service/image-upload.service";
 import {CommentService} from "../../service/comment.service";
 import {UserService} from "../../service/user.service";
 import {NotificationService} from "../../service/notification.service";
@@ -18,7 +18,8 @@ export class UserPostsComponent implements OnInit{
   arePostsLoaded = false;
   imageLoaded = false;
   posts!: Post[];
-  userProfileImage!: File;
+  nextCursor: string | null = null;
+  userProfileImage!: string;
   user!: User;
 
   constructor(private userService: UserService,
@@ -32,21 +33,21 @@ export class UserPostsComponent implements OnInit{
   ngOnInit(): void {
     this.profilePictureService.profilePictureUpdated$
       .subscribe(() => {
-        this.imageService.getProfileImage()
+        this.imageService.getProfileImage(AVATAR_WIDTH)
           .subscribe(data => {
-            this.userProfileImage = data.imageBytes;
+            this.userProfileImage = data.url;
             this.imageLoaded = true;
           });
       })
-    this.imageService.getProfileImage()
+    this.imageService.getProfileImage(AVATAR_WIDTH)
       .subscribe(data => {
-        this.userProfileImage = data.imageBytes;
+        this.userProfileImage = data.url;
         this.imageLoaded = true;
       });
     this.postService.getPostForCurrentUser()
-      .subscribe(data => {
-        console.log(data);
-        this.posts = data;
+      .subscribe(page => {
+        this.posts = page.items;
+        this.nextCursor = page.next;
         this.getImagesToPosts(this.posts);
         this.getCommentsToPosts(this.posts);
         this.arePostsLoaded = true;
@@ -57,15 +58,32 @@ export class UserPostsComponent implements OnInit{
       })
   }
 
+  loadMorePosts(): void {
+    if (!this.nextCursor) {
+      return;
+    }
+    this.postService.getPostForCurrentUser(this.nextCursor)
+      .subscribe(page => {
+        this.posts.push(...page.items);
+        this.nextCursor = page.next;
+        this.getImagesToPosts(page.items);
+        this.getCommentsToPosts(page.items);
+      });
+  }
+
   getImagesToPosts(posts: Post[]): void {
-    posts.forEach(post => {
-      if (post.id !== undefined) {
-        this.imageService.getImageToPost(post.id)
-          .subscribe(data => {
-            post.image = data.imageBytes;
-          })
-      }
-    });
+    const postIds = posts.filter(post => post.id !== undefined).map(post => post.id!);
+    if (postIds.length === 0) {
+      return;
+    }
+    this.imageService.getImagesBatch(postIds, [], FEED_WIDTH)
+      .subscribe(images => {
+        posts.forEach(post => {
+          if (post.id && images.posts[post.id]) {
+            post.image = images.posts[post.id].url;
+          }
+        });
+      });
   }
 
   getCommentsToPosts(posts: Post[]): void {
@@ -107,6 +125,6 @@ export class UserPostsComponent implements OnInit{
     if (img == null) {
       return null;
     }
-    return 'data:image/jpeg;base64,' + img;
+    return img;
   }
 }